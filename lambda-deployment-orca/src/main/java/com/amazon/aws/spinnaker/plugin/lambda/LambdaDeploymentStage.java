@@ -17,7 +17,7 @@
 
 package com.amazon.aws.spinnaker.plugin.lambda;
 
-import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.LambdaUpdateEventConfigurationTask;
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.LambdaRecreateEventMappingsTask;
 import com.amazon.aws.spinnaker.plugin.lambda.traffic.LambdaWaitToStabilizeTask;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.*;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.LambdaCacheRefreshTask;
@@ -51,11 +51,9 @@ public class LambdaDeploymentStage implements StageDefinitionBuilder {
         builder.withTask("lambdaUpdateConfigTask", LambdaUpdateConfigurationTask.class);
         builder.withTask("lambdaVerificationTask", LambdaVerificationTask.class);
         builder.withTask("lambdaCacheRefreshTask", LambdaCacheRefreshTask.class);
-        builder.withTask("lambdaPutConcurrencyTask", LambdaPutConcurrencyTask.class);
+        builder.withTask("lambdaApplyFunctionAttachmentsTask", LambdaApplyFunctionAttachmentsTask.class);
         builder.withTask("lambdaVerificationTask", LambdaVerificationTask.class);
-        builder.withTask("lambdaEventConfigurationTask", LambdaUpdateEventConfigurationTask.class);
-        builder.withTask("lambdaVerificationTask", LambdaVerificationTask.class);
-        builder.withTask("lambdaUpdateAliasesTask", LambdaUpdateAliasesTask.class);
+        builder.withTask("lambdaRecreateEventMappingsTask", LambdaRecreateEventMappingsTask.class);
         builder.withTask("lambdaVerificationTask", LambdaVerificationTask.class);
         builder.withTask("lambdaCacheRefreshTask", LambdaCacheRefreshTask.class);
         builder.withTask("lambdaPublishVersionTask", LambdaPublishVersionTask.class);
@@ -20,15 +20,35 @@ package com.amazon.aws.spinnaker.plugin.lambda;
 import com.amazon.aws.spinnaker.plugin.lambda.delete.LambdaDeleteStage;
 import com.amazon.aws.spinnaker.plugin.lambda.delete.LambdaDeleteTask;
 import com.amazon.aws.spinnaker.plugin.lambda.delete.LambdaDeleteVerificationTask;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.LambdaVersionGcStage;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.LambdaVersionGcTask;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.LambdaVersionPruner;
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.LambdaRecreateEventMappingsTask;
 import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.LambdaUpdateEventConfigurationTask;
 import com.amazon.aws.spinnaker.plugin.lambda.invoke.LambdaInvokeStage;
 import com.amazon.aws.spinnaker.plugin.lambda.invoke.LambdaInvokeTask;
 import com.amazon.aws.spinnaker.plugin.lambda.invoke.LambdaInvokeVerificationTask;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.LambdaLoadTestTask;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.LambdaBulkDeploymentStage;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.LambdaBulkPrepareTask;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.LambdaMultiRegionDeploymentStage;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.LambdaMultiRegionPrepareTask;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.LambdaMultiTargetDeployTask;
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.LambdaPowerTuningStage;
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.LambdaPowerTuningTask;
 import com.amazon.aws.spinnaker.plugin.lambda.traffic.*;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.CloudDriverMetricProvider;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.CloudWatchMetricProvider;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.LambdaMetricGate;
+import com.amazon.aws.spinnaker.plugin.lambda.updatecode.LambdaCodeUpdateCacheRefreshTask;
 import com.amazon.aws.spinnaker.plugin.lambda.updatecode.LambdaUpdateCodeStage;
 import com.amazon.aws.spinnaker.plugin.lambda.updatecode.LambdaWaitForCacheCodeUpdateTask;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.*;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaAccountCredentialsProvider;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverHttpClient;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.S3LambdaArtifactStore;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.LambdaCacheRefreshTask;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.LambdaVerificationTask;
 import com.netflix.spinnaker.kork.plugins.api.spring.SpringLoaderPlugin;
@@ -54,6 +74,8 @@ public class LambdaSpringLoaderPlugin extends SpringLoaderPlugin {
         List<Pair<String, Class>> beanList =  Arrays.asList(
                 Pair.of("Aws.LambdaDeploymentStage", LambdaDeploymentStage.class),
                 Pair.of("lambdaCloudDriverUtils", LambdaCloudDriverUtils.class),
+                Pair.of("lambdaCloudDriverHttpClient", LambdaCloudDriverHttpClient.class),
+                Pair.of("lambdaCloudDriverAsyncUtils", LambdaCloudDriverAsyncUtils.class),
                 Pair.of("lambdaCreationTask", LambdaCreateTask.class),
                 Pair.of("lambdaUpdateCodeTask", LambdaUpdateCodeTask.class),
                 Pair.of("lambdaUpdateConfigurationTask", LambdaUpdateConfigurationTask.class),
@@ -61,6 +83,9 @@ public class LambdaSpringLoaderPlugin extends SpringLoaderPlugin {
                 Pair.of("lambdaDeleteTask", LambdaDeleteTask.class),
                 Pair.of("lambdaPublishVersionTask", LambdaPublishVersionTask.class),
                 Pair.of("lambdaDeleteVerificationTask", LambdaDeleteVerificationTask.class),
+                Pair.of("lambdaVersionPruner", LambdaVersionPruner.class),
+                Pair.of("Aws.LambdaVersionGcStage", LambdaVersionGcStage.class),
+                Pair.of("lambdaVersionGcTask", LambdaVersionGcTask.class),
                 Pair.of("Aws.LambdaDeleteStage", LambdaDeleteStage.class),
                 Pair.of("lambdaTrafficUpdateTask", LambdaTrafficUpdateTask.class),
                 Pair.of("LambdaWaitToStabilizeTask", LambdaWaitToStabilizeTask.class),
@@ -69,18 +94,38 @@ public class LambdaSpringLoaderPlugin extends SpringLoaderPlugin {
                 Pair.of("lambdaWaitForCachePublishTask", LambdaWaitForCachePublishTask.class),
                 Pair.of("lambdaOutputTask", LambdaOutputTask.class),
                 Pair.of("lambdaPutConcurrencyTask", LambdaPutConcurrencyTask.class),
+                Pair.of("lambdaApplyFunctionAttachmentsTask", LambdaApplyFunctionAttachmentsTask.class),
                 Pair.of("lambdaTrafficUpdateVerificationTask", LambdaTrafficUpdateVerificationTask.class),
                 Pair.of("lambdaUpdateEventConfigurationTask", LambdaUpdateEventConfigurationTask.class),
+                Pair.of("lambdaRecreateEventMappingsTask", LambdaRecreateEventMappingsTask.class),
                 Pair.of("trafficUpdateStrategyInjector", TrafficUpdateStrategyInjector.class),
                 Pair.of("simpleStrategy", SimpleDeploymentStrategy.class),
                 Pair.of("weightedStrategy", WeightedDeploymentStrategy.class),
                 Pair.of("blueGreenStrategy", BlueGreenDeploymentStrategy.class),
+                Pair.of("progressiveStrategy", ProgressiveDeploymentStrategy.class),
+                Pair.of("cloudDriverMetricProvider", CloudDriverMetricProvider.class),
+                Pair.of("cloudWatchMetricProvider", CloudWatchMetricProvider.class),
+                Pair.of("lambdaMetricGate", LambdaMetricGate.class),
+                Pair.of("lambdaBlueGreenInvokeTask", LambdaBlueGreenInvokeTask.class),
+                Pair.of("lambdaBlueGreenWaitForInvokeTask", LambdaBlueGreenWaitForInvokeTask.class),
+                Pair.of("lambdaBlueGreenCompareTask", LambdaBlueGreenCompareTask.class),
                 Pair.of("Aws.LambdaInvokeStage", LambdaInvokeStage.class),
                 Pair.of("lambdaInvokeTask", LambdaInvokeTask.class),
                 Pair.of("lambdaInvokeVerifyTask", LambdaInvokeVerificationTask.class),
+                Pair.of("lambdaLoadTestTask", LambdaLoadTestTask.class),
                 Pair.of("Aws.LambdaTrafficShaper", LambdaTrafficRoutingStage.class),
                 Pair.of("Aws.LambdaUpdateCodeStage", LambdaUpdateCodeStage.class),
-                Pair.of("lambdaWaitForCacheCodeUpdateTask", LambdaWaitForCacheCodeUpdateTask.class)
+                Pair.of("lambdaWaitForCacheCodeUpdateTask", LambdaWaitForCacheCodeUpdateTask.class),
+                Pair.of("lambdaCodeUpdateCacheRefreshTask", LambdaCodeUpdateCacheRefreshTask.class),
+                Pair.of("lambdaAccountCredentialsProvider", LambdaAccountCredentialsProvider.class),
+                Pair.of("lambdaArtifactStore", S3LambdaArtifactStore.class),
+                Pair.of("Aws.LambdaMultiRegionDeploymentStage", LambdaMultiRegionDeploymentStage.class),
+                Pair.of("lambdaMultiRegionPrepareTask", LambdaMultiRegionPrepareTask.class),
+                Pair.of("lambdaMultiTargetDeployTask", LambdaMultiTargetDeployTask.class),
+                Pair.of("Aws.LambdaBulkDeploymentStage", LambdaBulkDeploymentStage.class),
+                Pair.of("lambdaBulkPrepareTask", LambdaBulkPrepareTask.class),
+                Pair.of("Aws.LambdaPowerTuningStage", LambdaPowerTuningStage.class),
+                Pair.of("lambdaPowerTuningTask", LambdaPowerTuningTask.class)
         );
         beanList.forEach( curr -> {
             BeanDefinition lazyLoadCredentialsRepositoryDefinition = primaryBeanDefinitionFor(curr.getRight());
@@ -101,10 +146,13 @@ public class LambdaSpringLoaderPlugin extends SpringLoaderPlugin {
         return  Arrays.asList("com.amazon.aws.spinnaker.plugin.lambda",
                               "com.amazon.aws.spinnaker.plugin.lambda.delete",
                               "com.amazon.aws.spinnaker.plugin.lambda.eventconfig",
+                              "com.amazon.aws.spinnaker.plugin.lambda.multitarget",
+                              "com.amazon.aws.spinnaker.plugin.lambda.powertuning",
                               "com.amazon.aws.spinnaker.plugin.lambda.upsert",
                               "com.amazon.aws.spinnaker.plugin.lambda.utils",
                               "com.amazon.aws.spinnaker.plugin.lambda.verify",
                               "com.amazon.aws.spinnaker.plugin.lambda.traffic",
+                              "com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics",
                               "com.amazon.aws.spinnaker.plugins.lambda.updatecode");
     }
 }
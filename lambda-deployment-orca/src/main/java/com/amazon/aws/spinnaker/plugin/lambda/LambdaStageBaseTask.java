@@ -15,6 +15,9 @@
  */
 
 package com.amazon.aws.spinnaker.plugin.lambda;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverResultObject;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
 import com.netflix.spinnaker.orca.api.pipeline.Task;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
 import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
@@ -86,6 +89,21 @@ public interface LambdaStageBaseTask extends Task {
         String url = ldso.getUrl() != null ? ldso.getUrl() : "";
         this.addToTaskContext(stage, urlKey, url);
     }
+    /**
+     * Copy the version and ARN reported by a clouddriver task to the outputs. Unlike the /functions cache,
+     * the task result reflects the operation as soon as it completes.
+     * @return the version, or $LATEST if the task did not report one
+     */
+    default String addVersionToOutput(StageExecution stage, LambdaCloudDriverTaskResults taskResult) {
+        LambdaCloudDriverResultObject result = taskResult.getResults();
+        String version = result != null && result.getVersion() != null ? result.getVersion() : "$LATEST";
+        addToOutput(stage, LambdaStageConstants.versionIdKey, version);
+        if (result != null && result.getFunctionArn() != null) {
+            addToOutput(stage, LambdaStageConstants.functionARNKey, result.getFunctionArn());
+        }
+        return version;
+    }
+
     default TaskResult taskComplete(StageExecution stage) {
         return TaskResult.builder(ExecutionStatus.SUCCEEDED).context(getTaskContext(stage)).outputs(stage.getOutputs()).build();
     }
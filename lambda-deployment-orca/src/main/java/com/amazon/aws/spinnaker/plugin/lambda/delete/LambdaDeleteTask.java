@@ -19,6 +19,7 @@ package com.amazon.aws.spinnaker.plugin.lambda.delete;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
 import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaDeleteStageInput;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaVersionPruneResult;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
@@ -46,6 +47,9 @@ public class LambdaDeleteTask  implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Autowired
+    private LambdaVersionPruner pruner;
+
     private static String CLOUDDRIVER_DELETE_LAMBDA_PATH = "/aws/ops/deleteLambdaFunction";
 
     @NotNull
@@ -70,20 +74,15 @@ public class LambdaDeleteTask  implements LambdaStageBaseTask {
 
         addToTaskContext(stage, "deleteTask:deleteVersion", versionToDelete);
 
-        if (!versionToDelete.contains(",")) {
+        if (!versionToDelete.contains(",") && !ldi.getVersion().startsWith("$MOVING")) {
             ldi.setQualifier(versionToDelete);
             return formTaskResult(stage, deleteLambdaVersion(ldi), stage.getOutputs());
         }
 
-        String[] allVersionsList = versionToDelete.split(",");
-        List<String> urlList = new ArrayList<String>();
-
-        for (String currVersion : allVersionsList) {
-            ldi.setQualifier((String) currVersion);
-            LambdaCloudOperationOutput ldso = deleteLambdaVersion(ldi);
-            urlList.add(ldso.getUrl());
-        }
-        addToTaskContext(stage, "urlList", urlList);
+        LambdaVersionPruneResult pruned = pruner.prune(ldi, utils.findLatestLambda(stage), Arrays.asList(versionToDelete.split(",")));
+        addToTaskContext(stage, "urlList", pruned.getUrlList());
+        addToOutput(stage, "deleteTask:deletedVersions", pruned.getDeletedVersions());
+        addToOutput(stage, "deleteTask:skippedVersions", pruned.getSkippedVersions());
         return taskComplete(stage);
     }
 
@@ -104,7 +103,7 @@ public class LambdaDeleteTask  implements LambdaStageBaseTask {
             return ldi.getVersionNumber();
         }
 
-        LambdaDefinition lf = utils.findLambda(stage);
+        LambdaDefinition lf = utils.findLatestLambda(stage);
         if (lf != null) {
             return utils.getCanonicalVersion(lf, ldi.getVersion(), ldi.getVersionNumber(), ldi.getRetentionNumber());
         }
@@ -123,4 +122,3 @@ public class LambdaDeleteTask  implements LambdaStageBaseTask {
         return resp;
     }
 }
-
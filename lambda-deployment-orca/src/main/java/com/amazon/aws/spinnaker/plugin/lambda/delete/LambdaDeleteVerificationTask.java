@@ -17,7 +17,7 @@
 package com.amazon.aws.spinnaker.plugin.lambda.delete;
 
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
 import com.netflix.spinnaker.orca.api.pipeline.Task;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
@@ -31,6 +31,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 public class LambdaDeleteVerificationTask implements LambdaStageBaseTask {
@@ -41,23 +42,51 @@ public class LambdaDeleteVerificationTask implements LambdaStageBaseTask {
     CloudDriverConfigurationProperties props;
 
     @Autowired
-    private LambdaCloudDriverUtils utils;
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
+    private static final String VERIFIED_URLS_KEY = "deleteTask:verifiedUrls";
 
     @NotNull
     @Override
     public TaskResult execute(@NotNull StageExecution stage) {
         prepareTask(stage);
         Map<String, Object> stageContext = stage.getContext();
+        List<String> urls = new ArrayList<>();
         String url = (String)stageContext.get("url");
         if (url != null) {
-            LambdaCloudDriverTaskResults op = utils.verifyStatus(url);
+            urls.add(url);
+        }
+        List<String> urlList = (List<String>)stageContext.get("urlList");
+        if (urlList != null) {
+            urls.addAll(urlList);
+        }
+
+        // Deletes that finished on an earlier poll are not checked again.
+        List<String> verified = (List<String>)stageContext.getOrDefault(VERIFIED_URLS_KEY, new ArrayList<>());
+        Map<String, CompletableFuture<LambdaCloudDriverTaskResults>> checks = new LinkedHashMap<>();
+        for (String curr : urls) {
+            if (!verified.contains(curr)) {
+                checks.put(curr, asyncUtils.verifyStatusAsync(curr));
+            }
+        }
+
+        boolean running = false;
+        for (Map.Entry<String, CompletableFuture<LambdaCloudDriverTaskResults>> check : checks.entrySet()) {
+            LambdaCloudDriverTaskResults op = LambdaCloudDriverAsyncUtils.join(check.getValue());
             if (!op.getStatus().isCompleted()) {
-                return TaskResult.builder(ExecutionStatus.RUNNING).build();
+                running = true;
+                continue;
             }
             if (op.getStatus().isFailed()) {
-                List<String> allMessages = Arrays.asList(op.getErrors().getMessage());
-                return formErrorListTaskResult(stage, allMessages);
+                return formErrorListTaskResult(stage, Arrays.asList(op.getErrors().getMessage()));
             }
+            verified.add(check.getKey());
+        }
+        stageContext.put(VERIFIED_URLS_KEY, verified);
+        if (running) {
+            return TaskResult.builder(ExecutionStatus.RUNNING).build();
+        }
+        if (!urls.isEmpty()) {
             copyContextToOutput(stage);
         }
         addToOutput(stage, "deleteTask", "done");
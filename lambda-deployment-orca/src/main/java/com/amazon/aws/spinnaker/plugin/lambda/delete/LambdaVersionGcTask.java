@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.delete;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaDeleteStageInput;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaVersionGcInput;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaVersionPruneResult;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Deletes old versions of every function of the application in one account and region.
+ * The newest retentionNumber versions of each function are kept, as is any version an alias refers to.
+ * Deletes for all functions are submitted together; the resulting task urls are verified by
+ * LambdaDeleteVerificationTask.
+ */
+@Component
+public class LambdaVersionGcTask implements LambdaStageBaseTask {
+    private static final Logger logger = LoggerFactory.getLogger(LambdaVersionGcTask.class);
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    private LambdaVersionPruner pruner;
+
+    @NotNull
+    @Override
+    public TaskResult execute(@NotNull StageExecution stage) {
+        logger.debug("Executing LambdaVersionGcTask...");
+        prepareTask(stage);
+        LambdaVersionGcInput inp = utils.getInput(stage, LambdaVersionGcInput.class);
+        String appName = stage.getExecution().getApplication();
+        if (inp.getAccount() == null || inp.getRegion() == null) {
+            return formErrorTaskResult(stage, "account and region are required");
+        }
+        if (inp.getRetentionNumber() == null || inp.getRetentionNumber() < 0) {
+            return formErrorTaskResult(stage, "retentionNumber must be zero or more");
+        }
+
+        String prefix = String.format("%s-", appName);
+        Map<String, CompletableFuture<LambdaVersionPruneResult>> pruning = new TreeMap<>();
+        utils.listLambdas(inp.getAccount(), inp.getRegion()).forEach((functionName, lf) -> {
+            if (!functionName.startsWith(prefix)) {
+                return;
+            }
+            List<String> revisions = utils.getSortedRevisions(lf);
+            if (revisions.size() <= inp.getRetentionNumber()) {
+                return;
+            }
+            LambdaDeleteStageInput del = LambdaDeleteStageInput.builder()
+                    .appName(appName)
+                    .account(inp.getAccount())
+                    .region(inp.getRegion())
+                    .functionName(functionName)
+                    .build();
+            pruning.put(functionName, pruner.pruneAsync(del, lf, revisions.subList(inp.getRetentionNumber(), revisions.size())));
+        });
+        LambdaCloudDriverAsyncUtils.joinAll(new ArrayList<>(pruning.values()));
+
+        List<String> urlList = new ArrayList<>();
+        Map<String, Object> summary = new TreeMap<>();
+        pruning.forEach((functionName, future) -> {
+            LambdaVersionPruneResult result = future.join();
+            urlList.addAll(result.getUrlList());
+            Map<String, Object> functionSummary = new HashMap<>();
+            functionSummary.put("deletedVersions", result.getDeletedVersions());
+            functionSummary.put("skippedVersions", result.getSkippedVersions());
+            summary.put(functionName, functionSummary);
+        });
+        logger.info(String.format("Deleting %d versions across %d functions of %s in %s/%s",
+                urlList.size(), pruning.size(), appName, inp.getAccount(), inp.getRegion()));
+        addToTaskContext(stage, "urlList", urlList);
+        addToOutput(stage, "versionGc", summary);
+        return taskComplete(stage);
+    }
+}
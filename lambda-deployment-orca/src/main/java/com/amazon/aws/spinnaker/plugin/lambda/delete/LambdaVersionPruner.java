@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.delete;
+
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaDeleteStageInput;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaVersionPruneResult;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.amazonaws.services.lambda.model.AliasConfiguration;
+import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes a set of published versions of one function.
+ * Every delete is submitted at once and at most maxConcurrentDeletes of them are in flight per
+ * account and region. Versions that an alias points to, either directly or through its routing
+ * config, are left alone since lambda would reject the delete and the alias still serves traffic.
+ */
+@Component
+public class LambdaVersionPruner {
+    private static final Logger logger = LoggerFactory.getLogger(LambdaVersionPruner.class);
+    private static final String CLOUDDRIVER_DELETE_LAMBDA_PATH = "/aws/ops/deleteLambdaFunction";
+
+    @Autowired
+    CloudDriverConfigurationProperties props;
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
+    @Value("${lambdaPlugin.versionPruning.maxConcurrentDeletes:5}")
+    private int maxConcurrentDeletes;
+
+    public LambdaVersionPruneResult prune(LambdaDeleteStageInput inp, LambdaDefinition lf, Collection<String> versions) {
+        return LambdaCloudDriverAsyncUtils.join(pruneAsync(inp, lf, versions));
+    }
+
+    /**
+     * Submit the deletes without waiting for them, so that several functions can be pruned together.
+     * Must be called on the task's thread.
+     */
+    public CompletableFuture<LambdaVersionPruneResult> pruneAsync(LambdaDeleteStageInput inp, LambdaDefinition lf, Collection<String> versions) {
+        Set<String> protectedVersions = versionsReferencedByAliases(lf);
+        List<String> deleted = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        List<CompletableFuture<String>> deletions = new ArrayList<>();
+        String limiterKey = String.format("deleteVersion/%s/%s", inp.getAccount(), inp.getRegion());
+
+        for (String version : versions) {
+            if (version == null || version.isEmpty() || "$LATEST".equals(version)) {
+                continue;
+            }
+            if (protectedVersions.contains(version)) {
+                logger.info(String.format("Not deleting version %s of %s, an alias still refers to it", version, inp.getFunctionName()));
+                skipped.add(version);
+                continue;
+            }
+            deleted.add(version);
+            deletions.add(deleteVersionAsync(inp, version, limiterKey));
+        }
+
+        return CompletableFuture.allOf(deletions.toArray(new CompletableFuture[0])).thenApply(x -> LambdaVersionPruneResult.builder()
+                .deletedVersions(deleted)
+                .skippedVersions(skipped)
+                .urlList(deletions.stream().map(CompletableFuture::join).collect(Collectors.toList()))
+                .build());
+    }
+
+    public static Set<String> versionsReferencedByAliases(LambdaDefinition lf) {
+        Set<String> versions = new HashSet<>();
+        if (lf == null || lf.getAliasConfigurations() == null) {
+            return versions;
+        }
+        for (AliasConfiguration alias : lf.getAliasConfigurations()) {
+            if (alias.getFunctionVersion() != null) {
+                versions.add(alias.getFunctionVersion());
+            }
+            if (alias.getRoutingConfig() != null && alias.getRoutingConfig().getAdditionalVersionWeights() != null) {
+                versions.addAll(alias.getRoutingConfig().getAdditionalVersionWeights().keySet());
+            }
+        }
+        return versions;
+    }
+
+    private CompletableFuture<String> deleteVersionAsync(LambdaDeleteStageInput inp, String version, String limiterKey) {
+        LambdaDeleteStageInput request = LambdaDeleteStageInput.builder()
+                .appName(inp.getAppName())
+                .account(inp.getAccount())
+                .credentials(inp.getAccount())
+                .region(inp.getRegion())
+                .functionName(inp.getFunctionName())
+                .qualifier(version)
+                .build();
+        final String baseUrl = props.getCloudDriverBaseUrl();
+        String endPoint = baseUrl + CLOUDDRIVER_DELETE_LAMBDA_PATH;
+        return asyncUtils.postToCloudDriverAsync(endPoint, utils.asString(request), limiterKey, maxConcurrentDeletes).thenApply(respObj -> {
+            String url = baseUrl + respObj.getResourceUri();
+            logger.debug("Posted to cloudDriver for deleteLambda: " + url);
+            return url;
+        });
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.eventconfig;
+
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaEventConfigurationDescription;
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaEventMappingPlan;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaEventSourceMapping;
+import com.amazonaws.services.lambda.model.DestinationConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Works out the fewest operations that bring a function's event source mappings to the desired state.
+ * A mapping that already matches is left alone, since re-creating a stream mapping resets its read position.
+ * Attributes left empty in the request are not compared. The starting position cannot be updated in place,
+ * so a mapping whose starting position changed is deleted and created again. When several mappings connect the
+ * same event source to the function, one is kept, preferring one that already matches, and the others are deleted.
+ */
+public class LambdaEventMappingReconciler {
+    private static final String DISABLED_STATE = "Disabled";
+    private static final String DISABLING_STATE = "Disabling";
+
+    /**
+     * @param desired the mappings requested for the function or alias
+     * @param existingBySource the mappings that currently point at the same function or alias, keyed by event source ARN
+     * @param compareStartingPosition whether the request set the starting position explicitly
+     */
+    public static LambdaEventMappingPlan reconcile(List<LambdaEventConfigurationDescription> desired,
+                                                   Map<String, List<LambdaEventSourceMapping>> existingBySource,
+                                                   boolean compareStartingPosition) {
+
+        LambdaEventMappingPlan plan = LambdaEventMappingPlan.builder()
+                .creates(new ArrayList<>())
+                .updates(new ArrayList<>())
+                .recreates(new ArrayList<>())
+                .deletes(new ArrayList<>())
+                .build();
+        for (LambdaEventConfigurationDescription event : desired) {
+            List<LambdaEventSourceMapping> mapped = existingBySource.getOrDefault(event.getEventSourceArn(), Collections.emptyList());
+            LambdaEventSourceMapping current = mapped.stream()
+                    .filter(x -> !(compareStartingPosition && startingPositionChanged(event, x)) && differences(event, x).isEmpty())
+                    .findFirst()
+                    .orElse(mapped.isEmpty() ? null : mapped.get(0));
+            mapped.stream().filter(x -> x != current).forEach(plan.getDeletes()::add);
+            if (current == null) {
+                plan.getCreates().add(event);
+            } else if (compareStartingPosition && startingPositionChanged(event, current)) {
+                plan.getDeletes().add(current);
+                plan.getRecreates().add(event);
+            } else if (!differences(event, current).isEmpty()) {
+                event.setUuid(current.getUUID());
+                plan.getUpdates().add(event);
+            } else {
+                plan.setUnchanged(plan.getUnchanged() + 1);
+            }
+        }
+
+        Set<String> desiredSources = desired.stream()
+                .map(LambdaEventConfigurationDescription::getEventSourceArn)
+                .collect(Collectors.toSet());
+        existingBySource.forEach((eventSourceArn, mappings) -> {
+            if (!desiredSources.contains(eventSourceArn)) {
+                plan.getDeletes().addAll(mappings);
+            }
+        });
+        return plan;
+    }
+
+    /**
+     * @return the names of the attributes that an update of the mapping would change
+     */
+    static List<String> differences(LambdaEventConfigurationDescription desired, LambdaEventSourceMapping current) {
+        List<String> changed = new ArrayList<>();
+        if (desired.getBatchsize() > 0 && !Objects.equals(desired.getBatchsize(), current.getBatchSize())) {
+            changed.add("batchsize");
+        }
+        compare(changed, "maxBatchingWindowSecs", desired.getMaxBatchingWindowSecs(), current.getMaximumBatchingWindowInSeconds());
+        compare(changed, "parallelizationFactor", desired.getParallelizationFactor(), current.getParallelizationFactor());
+        compare(changed, "maxRetryAttempts", desired.getMaxRetryAttempts(), current.getMaximumRetryAttempts());
+        compare(changed, "maxRecordAgeSecs", desired.getMaxRecordAgeSecs(), current.getMaximumRecordAgeInSeconds());
+        compare(changed, "bisectBatchOnError", desired.getBisectBatchOnError(), current.getBisectBatchOnFunctionError());
+        compare(changed, "tumblingWindowSecs", desired.getTumblingWindowSecs(), current.getTumblingWindowInSeconds());
+        compare(changed, "destinationConfig.onFailure", destination(desired, "onFailure"), currentOnFailure(current));
+        compare(changed, "destinationConfig.onSuccess", destination(desired, "onSuccess"), currentOnSuccess(current));
+        boolean currentlyEnabled = !DISABLED_STATE.equals(current.getState()) && !DISABLING_STATE.equals(current.getState());
+        if (desired.isEnabled() != currentlyEnabled) {
+            changed.add("enabled");
+        }
+        return changed;
+    }
+
+    private static boolean startingPositionChanged(LambdaEventConfigurationDescription desired, LambdaEventSourceMapping current) {
+        return desired.getStartingPosition() != null && current.getStartingPosition() != null
+                && !desired.getStartingPosition().equals(current.getStartingPosition());
+    }
+
+    private static void compare(List<String> changed, String attribute, Object desired, Object current) {
+        if (desired != null && !desired.equals(current)) {
+            changed.add(attribute);
+        }
+    }
+
+    private static String destination(LambdaEventConfigurationDescription desired, String kind) {
+        if (desired.getDestinationConfig() == null || !(desired.getDestinationConfig().get(kind) instanceof Map)) {
+            return null;
+        }
+        return (String) ((Map<String, Object>) desired.getDestinationConfig().get(kind)).get("destination");
+    }
+
+    private static String currentOnFailure(LambdaEventSourceMapping current) {
+        DestinationConfig config = current.getDestinationConfig();
+        return config != null && config.getOnFailure() != null ? config.getOnFailure().getDestination() : null;
+    }
+
+    private static String currentOnSuccess(LambdaEventSourceMapping current) {
+        DestinationConfig config = current.getDestinationConfig();
+        return config != null && config.getOnSuccess() != null ? config.getOnSuccess().getDestination() : null;
+    }
+}
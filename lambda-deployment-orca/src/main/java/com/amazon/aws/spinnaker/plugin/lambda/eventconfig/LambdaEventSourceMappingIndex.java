@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.eventconfig;
+
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaEventSourceMapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A function's event source mappings keyed by the function or alias ARN they invoke and then by event source ARN.
+ * Built once per task, so that finding the mapping for an event source does not scan every mapping of
+ * the function. Several mappings can connect the same event source and target; all of them are kept, in the
+ * order clouddriver reported them.
+ */
+public class LambdaEventSourceMappingIndex {
+    private final Map<String, Map<String, List<LambdaEventSourceMapping>>> byFunctionArn = new HashMap<>();
+
+    public LambdaEventSourceMappingIndex(LambdaDefinition lf) {
+        if (lf.getEventSourceMappings() == null) {
+            return;
+        }
+        lf.getEventSourceMappings().stream()
+                .filter(x -> x.getFunctionArn() != null && x.getEventSourceArn() != null && !x.getEventSourceArn().isEmpty())
+                .forEach(x -> byFunctionArn
+                        .computeIfAbsent(x.getFunctionArn(), k -> new LinkedHashMap<>())
+                        .computeIfAbsent(x.getEventSourceArn(), k -> new ArrayList<>())
+                        .add(x));
+    }
+
+    /**
+     * @return the mappings that invoke the function or alias, keyed by event source ARN
+     */
+    public Map<String, List<LambdaEventSourceMapping>> forFunction(String functionArn) {
+        return Collections.unmodifiableMap(byFunctionArn.getOrDefault(functionArn, Collections.emptyMap()));
+    }
+
+    /**
+     * @return the first mapping that connects the event source to the function or alias
+     */
+    public Optional<LambdaEventSourceMapping> find(String functionArn, String eventSourceArn) {
+        return forFunction(functionArn).getOrDefault(eventSourceArn, Collections.emptyList()).stream().findFirst();
+    }
+}
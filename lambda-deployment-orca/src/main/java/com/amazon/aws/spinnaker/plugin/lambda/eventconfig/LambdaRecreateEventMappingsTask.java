@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.eventconfig;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaEventConfigurationDescription;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCacheRefreshInput;
+import com.netflix.spinnaker.orca.api.pipeline.RetryableTask;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the event source mappings whose starting position changed, once their old mapping is gone.
+ * lambda rejects a second mapping between the same event source and function, so each poll refreshes the
+ * function in clouddriver's cache and waits until none of the old mappings is listed anymore.
+ */
+@Component
+public class LambdaRecreateEventMappingsTask implements LambdaStageBaseTask, RetryableTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaRecreateEventMappingsTask.class);
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    private LambdaUpdateEventConfigurationTask updateEventConfigurationTask;
+
+    @Value("${lambdaPlugin.eventMappings.recreateBackoffMillis:5000}")
+    private long backoffMillis;
+
+    @Value("${lambdaPlugin.eventMappings.recreateTimeoutMillis:600000}")
+    private long timeoutMillis;
+
+    @Nonnull
+    @Override
+    public TaskResult execute(@Nonnull StageExecution stage) {
+        logger.debug("Executing LambdaRecreateEventMappingsTask...");
+        prepareTask(stage);
+        List<Object> stored = (List<Object>) stage.getContext().get(LambdaStageConstants.eventMappingsToRecreateKey);
+        if (stored == null || stored.isEmpty()) {
+            return TaskResult.builder(ExecutionStatus.SUCCEEDED).outputs(stage.getOutputs()).build();
+        }
+        List<LambdaEventConfigurationDescription> pending = stored.stream()
+                .map(x -> utils.convertValue(x, LambdaEventConfigurationDescription.class))
+                .collect(Collectors.toList());
+
+        LambdaCacheRefreshInput inp = utils.getInput(stage, LambdaCacheRefreshInput.class);
+        utils.refreshFunctionCache(inp.getAccount(), inp.getRegion(), stage.getExecution().getApplication(), inp.getFunctionName());
+        LambdaDefinition lf = utils.findLatestLambda(stage);
+        if (lf == null) {
+            stage.getContext().remove(LambdaStageConstants.eventMappingsToRecreateKey);
+            return formErrorTaskResult(stage, "Could not find lambda to re-create event source mappings for");
+        }
+        LambdaEventSourceMappingIndex index = new LambdaEventSourceMappingIndex(lf);
+        if (pending.stream().anyMatch(x -> isMapped(index, lf, x))) {
+            logger.debug("Waiting for replaced event source mappings to be deleted");
+            return TaskResult.builder(ExecutionStatus.RUNNING).build();
+        }
+
+        List<CompletableFuture<LambdaCloudOperationOutput>> creates = pending.stream()
+                .map(updateEventConfigurationTask::upsertEvent)
+                .collect(Collectors.toList());
+        List<String> urls = LambdaCloudDriverAsyncUtils.joinAll(creates).stream()
+                .map(LambdaCloudOperationOutput::getUrl)
+                .collect(Collectors.toList());
+        stage.getContext().remove(LambdaStageConstants.eventMappingsToRecreateKey);
+        Map<String, Object> context = new HashMap<>();
+        context.put(LambdaStageConstants.eventTaskKey, urls);
+        return TaskResult.builder(ExecutionStatus.SUCCEEDED).context(context).outputs(stage.getOutputs()).build();
+    }
+
+    private boolean isMapped(LambdaEventSourceMappingIndex index, LambdaDefinition lf, LambdaEventConfigurationDescription event) {
+        String targetArn = event.getQualifier() != null
+                ? String.format("%s:%s", lf.getFunctionArn(), event.getQualifier())
+                : lf.getFunctionArn();
+        return index.find(targetArn, event.getEventSourceArn()).isPresent();
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@Nonnull StageExecution stage) {
+        stage.getContext().remove(LambdaStageConstants.eventMappingsToRecreateKey);
+        return formErrorTaskResult(stage, "Timed out waiting for replaced event source mappings to be deleted");
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return backoffMillis;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+}
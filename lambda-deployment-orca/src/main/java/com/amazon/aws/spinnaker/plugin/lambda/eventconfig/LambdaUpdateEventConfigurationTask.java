@@ -20,15 +20,13 @@ import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
 import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaDeleteEventTaskInput;
 import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaEventConfigurationDescription;
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaEventMappingPlan;
 import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaUpdateEventConfigurationTaskInput;
-import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaUpdateEventConfigurationTaskOutput;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.*;
-import com.amazonaws.services.lambda.model.EventSourceMappingConfiguration;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
 import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
 import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
 import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
-import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.pf4j.util.StringUtils;
 import org.slf4j.Logger;
@@ -37,7 +35,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 public class LambdaUpdateEventConfigurationTask implements LambdaStageBaseTask {
@@ -55,19 +55,38 @@ public class LambdaUpdateEventConfigurationTask implements LambdaStageBaseTask {
     @Autowired
     LambdaCloudDriverUtils utils;
 
+    @Autowired
+    LambdaCloudDriverAsyncUtils asyncUtils;
+
     private static final String DEFAULT_STARTING_POSITION = "LATEST";
 
     @NotNull
     @Override
     public TaskResult execute(@NotNull StageExecution stage) {
         logger.debug("Executing LambdaUpdateEventConfigurationTask");
+        prepareTask(stage);
+        CompletableFuture<List<LambdaCloudOperationOutput>> submitted = submitEventConfiguration(stage);
+        if (submitted == null) {
+            return formErrorTaskResult(stage, String.format("Could not find lambda to update event config for"));
+        }
+        Map<String, Object> context = buildContextOutput(LambdaCloudDriverAsyncUtils.join(submitted));
+        return TaskResult.builder(ExecutionStatus.SUCCEEDED).context(context).outputs(stage.getOutputs()).build();
+    }
+
+    /**
+     * Submits the event source mapping deletions and upserts together, without waiting for clouddriver to accept them.
+     * Completes with the deletions and upserts to verify. Returns null if the function could not be found.
+     * Mappings to be created again once their old mapping is deleted are left in the stage context for
+     * LambdaRecreateEventMappingsTask.
+     */
+    public CompletableFuture<List<LambdaCloudOperationOutput>> submitEventConfiguration(StageExecution stage) {
         cloudDriverUrl = props.getCloudDriverBaseUrl();
         LambdaUpdateEventConfigurationTaskInput taskInput = utils.getInput(stage, LambdaUpdateEventConfigurationTaskInput.class);
         taskInput.setAppName(stage.getExecution().getApplication());
         Boolean justCreated = (Boolean) stage.getContext().getOrDefault(LambdaStageConstants.lambaCreatedKey, false);
-        LambdaDefinition lf = utils.findLambda(stage, justCreated);
+        LambdaDefinition lf = utils.findLatestLambda(stage, justCreated);
         if (lf == null) {
-            return formErrorTaskResult(stage, String.format("Could not find lambda to update event config for"));
+            return null;
         }
         String functionArn = lf.getFunctionArn();
         if (StringUtils.isNotNullOrEmpty(taskInput.getAliasName())) {
@@ -75,84 +94,64 @@ public class LambdaUpdateEventConfigurationTask implements LambdaStageBaseTask {
             functionArn = String.format("%s:%s", lf.getFunctionArn(), taskInput.getAliasName());
             taskInput.setQualifier(taskInput.getAliasName());
         }
-        return updateEventsForLambdaFunction(taskInput, lf, functionArn);
+        return updateEventsForLambdaFunction(stage, taskInput, new LambdaEventSourceMappingIndex(lf), functionArn);
     }
 
-   private TaskResult updateEventsForLambdaFunction(LambdaUpdateEventConfigurationTaskInput taskInput, LambdaDefinition lf, String functionArn) {
+    private CompletableFuture<List<LambdaCloudOperationOutput>> updateEventsForLambdaFunction(StageExecution stage, LambdaUpdateEventConfigurationTaskInput taskInput, LambdaEventSourceMappingIndex index, String functionArn) {
+        Map<String, List<LambdaEventSourceMapping>> existing = index.forFunction(functionArn);
         if (taskInput.getTriggerArns() == null || taskInput.getTriggerArns().size() == 0) {
-            deleteAllExistingEvents(taskInput, lf, functionArn);
-            Map<String, Object> context = new HashMap<>();
-            return TaskResult.builder(ExecutionStatus.SUCCEEDED).context(context).build();
+            return allOf(deleteAllExistingEvents(taskInput, existing));
         }
-        deleteRemovedAndChangedEvents(taskInput, lf, functionArn);
-        LambdaUpdateEventConfigurationTaskOutput ldso = updateEventConfiguration(taskInput, lf, functionArn);
-        Map<String, Object> context = buildContextOutput(ldso);
-        return TaskResult.builder(ExecutionStatus.SUCCEEDED).context(context).build();
+        boolean compareStartingPosition = StringUtils.isNotNullOrEmpty(taskInput.getStartingPosition());
+        taskInput.setCredentials(taskInput.getAccount());
+        List<LambdaEventConfigurationDescription> desired = taskInput.getTriggerArns().stream()
+                .map(curr -> formEventObject(curr, taskInput))
+                .collect(Collectors.toList());
+        LambdaEventMappingPlan plan = LambdaEventMappingReconciler.reconcile(desired, existing, compareStartingPosition);
+        addToOutput(stage, LambdaStageConstants.eventMappingChangesKey, summarize(plan));
+        if (!plan.getRecreates().isEmpty()) {
+            stage.getContext().put(LambdaStageConstants.eventMappingsToRecreateKey, plan.getRecreates());
+        }
+
+        List<CompletableFuture<LambdaCloudOperationOutput>> all = plan.getDeletes().stream()
+                .map(x -> deleteMapping(x, taskInput))
+                .collect(Collectors.toList());
+        Stream.concat(plan.getCreates().stream(), plan.getUpdates().stream())
+                .map(this::upsertEvent)
+                .forEach(all::add);
+        return allOf(all);
     }
 
-    /**
-     * New configuration has zero events. So find all existing events in the lambda cache and delete them all.
-     * @param taskInput
-     * @param lf
-     */
-    private void deleteAllExistingEvents(LambdaUpdateEventConfigurationTaskInput taskInput, LambdaDefinition lf, String targetArn) {
-        List<String> eventArnList = getExistingEvents(lf, targetArn);
-        eventArnList.stream().forEach( eventArn -> { deleteEvent(eventArn, taskInput, lf, targetArn); });
+    private static CompletableFuture<List<LambdaCloudOperationOutput>> allOf(List<CompletableFuture<LambdaCloudOperationOutput>> operations) {
+        return CompletableFuture.allOf(operations.toArray(new CompletableFuture[0]))
+                .thenApply(x -> operations.stream().map(CompletableFuture::join).collect(Collectors.toList()));
     }
 
     /**
-     * For each eventTriggerArn that already exists at backend:
-     *      delete from backend if it does not exist in input
+     * New configuration has zero events. So delete every existing mapping of the function or alias.
      * @param taskInput
-     * @param lf
-     * @return
+     * @param existing the mappings of the function or alias, keyed by event source ARN
      */
-    private LambdaUpdateEventConfigurationTaskOutput deleteRemovedAndChangedEvents(LambdaUpdateEventConfigurationTaskInput taskInput, LambdaDefinition lf, String targetArn) {
-        LambdaUpdateEventConfigurationTaskOutput ans = LambdaUpdateEventConfigurationTaskOutput.builder().build();
-        ans.setEventOutputs(new ArrayList<LambdaCloudOperationOutput>());
-        List<String> eventArnList = getExistingEvents(lf, targetArn);
-        //Does not deal with change in batch size(s)
-        eventArnList.stream()
-                    .filter( x-> { return !taskInput.getTriggerArns().contains(x); } )
-                    .forEach( eventArn -> { deleteEvent(eventArn, taskInput, lf, targetArn); });
-        return ans;
-    }
-
-    List<String> getExistingEvents(LambdaDefinition lf, String targetArn) {
-        List<EventSourceMappingConfiguration> esmList = lf.getEventSourceMappings();
-        if (esmList == null) {
-            return new ArrayList<String>();
-        }
-        List<String> allEventArns = esmList.stream().filter(y -> { return y.getFunctionArn().equals(targetArn);})
-                                                    .map(x -> { return x.getEventSourceArn(); })
-                                                    .filter( x-> { return StringUtils.isNotNullOrEmpty(x); } )
+    private List<CompletableFuture<LambdaCloudOperationOutput>> deleteAllExistingEvents(LambdaUpdateEventConfigurationTaskInput taskInput, Map<String, List<LambdaEventSourceMapping>> existing) {
+        return existing.values().stream()
+                .flatMap(List::stream)
+                .map(x -> deleteMapping(x, taskInput))
                 .collect(Collectors.toList());
-        return allEventArns;
     }
 
-    List<Pair<String, Integer>> getExistingEventsDetails(LambdaDefinition lf) {
-        List<EventSourceMappingConfiguration> esmList = lf.getEventSourceMappings();
-        if (esmList == null) {
-            return new ArrayList<Pair<String, Integer>>();
-        }
-        List<Pair<String, Integer>> allEventArns = esmList.stream()
-                                                          .filter( x-> { return StringUtils.isNotNullOrEmpty(x.getEventSourceArn()); } )
-                                                          .map(x -> { return Pair.of(x.getEventSourceArn(), x.getBatchSize()); })
-                                                          .collect(Collectors.toList());
-        return allEventArns;
+    private Map<String, Object> summarize(LambdaEventMappingPlan plan) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("created", plan.getCreates().size());
+        summary.put("updated", plan.getUpdates().size());
+        summary.put("deleted", plan.getDeletes().size() - plan.getRecreates().size());
+        summary.put("recreated", plan.getRecreates().size());
+        summary.put("unchanged", plan.getUnchanged());
+        logger.debug("Event source mapping changes: " + summary);
+        return summary;
     }
 
-    private void deleteEvent(String eventArn, LambdaUpdateEventConfigurationTaskInput ti,  LambdaDefinition lgo, String aliasOrFunctionArn) {
-        logger.debug("To be deleted: " + eventArn);
-        List<EventSourceMappingConfiguration> esmList = lgo.getEventSourceMappings();
-        Optional<EventSourceMappingConfiguration> oo =
-        esmList.stream().filter(x -> {
-            return x.getEventSourceArn().equals(eventArn) && x.getFunctionArn().equals(aliasOrFunctionArn);
-        }).findFirst();
-        if (oo.isEmpty()) {
-            return;
-        }
-        EventSourceMappingConfiguration toDelete = oo.get();
+    private CompletableFuture<LambdaCloudOperationOutput> deleteMapping(LambdaEventSourceMapping toDelete, LambdaUpdateEventConfigurationTaskInput ti) {
+        logger.debug("To be deleted: " + toDelete.getEventSourceArn());
         LambdaDeleteEventTaskInput inp = LambdaDeleteEventTaskInput.builder()
                 .account(ti.getAccount())
                 .credentials(ti.getCredentials())
@@ -165,28 +164,21 @@ public class LambdaUpdateEventConfigurationTask implements LambdaStageBaseTask {
         }
         inp.setUuid(toDelete.getUUID());
 
-        deleteLambdaEventConfig(inp);
+        return deleteLambdaEventConfig(inp);
     }
 
-    private LambdaUpdateEventConfigurationTaskOutput updateEventConfiguration(LambdaUpdateEventConfigurationTaskInput taskInput, LambdaDefinition lf, String targetArn) {
-        LambdaUpdateEventConfigurationTaskOutput ans = LambdaUpdateEventConfigurationTaskOutput.builder().build();
-        ans.setEventOutputs(new ArrayList<LambdaCloudOperationOutput>());
-        taskInput.setCredentials(taskInput.getAccount());
-        String endPoint = cloudDriverUrl + CLOUDDRIVER_UPDATE_EVENT_CONFIGURATION_LAMBDA_PATH;
-
-        final List<String> existingEvents = getExistingEvents(lf, targetArn);
-        taskInput.getTriggerArns().stream()
-               .forEach( curr -> {
-                   LambdaEventConfigurationDescription singleEvent = formEventObject(curr, taskInput);
-                   String rawString = utils.asString(singleEvent);
-                   LambdaCloudDriverResponse respObj = utils.postToCloudDriver(endPoint, rawString);
-                   String url = cloudDriverUrl + respObj.getResourceUri();
-                   logger.debug("Posted to cloudDriver for updateEventConfiguration: " + url);
-                   LambdaCloudOperationOutput z = LambdaCloudOperationOutput.builder().url(url).resourceId(respObj.getResourceUri()).build();
-                   ans.getEventOutputs().add(z);
-               });
-
-        return ans;
+    /**
+     * Creates the mapping, or updates it in place when it carries the uuid of an existing mapping.
+     */
+    CompletableFuture<LambdaCloudOperationOutput> upsertEvent(LambdaEventConfigurationDescription singleEvent) {
+        final String baseUrl = props.getCloudDriverBaseUrl();
+        String endPoint = baseUrl + CLOUDDRIVER_UPDATE_EVENT_CONFIGURATION_LAMBDA_PATH;
+        String rawString = utils.asString(singleEvent);
+        return asyncUtils.postToCloudDriverAsync(endPoint, rawString, singleEvent.getAccount(), singleEvent.getRegion()).thenApply(respObj -> {
+            String url = baseUrl + respObj.getResourceUri();
+            logger.debug("Posted to cloudDriver for updateEventConfiguration: " + url);
+            return LambdaCloudOperationOutput.builder().url(url).resourceId(respObj.getResourceUri()).build();
+        });
     }
 
     private LambdaEventConfigurationDescription formEventObject(String curr, LambdaUpdateEventConfigurationTaskInput taskInput) {
@@ -254,23 +246,24 @@ public class LambdaUpdateEventConfigurationTask implements LambdaStageBaseTask {
         return destinationConfig;
     }
 
-    private LambdaCloudOperationOutput deleteLambdaEventConfig(LambdaDeleteEventTaskInput inp) {
+    private CompletableFuture<LambdaCloudOperationOutput> deleteLambdaEventConfig(LambdaDeleteEventTaskInput inp) {
         inp.setCredentials(inp.getAccount());
-        String endPoint = cloudDriverUrl + CLOUDDRIVER_DELETE_EVENT_CONFIGURATION_LAMBDA_PATH;
+        final String baseUrl = cloudDriverUrl;
+        String endPoint = baseUrl + CLOUDDRIVER_DELETE_EVENT_CONFIGURATION_LAMBDA_PATH;
         String rawString = utils.asString(inp);
-        LambdaCloudDriverResponse respObj = utils.postToCloudDriver(endPoint, rawString);
-        String url = cloudDriverUrl + respObj.getResourceUri();
-        logger.debug("Posted to cloudDriver for deleteLambdaEventConfig: " + url);
-        LambdaCloudOperationOutput resp = LambdaCloudOperationOutput.builder().url(url).build();
-        return resp;
+        return asyncUtils.postToCloudDriverAsync(endPoint, rawString, inp.getAccount(), inp.getRegion()).thenApply(respObj -> {
+            String url = baseUrl + respObj.getResourceUri();
+            logger.debug("Posted to cloudDriver for deleteLambdaEventConfig: " + url);
+            return LambdaCloudOperationOutput.builder().url(url).build();
+        });
     }
 
     /**
      * Fill up with values required for next task
      */
-    private Map<String, Object> buildContextOutput(LambdaUpdateEventConfigurationTaskOutput ldso) {
+    private Map<String, Object> buildContextOutput(List<LambdaCloudOperationOutput> eventOutputs) {
         List<String> urlList = new ArrayList<String>();
-        ldso.getEventOutputs().forEach(x -> {
+        eventOutputs.forEach(x -> {
             urlList.add(x.getUrl());
         });
         Map<String, Object> context = new HashMap<>();
@@ -27,6 +27,7 @@ import java.util.Map;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class LambdaEventConfigurationDescription {
     String credentials, account, region, functionName, appName;
+    String uuid;
     String eventSourceArn;
     boolean enabled;
     int batchsize;
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model;
+
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaEventSourceMapping;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The operations that bring a function's event source mappings to the desired state.
+ * recreates are mappings whose starting position changed; they are created again once their old
+ * mapping, listed in deletes, is gone.
+ */
+@Data
+@Builder
+public class LambdaEventMappingPlan {
+    private List<LambdaEventConfigurationDescription> creates;
+    private List<LambdaEventConfigurationDescription> updates;
+    private List<LambdaEventConfigurationDescription> recreates;
+    private List<LambdaEventSourceMapping> deletes;
+    private int unchanged;
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.invoke;
+
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvocationReport;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the REPORT line out of the base64 log tail returned with an invocation, and aggregates
+ * the reports of several invocations.
+ */
+public final class LambdaInvocationReports {
+    private static final Logger logger = LoggerFactory.getLogger(LambdaInvocationReports.class);
+    private static final Pattern FIELD = Pattern.compile("^\\s*([A-Za-z ]+):\\s*([0-9.]+)\\s*(ms|MB)\\s*$");
+
+    private LambdaInvocationReports() {
+    }
+
+    /**
+     * @return the report, or null if there is no log tail or it has no REPORT line
+     */
+    public static LambdaInvocationReport parse(String logResult) {
+        if (logResult == null || logResult.isEmpty()) {
+            return null;
+        }
+        String log;
+        try {
+            log = new String(Base64.getDecoder().decode(logResult), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invocation log tail is not base64", e);
+            return null;
+        }
+        String reportLine = null;
+        for (String line : log.split("\n")) {
+            if (line.startsWith("REPORT ")) {
+                reportLine = line;
+            }
+        }
+        if (reportLine == null) {
+            return null;
+        }
+
+        LambdaInvocationReport report = LambdaInvocationReport.builder().build();
+        for (String field : reportLine.split("\t")) {
+            Matcher m = FIELD.matcher(field);
+            if (!m.matches()) {
+                continue;
+            }
+            String value = m.group(2);
+            switch (m.group(1).trim()) {
+                case "Duration":
+                    report.setDurationMs(Double.valueOf(value));
+                    break;
+                case "Billed Duration":
+                    report.setBilledDurationMs(Double.valueOf(value));
+                    break;
+                case "Init Duration":
+                    report.setInitDurationMs(Double.valueOf(value));
+                    break;
+                case "Memory Size":
+                    report.setMemorySizeMB(Integer.valueOf(value));
+                    break;
+                case "Max Memory Used":
+                    report.setMaxMemoryUsedMB(Integer.valueOf(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Summary figures over the reports; cold starts are the invocations that have an init duration.
+     */
+    public static Map<String, Object> aggregate(List<LambdaInvocationReport> reports) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("reported", reports.size());
+        metrics.put("coldStarts", reports.stream().filter(x -> x.getInitDurationMs() != null).count());
+        metrics.put("durationMs", summarize(reports, LambdaInvocationReport::getDurationMs));
+        metrics.put("billedDurationMs", summarize(reports, LambdaInvocationReport::getBilledDurationMs));
+        metrics.put("initDurationMs", summarize(reports, LambdaInvocationReport::getInitDurationMs));
+        metrics.put("maxMemoryUsedMB", summarize(reports, LambdaInvocationReport::getMaxMemoryUsedMB));
+        reports.stream()
+                .filter(x -> x.getMemorySizeMB() != null && x.getMaxMemoryUsedMB() != null && x.getMemorySizeMB() > 0)
+                .mapToDouble(x -> x.getMaxMemoryUsedMB() / (double) x.getMemorySizeMB())
+                .max()
+                .ifPresent(x -> metrics.put("maxMemoryUtilization", LambdaStatistics.round(x)));
+        return metrics;
+    }
+
+    private static Map<String, Object> summarize(List<LambdaInvocationReport> reports, Function<LambdaInvocationReport, Number> field) {
+        return LambdaStatistics.summarize(reports.stream().map(field).filter(Objects::nonNull).collect(Collectors.toList()));
+    }
+}
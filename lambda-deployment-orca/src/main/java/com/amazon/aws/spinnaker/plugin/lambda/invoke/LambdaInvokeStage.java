@@ -16,6 +16,7 @@
 
 package com.amazon.aws.spinnaker.plugin.lambda.invoke;
 
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.LambdaCacheRefreshTask;
 import com.netflix.spinnaker.orca.api.pipeline.graph.StageDefinitionBuilder;
 import com.netflix.spinnaker.orca.api.pipeline.graph.TaskNode;
@@ -38,6 +39,10 @@ public class LambdaInvokeStage implements StageDefinitionBuilder {
     @Override
     public void taskGraph(@Nonnull StageExecution stage, @Nonnull TaskNode.Builder builder) {
         logger.debug("taskGraph for Aws.LambdaInvokeStage");
+        if (stage.getContext().get(LambdaStageConstants.loadTestKey) != null) {
+            builder.withTask("lambdaLoadTestTask", LambdaLoadTestTask.class);
+            return;
+        }
         builder.withTask("lambdaInvokeTask", LambdaInvokeTask.class);
         builder.withTask("lambdaInvokeVerificationTask", LambdaInvokeVerificationTask.class);
         builder.withTask("lambdaCacheRefreshTask", LambdaCacheRefreshTask.class);
@@ -19,7 +19,7 @@ package com.amazon.aws.spinnaker.plugin.lambda.invoke;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
 import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvokeStageInput;
 import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaTrafficUpdateInput;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
@@ -35,6 +35,7 @@ import org.springframework.stereotype.Component;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 public class LambdaInvokeTask  implements LambdaStageBaseTask {
@@ -48,6 +49,9 @@ public class LambdaInvokeTask  implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
     static String CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH = "/aws/ops/invokeLambdaFunction";
 
     @NotNull
@@ -61,29 +65,35 @@ public class LambdaInvokeTask  implements LambdaStageBaseTask {
             logger.error("Could not find lambda");
             return this.formErrorTaskResult(stage, "No such lambda found.");
         }
+        LambdaInvokeStageInput ldi = getInvokeInput(stage);
+        List<CompletableFuture<String>> invocations = new ArrayList<>();
+        for (int i= 0; i < ldi.getExecutionCount(); i++) {
+            invocations.add(this.invokeLambdaFunction(ldi));
+        }
+        List<String> urlList = LambdaCloudDriverAsyncUtils.joinAll(invocations);
+        addToTaskContext(stage, "urlList", urlList);
+        return taskComplete(stage);
+    }
+
+    LambdaInvokeStageInput getInvokeInput(StageExecution stage) {
         LambdaInvokeStageInput ldi = utils.getInput(stage, LambdaInvokeStageInput.class);
         LambdaTrafficUpdateInput tui = utils.getInput(stage, LambdaTrafficUpdateInput.class);
         ldi.setPayloadArtifact(tui.getPayloadArtifact().getArtifact());
         ldi.setQualifier(StringUtils.isNullOrEmpty(ldi.getAliasName()) ? "$LATEST" : ldi.getAliasName());
         ldi.setAppName(stage.getExecution().getApplication());
         ldi.setCredentials(ldi.getAccount());
-        List<String> urlList = new ArrayList<String>();
-        for (int i= 0; i < ldi.getExecutionCount(); i++) {
-            String url = this.invokeLambdaFunction(ldi);
-            urlList.add(url);
-        }
-        addToTaskContext(stage, "urlList", urlList);
-        return taskComplete(stage);
+        return ldi;
     }
 
-    private String invokeLambdaFunction(LambdaInvokeStageInput ldi) {
+    CompletableFuture<String> invokeLambdaFunction(LambdaInvokeStageInput ldi) {
         String cloudDriverUrl = props.getCloudDriverBaseUrl();
         String endPoint = cloudDriverUrl + CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH;
         String rawString = utils.asString(ldi);
-        LambdaCloudDriverResponse respObj = utils.postToCloudDriver(endPoint, rawString);
-        String url = cloudDriverUrl + respObj.getResourceUri();
-        logger.debug("Posted to cloudDriver for lambda invocation: " + url);
-        return url;
+        return asyncUtils.postToCloudDriverAsync(endPoint, rawString, ldi.getAccount(), ldi.getRegion()).thenApply(respObj -> {
+            String url = cloudDriverUrl + respObj.getResourceUri();
+            logger.debug("Posted to cloudDriver for lambda invocation: " + url);
+            return url;
+        });
     }
 
     @Override
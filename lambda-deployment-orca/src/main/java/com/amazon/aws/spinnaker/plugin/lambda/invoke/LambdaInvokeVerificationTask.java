@@ -17,6 +17,7 @@
 package com.amazon.aws.spinnaker.plugin.lambda.invoke;
 
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvocationReport;
 import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvokeStageInput;
 import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaCloudDriverInvokeOperationResults;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
@@ -103,6 +104,7 @@ public class LambdaInvokeVerificationTask implements LambdaStageBaseTask {
 
         LambdaInvokeStageInput ldi = utils.getInput(stage, LambdaInvokeStageInput.class);
         List<Map<String, Object>> invokeResultsList = new ArrayList<Map<String, Object>>();
+        List<LambdaInvocationReport> reports = new ArrayList<>();
         listOfTaskResults.stream().forEach(op -> {
             Map<String, Object> invokeResults = null;
             if (op.getRight().getStatus().isFailed()) {
@@ -117,11 +119,17 @@ public class LambdaInvokeVerificationTask implements LambdaStageBaseTask {
                 if ((invokeResults.containsKey("errors")) && StringUtils.isNotNullOrEmpty((String)invokeResults.get("errors"))) {
                     allErrors.add((String)invokeResults.get("errors"));
                 }
+                if (invokeResults.get("report") != null) {
+                    reports.add((LambdaInvocationReport)invokeResults.get("report"));
+                }
             }
             invokeResultsList.add(invokeResults);
         });
 
         addToOutput(stage, "invokeResultsList", invokeResultsList);
+        if (!reports.isEmpty()) {
+            addToOutput(stage, "invokeMetrics", LambdaInvocationReports.aggregate(reports));
+        }
 
         if (allErrors.size() > 0) {
             return formErrorListTaskResult(stage, allErrors);
@@ -168,6 +176,7 @@ public class LambdaInvokeVerificationTask implements LambdaStageBaseTask {
         results.put("response", invokeResponse.getResponseString());
         results.put("errors", invokeResponse.getErrorMessage());
         results.put("logs", invokeResponse.getInvokeResult().getLogResult());
+        results.put("report", LambdaInvocationReports.parse(invokeResponse.getInvokeResult().getLogResult()));
         return results;
     }
 
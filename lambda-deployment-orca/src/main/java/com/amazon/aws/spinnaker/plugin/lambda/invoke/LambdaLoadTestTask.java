@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.invoke;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvocationReport;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvokeStageInput;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaLoadTestConfig;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaLoadTestInvocation;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaLoadTestState;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaLatencyHistogram;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStatistics;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
+import com.netflix.spinnaker.orca.api.pipeline.RetryableTask;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Invokes the function repeatedly, keeping up to concurrency invocations in flight, and reports
+ * throughput, error rate and latency percentiles in invokeResultsList.
+ * Each execution checks the invocations in flight once, starts the ones that are due and hands back to
+ * orca with its progress saved in the stage context; orca runs it again after statusPollMillis.
+ * Latency is the Duration of the REPORT line in each successful invocation's log tail, as Lambda measured it;
+ * invocations without one are counted in unreportedLatencies. The time from submitting the invocation to clouddriver until its task is seen complete is reported
+ * separately as endToEndLatencyMillis; it includes clouddriver's overhead and is only as fine as
+ * statusPollMillis. Both are kept in a LambdaLatencyHistogram.
+ */
+@Component
+public class LambdaLoadTestTask implements LambdaStageBaseTask, RetryableTask {
+    private static final Logger logger = LoggerFactory.getLogger(LambdaLoadTestTask.class);
+    private static final int MAX_ERROR_MESSAGES = 10;
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
+    @Autowired
+    private LambdaInvokeTask invokeTask;
+
+    @Value("${lambdaPlugin.loadTest.statusPollMillis:2000}")
+    private long statusPollMillis;
+
+    @Value("${lambdaPlugin.loadTest.timeoutMillis:3600000}")
+    private long timeoutMillis;
+
+    @NotNull
+    @Override
+    public TaskResult execute(@NotNull StageExecution stage) {
+        logger.debug("Executing LambdaLoadTestTask...");
+        prepareTask(stage);
+        LambdaLoadTestConfig config = utils.convertValue(stage.getContext().get(LambdaStageConstants.loadTestKey), LambdaLoadTestConfig.class);
+        String invalid = validate(config);
+        if (invalid != null) {
+            return formErrorTaskResult(stage, invalid);
+        }
+
+        Object saved = stage.getContext().get(LambdaStageConstants.loadTestStateKey);
+        LambdaLoadTestState state;
+        if (saved == null) {
+            if (utils.findLambda(stage, true) == null) {
+                return formErrorTaskResult(stage, "No such lambda found.");
+            }
+            state = LambdaLoadTestState.builder()
+                    .startedAt(System.currentTimeMillis())
+                    .submitted(0)
+                    .errors(0)
+                    .inFlight(new ArrayList<>())
+                    .durations(new LambdaLatencyHistogram())
+                    .endToEndLatencies(new LambdaLatencyHistogram())
+                    .unreported(0)
+                    .errorMessages(new ArrayList<>())
+                    .build();
+        } else {
+            state = utils.convertValue(saved, LambdaLoadTestState.class);
+        }
+
+        LambdaInvokeStageInput ldi = invokeTask.getInvokeInput(stage);
+        checkInFlight(state);
+        submitDue(config, ldi, state);
+        if (!state.getInFlight().isEmpty() || moreToSubmit(config, state, System.currentTimeMillis())) {
+            stage.getContext().put(LambdaStageConstants.loadTestStateKey, state);
+            return TaskResult.builder(ExecutionStatus.RUNNING).build();
+        }
+
+        state.setFinishedAt(System.currentTimeMillis());
+        stage.getContext().remove(LambdaStageConstants.loadTestStateKey);
+        Map<String, Object> summary = summarize(state);
+        addToOutput(stage, "invokeResultsList", Collections.singletonList(summary));
+        double errorRate = (Double) summary.get("errorRate");
+        if (config.getMaxErrorRate() != null && errorRate > config.getMaxErrorRate()) {
+            return formErrorTaskResult(stage, String.format("Error rate %.2f is above the maximum of %.2f", errorRate, config.getMaxErrorRate()));
+        }
+        return taskComplete(stage);
+    }
+
+    private String validate(LambdaLoadTestConfig config) {
+        if (config.getTotalInvocations() == null && config.getDurationSeconds() == null) {
+            return "A load test needs totalInvocations or durationSeconds";
+        }
+        if (config.getConcurrency() != null && config.getConcurrency() < 1) {
+            return "concurrency must be at least 1";
+        }
+        return null;
+    }
+
+    private boolean moreToSubmit(LambdaLoadTestConfig config, LambdaLoadTestState state, long now) {
+        if (config.getTotalInvocations() != null && state.getSubmitted() >= config.getTotalInvocations()) {
+            return false;
+        }
+        return config.getDurationSeconds() == null || now < state.getStartedAt() + config.getDurationSeconds() * 1000L;
+    }
+
+    /**
+     * Start as many invocations as the concurrency, the total and the rate allow right now.
+     */
+    private void submitDue(LambdaLoadTestConfig config, LambdaInvokeStageInput ldi, LambdaLoadTestState state) {
+        long now = System.currentTimeMillis();
+        if (!moreToSubmit(config, state, now)) {
+            return;
+        }
+        int concurrency = config.getConcurrency() == null ? 1 : config.getConcurrency();
+        long due = concurrency - state.getInFlight().size();
+        if (config.getTotalInvocations() != null) {
+            due = Math.min(due, config.getTotalInvocations() - state.getSubmitted());
+        }
+        if (config.getRatePerSecond() != null && config.getRatePerSecond() > 0) {
+            long allowed = (long) (config.getRatePerSecond() * (now - state.getStartedAt()) / 1000.0) + 1;
+            due = Math.min(due, allowed - state.getSubmitted());
+        }
+        if (due <= 0) {
+            return;
+        }
+
+        List<CompletableFuture<String>> posts = new ArrayList<>();
+        for (int i = 0; i < due; i++) {
+            posts.add(invokeTask.invokeLambdaFunction(ldi));
+        }
+        state.setSubmitted(state.getSubmitted() + posts.size());
+        for (CompletableFuture<String> post : posts) {
+            try {
+                String url = LambdaCloudDriverAsyncUtils.join(post);
+                state.getInFlight().add(LambdaLoadTestInvocation.builder().url(url).submittedAt(now).build());
+            } catch (RuntimeException e) {
+                recordError(state, e.getMessage());
+            }
+        }
+    }
+
+    private void checkInFlight(LambdaLoadTestState state) {
+        Map<LambdaLoadTestInvocation, CompletableFuture<LambdaCloudDriverTaskResults>> checks = new LinkedHashMap<>();
+        state.getInFlight().forEach(x -> checks.put(x, asyncUtils.verifyStatusAsync(x.getUrl())));
+        long now = System.currentTimeMillis();
+        checks.forEach((invocation, check) -> {
+            LambdaCloudDriverTaskResults op;
+            try {
+                op = LambdaCloudDriverAsyncUtils.join(check);
+            } catch (RuntimeException e) {
+                logger.warn(String.format("Could not check invocation at %s, will retry", invocation.getUrl()), e);
+                return;
+            }
+            if (!op.getStatus().isCompleted()) {
+                return;
+            }
+            state.getInFlight().remove(invocation);
+            if (op.getStatus().isFailed()) {
+                recordError(state, op.getErrors() != null ? op.getErrors().getMessage() : "Lambda Invocation returned failure");
+            } else if (op.getResults() != null && op.getResults().getInvokeResult() != null
+                    && op.getResults().getInvokeResult().getFunctionError() != null) {
+                recordError(state, op.getResults().getInvokeResult().getFunctionError());
+            } else {
+                recordLatency(state, op, now - invocation.getSubmittedAt());
+            }
+        });
+    }
+
+    private void recordLatency(LambdaLoadTestState state, LambdaCloudDriverTaskResults op, long endToEndMillis) {
+        state.getEndToEndLatencies().record(endToEndMillis);
+        LambdaInvocationReport report = op.getResults() != null && op.getResults().getInvokeResult() != null
+                ? LambdaInvocationReports.parse(op.getResults().getInvokeResult().getLogResult())
+                : null;
+        if (report == null || report.getDurationMs() == null) {
+            state.setUnreported(state.getUnreported() + 1);
+            return;
+        }
+        state.getDurations().record(Math.round(report.getDurationMs()));
+    }
+
+    private void recordError(LambdaLoadTestState state, String message) {
+        state.setErrors(state.getErrors() + 1);
+        if (state.getErrorMessages().size() < MAX_ERROR_MESSAGES) {
+            state.getErrorMessages().add(message);
+        }
+    }
+
+    private Map<String, Object> summarize(LambdaLoadTestState state) {
+        long elapsed = Math.max(1, state.getFinishedAt() - state.getStartedAt());
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("invocations", state.getSubmitted());
+        summary.put("errors", state.getErrors());
+        summary.put("errorRate", state.getSubmitted() == 0 ? 0.0 : LambdaStatistics.round(state.getErrors() / (double) state.getSubmitted()));
+        summary.put("durationMillis", elapsed);
+        summary.put("throughputPerSecond", LambdaStatistics.round(state.getSubmitted() * 1000.0 / elapsed));
+        summary.put("latencyMillis", state.getDurations().summarize());
+        summary.put("unreportedLatencies", state.getUnreported());
+        summary.put("endToEndLatencyMillis", state.getEndToEndLatencies().summarize());
+        summary.put("errorMessages", state.getErrorMessages());
+        return summary;
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@Nonnull StageExecution stage) {
+        stage.getContext().remove(LambdaStageConstants.loadTestStateKey);
+        return formErrorTaskResult(stage, "Load test did not finish in time");
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return statusPollMillis;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public Collection<String> aliases() {
+        List<String> ss = new ArrayList<String>();
+        ss.add("lambdaLoadTestTask");
+        return ss;
+    }
+}
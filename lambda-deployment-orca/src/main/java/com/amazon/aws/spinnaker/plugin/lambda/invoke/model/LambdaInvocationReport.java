@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.invoke.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The figures lambda writes on the REPORT line at the end of an invocation's log.
+ * initDurationMs is only set for invocations that started a new execution environment.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaInvocationReport {
+    private Double durationMs, billedDurationMs, initDurationMs;
+    private Integer memorySizeMB, maxMemoryUsedMB;
+}
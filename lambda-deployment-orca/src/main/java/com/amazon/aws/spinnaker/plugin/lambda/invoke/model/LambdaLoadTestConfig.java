@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.invoke.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Load test settings of the invoke stage. The test stops submitting after totalInvocations or
+ * durationSeconds, whichever is set and reached first. ratePerSecond caps how fast invocations are
+ * started; without it they are started as fast as concurrency allows. If maxErrorRate, a fraction
+ * between 0 and 1, is set the stage fails when more invocations than that fail.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaLoadTestConfig {
+    private Integer concurrency;
+    private Integer totalInvocations;
+    private Integer durationSeconds;
+    private Double ratePerSecond;
+    private Double maxErrorRate;
+}
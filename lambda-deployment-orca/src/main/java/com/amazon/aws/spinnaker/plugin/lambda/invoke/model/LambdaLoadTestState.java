@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.invoke.model;
+
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaLatencyHistogram;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Progress of a load test, kept in the stage context between executions of the task.
+ * Only latency histograms and a bounded number of error messages are kept, not the invocation results,
+ * so the state stays small however long the test runs.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaLoadTestState {
+    private Long startedAt;
+    private Long finishedAt;
+    private Integer submitted;
+    private Integer errors;
+    private List<LambdaLoadTestInvocation> inFlight;
+    private LambdaLatencyHistogram durations;
+    private LambdaLatencyHistogram endToEndLatencies;
+    private Integer unreported;
+    private List<String> errorMessages;
+}
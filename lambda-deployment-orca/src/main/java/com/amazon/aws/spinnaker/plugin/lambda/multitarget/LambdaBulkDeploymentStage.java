@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.multitarget;
+
+import com.netflix.spinnaker.orca.api.pipeline.graph.StageDefinitionBuilder;
+import com.netflix.spinnaker.orca.api.pipeline.graph.TaskNode;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Deploys a list of functions, typically built from one artifact, in place of one
+ * Aws.LambdaDeploymentStage per function.
+ */
+@Component
+@StageDefinitionBuilder.Aliases({"Aws.LambdaBulkDeploymentStage"})
+public class LambdaBulkDeploymentStage implements StageDefinitionBuilder {
+    private static Logger logger = LoggerFactory.getLogger(LambdaBulkDeploymentStage.class);
+
+    public LambdaBulkDeploymentStage() {
+        logger.debug("Constructing Aws.LambdaBulkDeploymentStage");
+    }
+
+    @Override
+    public void taskGraph(@Nonnull StageExecution stage, @Nonnull TaskNode.Builder builder) {
+        logger.debug("taskGraph for Aws.LambdaBulkDeploymentStage");
+        builder.withTask("lambdaBulkPrepareTask", LambdaBulkPrepareTask.class);
+        builder.withTask("lambdaMultiTargetDeployTask", LambdaMultiTargetDeployTask.class);
+    }
+}
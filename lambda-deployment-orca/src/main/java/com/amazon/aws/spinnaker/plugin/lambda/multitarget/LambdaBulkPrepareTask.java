@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.multitarget;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaBulkDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetDeployment;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetStep;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns the function definitions of the stage into one deployment each.
+ * Settings given on the stage itself, such as the account, region and artifact location, are defaults
+ * that each function definition may override.
+ */
+@Component
+public class LambdaBulkPrepareTask implements LambdaStageBaseTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaBulkPrepareTask.class);
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @NotNull
+    @Override
+    public TaskResult execute(@NotNull StageExecution stage) {
+        logger.debug("Executing LambdaBulkPrepareTask...");
+        prepareTask(stage);
+        LambdaBulkDeploymentInput inp = utils.getInput(stage, LambdaBulkDeploymentInput.class);
+        List<String> errors = new ArrayList<>();
+        try {
+            LambdaTargetFailurePolicy.fromString(inp.getFailurePolicy());
+        } catch (IllegalArgumentException e) {
+            errors.add("Unknown failurePolicy: " + inp.getFailurePolicy());
+        }
+        if (inp.getFunctions() == null || inp.getFunctions().isEmpty()) {
+            errors.add("At least one function is required");
+        }
+
+        Set<String> seen = new HashSet<>();
+        List<LambdaTargetDeployment> deployments = new ArrayList<>();
+        for (Map<String, Object> function : inp.getFunctions() != null ? inp.getFunctions() : new ArrayList<Map<String, Object>>()) {
+            Map<String, Object> merged = new HashMap<>(stage.getContext());
+            merged.putAll(function);
+            LambdaDeploymentInput ldi = utils.convertValue(merged, LambdaDeploymentInput.class);
+            if (ldi.getFunctionName() == null || ldi.getAccount() == null || ldi.getRegion() == null) {
+                errors.add("Every function needs a functionName, an account and a region");
+                continue;
+            }
+            String target = String.format("%s/%s/%s", ldi.getAccount(), ldi.getRegion(), ldi.getFunctionName());
+            if (!seen.add(target)) {
+                errors.add(String.format("Function %s is listed more than once", target));
+                continue;
+            }
+            ldi.setAppName(stage.getExecution().getApplication());
+            ldi.setCredentials(ldi.getAccount());
+            utils.validateUpsertLambdaInput(ldi, errors);
+            deployments.add(LambdaTargetDeployment.builder().input(ldi).step(LambdaTargetStep.LOOKUP).build());
+        }
+        if (!errors.isEmpty()) {
+            return formErrorListTaskResult(stage, errors);
+        }
+        stage.getContext().put(LambdaStageConstants.targetDeploymentsKey, deployments);
+        return taskComplete(stage);
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@NotNull StageExecution stage) {
+        return TaskResult.builder(ExecutionStatus.SKIPPED).build();
+    }
+
+    @Override
+    public void onCancel(@NotNull StageExecution stage) {
+    }
+
+    void setUtils(LambdaCloudDriverUtils utils) {
+        this.utils = utils;
+    }
+}
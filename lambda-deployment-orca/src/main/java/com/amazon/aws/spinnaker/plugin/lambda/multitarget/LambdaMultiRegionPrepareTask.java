@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.multitarget;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaDeploymentTarget;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaMultiRegionInput;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetDeployment;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetStep;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Expands the function definition of the stage into one deployment per account and region.
+ * Targets are given either as a list of regions in the stage's account, or as a list of targets that
+ * may also name their own account and artifact location.
+ */
+@Component
+public class LambdaMultiRegionPrepareTask implements LambdaStageBaseTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaMultiRegionPrepareTask.class);
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @NotNull
+    @Override
+    public TaskResult execute(@NotNull StageExecution stage) {
+        logger.debug("Executing LambdaMultiRegionPrepareTask...");
+        prepareTask(stage);
+        LambdaMultiRegionInput inp = utils.getInput(stage, LambdaMultiRegionInput.class);
+        List<String> errors = new ArrayList<>();
+        try {
+            LambdaTargetFailurePolicy.fromString(inp.getFailurePolicy());
+        } catch (IllegalArgumentException e) {
+            errors.add("Unknown failurePolicy: " + inp.getFailurePolicy());
+        }
+
+        List<LambdaDeploymentTarget> targets = resolveTargets(inp);
+        if (targets.isEmpty()) {
+            errors.add("At least one target region is required");
+        }
+        Set<String> seen = new HashSet<>();
+        List<LambdaTargetDeployment> deployments = new ArrayList<>();
+        for (LambdaDeploymentTarget target : targets) {
+            if (target.getAccount() == null || target.getRegion() == null) {
+                errors.add("Every target needs an account and a region");
+                continue;
+            }
+            if (!seen.add(target.getAccount() + "/" + target.getRegion())) {
+                errors.add(String.format("Target %s/%s is listed more than once", target.getAccount(), target.getRegion()));
+                continue;
+            }
+            LambdaDeploymentInput ldi = utils.getInput(stage, LambdaDeploymentInput.class);
+            ldi.setAccount(target.getAccount());
+            ldi.setRegion(target.getRegion());
+            if (target.getS3bucket() != null) {
+                ldi.setS3bucket(target.getS3bucket());
+            }
+            if (target.getS3key() != null) {
+                ldi.setS3key(target.getS3key());
+            }
+            ldi.setAppName(stage.getExecution().getApplication());
+            ldi.setCredentials(ldi.getAccount());
+            utils.validateUpsertLambdaInput(ldi, errors);
+            deployments.add(LambdaTargetDeployment.builder().input(ldi).step(LambdaTargetStep.LOOKUP).build());
+        }
+        if (!errors.isEmpty()) {
+            return formErrorListTaskResult(stage, errors);
+        }
+        stage.getContext().put(LambdaStageConstants.targetDeploymentsKey, deployments);
+        return taskComplete(stage);
+    }
+
+    private List<LambdaDeploymentTarget> resolveTargets(LambdaMultiRegionInput inp) {
+        if (inp.getTargets() != null && !inp.getTargets().isEmpty()) {
+            inp.getTargets().stream()
+                    .filter(x -> x.getAccount() == null)
+                    .forEach(x -> x.setAccount(inp.getAccount()));
+            return inp.getTargets();
+        }
+        if (inp.getRegions() == null) {
+            return new ArrayList<>();
+        }
+        return inp.getRegions().stream()
+                .map(region -> LambdaDeploymentTarget.builder().account(inp.getAccount()).region(region).build())
+                .collect(Collectors.toList());
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@NotNull StageExecution stage) {
+        return TaskResult.builder(ExecutionStatus.SKIPPED).build();
+    }
+
+    @Override
+    public void onCancel(@NotNull StageExecution stage) {
+    }
+}
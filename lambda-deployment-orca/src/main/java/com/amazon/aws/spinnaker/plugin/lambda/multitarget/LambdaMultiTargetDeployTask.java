@@ -0,0 +1,446 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.multitarget;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetDeployment;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetDeploymentResult;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetStep;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.LambdaConfigurationDiff;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaPublisVersionInput;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaUpdateCodeInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.*;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverResultObject;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
+import com.netflix.spinnaker.orca.api.pipeline.RetryableTask;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Deploys the function to every target prepared for the stage.
+ * A target is either created, or has its code and then its configuration updated, and then publishes a
+ * version; each of these is one clouddriver operation. Every poll checks all operations in flight in one
+ * batch and then submits the next operation of every target that is ready for one, so targets progress
+ * independently and a slow region does not hold back the others.
+ * At most maxTargetsInFlight targets are deployed at a time; the others wait for a slot. Functions that share
+ * an account and region are read from clouddriver with one listing instead of one lookup each.
+ */
+@Component
+public class LambdaMultiTargetDeployTask implements LambdaStageBaseTask, RetryableTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaMultiTargetDeployTask.class);
+    private static final String CLOUDDRIVER_CREATE_PATH = "/aws/ops/createLambdaFunction";
+    private static final String CLOUDDRIVER_UPDATE_CODE_PATH = "/aws/ops/updateLambdaFunctionCode";
+    private static final String CLOUDDRIVER_UPDATE_CONFIG_PATH = "/aws/ops/updateLambdaFunctionConfiguration";
+    private static final String CLOUDDRIVER_PUBLISH_VERSION_PATH = "/aws/ops/publishLambdaFunctionVersion";
+    private static final String UPDATE_FAILED = "Failed";
+
+    @Autowired
+    private CloudDriverConfigurationProperties props;
+    private  String cloudDriverUrl;
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
+    @Autowired
+    private LambdaArtifactStore artifactStore;
+
+    @Value("${lambdaPlugin.multiTarget.backoffMillis:5000}")
+    private long backoffMillis;
+
+    @Value("${lambdaPlugin.multiTarget.timeoutMillis:1800000}")
+    private long timeoutMillis;
+
+    @Value("${lambdaPlugin.multiTarget.maxTargetsInFlight:20}")
+    private int maxTargetsInFlight;
+
+    @Nonnull
+    @Override
+    public TaskResult execute(@Nonnull StageExecution stage) {
+        logger.debug("Executing LambdaMultiTargetDeployTask...");
+        cloudDriverUrl = props.getCloudDriverBaseUrl();
+        prepareTask(stage);
+        LambdaTargetFailurePolicy policy = getFailurePolicy(stage);
+        List<LambdaTargetDeployment> deployments = getDeployments(stage);
+
+        checkOperations(deployments);
+        if (!(policy == LambdaTargetFailurePolicy.FAIL_FAST && anyFailed(deployments))) {
+            submitOperations(deployments);
+        }
+        boolean done = deployments.stream().allMatch(d -> d.getStep().isComplete());
+        if (done || (policy == LambdaTargetFailurePolicy.FAIL_FAST && anyFailed(deployments))) {
+            return finish(stage, deployments, policy);
+        }
+        stage.getContext().put(LambdaStageConstants.targetDeploymentsKey, deployments);
+        return TaskResult.builder(ExecutionStatus.RUNNING).build();
+    }
+
+    /**
+     * Check every operation in flight and move the targets whose operation completed on to their next step.
+     * A status that cannot be read is checked again on the next poll. The functions of the targets that
+     * completed an operation are then refreshed in clouddriver's cache together.
+     */
+    private void checkOperations(List<LambdaTargetDeployment> deployments) {
+        List<LambdaTargetDeployment> inFlight = deployments.stream()
+                .filter(d -> d.getUrl() != null)
+                .collect(Collectors.toList());
+        List<CompletableFuture<LambdaCloudDriverTaskResults>> checks = inFlight.stream()
+                .map(d -> asyncUtils.verifyStatusAsync(d.getUrl()))
+                .collect(Collectors.toList());
+        List<LambdaTargetDeployment> completed = new ArrayList<>();
+        for (int i = 0; i < inFlight.size(); i++) {
+            LambdaTargetDeployment d = inFlight.get(i);
+            LambdaCloudDriverTaskResults taskResult;
+            try {
+                taskResult = LambdaCloudDriverAsyncUtils.join(checks.get(i));
+            } catch (RuntimeException e) {
+                logger.warn(String.format("Could not check operation for %s, retrying", describe(d)), e);
+                continue;
+            }
+            if (!taskResult.getStatus().isCompleted()) {
+                continue;
+            }
+            d.setUrl(null);
+            if (taskResult.getStatus().isFailed()) {
+                fail(d, taskResult.getErrors() != null ? taskResult.getErrors().getMessage() : "Operation failed");
+                continue;
+            }
+            operationComplete(d, taskResult.getResults());
+            completed.add(d);
+        }
+        refreshCache(completed);
+    }
+
+    private void operationComplete(LambdaTargetDeployment d, LambdaCloudDriverResultObject result) {
+        if (result != null) {
+            if (result.getFunctionArn() != null) {
+                d.setFunctionArn(result.getFunctionArn());
+            }
+            if (result.getVersion() != null) {
+                d.setVersionId(result.getVersion());
+            }
+        }
+        d.setExpectedRevisionId(result != null ? result.getRevisionId() : null);
+        switch (d.getStep()) {
+            case UPDATE_CODE:
+                d.setStep(LambdaTargetStep.UPDATE_CONFIG);
+                break;
+            case UPDATE_CONFIG:
+                d.setStep(LambdaTargetStep.PUBLISH);
+                break;
+            default:
+                d.setStep(LambdaTargetStep.SUCCEEDED);
+        }
+    }
+
+    /**
+     * Submit the next operation of every target that is not waiting on one, then wait for clouddriver to
+     * accept them all.
+     */
+    private void submitOperations(List<LambdaTargetDeployment> deployments) {
+        long started = deployments.stream()
+                .filter(d -> d.getStep() != LambdaTargetStep.LOOKUP && !d.getStep().isComplete())
+                .count();
+        long slots = Math.max(0, maxTargetsInFlight - started);
+        List<LambdaTargetDeployment> ready = deployments.stream()
+                .filter(d -> !d.getStep().isComplete() && d.getUrl() == null)
+                .filter(d -> d.getStep() != LambdaTargetStep.LOOKUP)
+                .collect(Collectors.toList());
+        deployments.stream()
+                .filter(d -> d.getStep() == LambdaTargetStep.LOOKUP)
+                .limit(slots)
+                .forEach(ready::add);
+        Map<LambdaTargetDeployment, LambdaDefinition> functions = readFunctions(ready);
+
+        List<LambdaTargetDeployment> submitted = new ArrayList<>();
+        List<CompletableFuture<LambdaCloudDriverResponse>> responses = new ArrayList<>();
+        for (LambdaTargetDeployment d : ready) {
+            if (!functions.containsKey(d)) {
+                continue;
+            }
+            try {
+                CompletableFuture<LambdaCloudDriverResponse> response = nextOperation(d, functions.get(d));
+                if (response != null) {
+                    submitted.add(d);
+                    responses.add(response);
+                }
+            } catch (RuntimeException e) {
+                logger.error(String.format("Could not deploy to %s", describe(d)), e);
+                fail(d, e.getMessage());
+            }
+        }
+        for (int i = 0; i < submitted.size(); i++) {
+            LambdaTargetDeployment d = submitted.get(i);
+            try {
+                LambdaCloudDriverResponse respObj = LambdaCloudDriverAsyncUtils.join(responses.get(i));
+                d.setUrl(cloudDriverUrl + respObj.getResourceUri());
+                logger.debug(String.format("Posted %s for %s: %s", d.getStep(), describe(d), d.getUrl()));
+            } catch (RuntimeException e) {
+                fail(d, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Read the current definition of every target's function. Targets whose function could not be read are
+     * left out and tried again on the next poll; a function that does not exist maps to null.
+     */
+    private Map<LambdaTargetDeployment, LambdaDefinition> readFunctions(List<LambdaTargetDeployment> targets) {
+        Map<LambdaTargetDeployment, LambdaDefinition> functions = new IdentityHashMap<>();
+        Map<String, List<LambdaTargetDeployment>> byAccountRegion = targets.stream()
+                .collect(Collectors.groupingBy(d -> d.getInput().getAccount() + "/" + d.getInput().getRegion()));
+        for (List<LambdaTargetDeployment> group : byAccountRegion.values()) {
+            try {
+                if (group.size() == 1) {
+                    LambdaDeploymentInput ldi = group.get(0).getInput();
+                    functions.put(group.get(0), utils.retrieveLatestLambda(LambdaGetInput.builder()
+                            .account(ldi.getAccount())
+                            .region(ldi.getRegion())
+                            .functionName(ldi.getFunctionName())
+                            .appName(ldi.getAppName())
+                            .build()));
+                    continue;
+                }
+                LambdaDeploymentInput first = group.get(0).getInput();
+                Map<String, LambdaDefinition> listed = utils.listLambdas(first.getAccount(), first.getRegion());
+                group.forEach(d -> functions.put(d, listed.get(
+                        LambdaCloudDriverUtils.qualifiedFunctionName(d.getInput().getAppName(), d.getInput().getFunctionName()))));
+            } catch (RuntimeException e) {
+                logger.warn("Could not read functions, retrying", e);
+            }
+        }
+        return functions;
+    }
+
+    /**
+     * Work out the next operation for a target from the current state of its function.
+     * @return the submitted operation, or null if the target has nothing to submit right now
+     */
+    private CompletableFuture<LambdaCloudDriverResponse> nextOperation(LambdaTargetDeployment d, LambdaDefinition lf) {
+        LambdaDeploymentInput ldi = d.getInput();
+        if (d.getStep() == LambdaTargetStep.LOOKUP) {
+            if (lf == null) {
+                d.setLambdaCreated(Boolean.TRUE);
+                d.setStep(LambdaTargetStep.CREATE);
+                return post(d, CLOUDDRIVER_CREATE_PATH, ldi);
+            }
+            d.setLambdaCreated(Boolean.FALSE);
+            d.setFunctionArn(lf.getFunctionArn());
+            d.setStep(LambdaTargetStep.UPDATE_CODE);
+        }
+        if (lf == null) {
+            fail(d, "Function no longer exists");
+            return null;
+        }
+        if (!LambdaCloudDriverUtils.isSettled(lf, d.getExpectedRevisionId())) {
+            return null;
+        }
+        if (d.getStep() != LambdaTargetStep.UPDATE_CODE && UPDATE_FAILED.equals(lf.getLastUpdateStatus())) {
+            fail(d, String.format("Last update of function failed with reason: %s", lf.getLastUpdateStatusReason()));
+            return null;
+        }
+        if (d.getStep() == LambdaTargetStep.UPDATE_CODE) {
+            if (!isCodeUnchanged(ldi, lf)) {
+                return post(d, CLOUDDRIVER_UPDATE_CODE_PATH, LambdaUpdateCodeInput.builder()
+                        .account(ldi.getAccount())
+                        .credentials(ldi.getCredentials())
+                        .appName(ldi.getAppName())
+                        .region(ldi.getRegion())
+                        .functionName(ldi.getFunctionName())
+                        .s3bucket(ldi.getS3bucket())
+                        .s3key(ldi.getS3key())
+                        .build());
+            }
+            d.setStep(LambdaTargetStep.UPDATE_CONFIG);
+        }
+        if (d.getStep() == LambdaTargetStep.UPDATE_CONFIG) {
+            if (!LambdaConfigurationDiff.compute(ldi, lf).isEmpty()) {
+                return post(d, CLOUDDRIVER_UPDATE_CONFIG_PATH, ldi);
+            }
+            d.setStep(LambdaTargetStep.PUBLISH);
+        }
+        if (Boolean.TRUE.equals(ldi.getPublish()) && Boolean.TRUE.equals(d.getChanged())) {
+            return post(d, CLOUDDRIVER_PUBLISH_VERSION_PATH, LambdaPublisVersionInput.builder()
+                    .account(ldi.getAccount())
+                    .credentials(ldi.getCredentials())
+                    .appName(ldi.getAppName())
+                    .region(ldi.getRegion())
+                    .functionName(ldi.getFunctionName())
+                    .revisionId(lf.getRevisionId())
+                    .build());
+        }
+        d.setStep(LambdaTargetStep.SUCCEEDED);
+        return null;
+    }
+
+    private boolean isCodeUnchanged(LambdaDeploymentInput ldi, LambdaDefinition lf) {
+        Optional<String> artifactSha256 = artifactStore.getContentSha256(ldi.getAccount(), ldi.getRegion(), ldi.getS3bucket(), ldi.getS3key());
+        return artifactSha256.isPresent() && artifactSha256.get().equals(lf.getCodeSha256());
+    }
+
+    private CompletableFuture<LambdaCloudDriverResponse> post(LambdaTargetDeployment d, String path, Object inp) {
+        if (d.getStep() != LambdaTargetStep.CREATE && d.getStep() != LambdaTargetStep.PUBLISH) {
+            d.setChanged(Boolean.TRUE);
+        }
+        LambdaDeploymentInput ldi = d.getInput();
+        return asyncUtils.postToCloudDriverAsync(cloudDriverUrl + path, utils.asString(inp), ldi.getAccount(), ldi.getRegion());
+    }
+
+    /**
+     * Ask clouddriver to refresh the functions whose operation completed, so that their next step reads their
+     * new state. The refreshes are sent together and waited for once. A refresh that cannot be requested only
+     * delays the next step of its target.
+     */
+    private void refreshCache(List<LambdaTargetDeployment> completed) {
+        List<CompletableFuture<Integer>> refreshes = completed.stream()
+                .map(d -> {
+                    LambdaDeploymentInput ldi = d.getInput();
+                    String body = utils.asString(LambdaCloudDriverUtils.functionCacheRefresh(
+                            ldi.getAccount(), ldi.getRegion(), ldi.getAppName(), ldi.getFunctionName()));
+                    return asyncUtils.postToCloudDriverForStatusCodeAsync(
+                                    cloudDriverUrl + LambdaCloudDriverUtils.CLOUDDRIVER_REFRESH_CACHE_PATH,
+                                    body, ldi.getAccount(), ldi.getRegion())
+                            .exceptionally(e -> {
+                                logger.warn("Could not request cache refresh for " + describe(d), e);
+                                return null;
+                            });
+                })
+                .collect(Collectors.toList());
+        LambdaCloudDriverAsyncUtils.joinAll(refreshes);
+    }
+
+    private TaskResult finish(StageExecution stage, List<LambdaTargetDeployment> deployments, LambdaTargetFailurePolicy policy) {
+        stage.getContext().remove(LambdaStageConstants.targetDeploymentsKey);
+        addToOutput(stage, LambdaStageConstants.deploymentsKey, deployments.stream().map(this::toResult).collect(Collectors.toList()));
+        List<String> failures = deployments.stream()
+                .filter(d -> d.getStep() == LambdaTargetStep.FAILED)
+                .map(d -> String.format("%s: %s", describe(d), d.getFailureMessage()))
+                .collect(Collectors.toList());
+        if (failures.isEmpty()) {
+            return taskComplete(stage);
+        }
+        boolean anySucceeded = deployments.stream().anyMatch(d -> d.getStep() == LambdaTargetStep.SUCCEEDED);
+        if (policy == LambdaTargetFailurePolicy.BEST_EFFORT && anySucceeded) {
+            addErrorMessage(stage, String.join("\n", failures));
+            return TaskResult.builder(ExecutionStatus.FAILED_CONTINUE).outputs(stage.getOutputs()).build();
+        }
+        return formErrorListTaskResult(stage, failures);
+    }
+
+    private LambdaTargetDeploymentResult toResult(LambdaTargetDeployment d) {
+        return LambdaTargetDeploymentResult.builder()
+                .account(d.getInput().getAccount())
+                .region(d.getInput().getRegion())
+                .functionName(d.getInput().getFunctionName())
+                .status(d.getStep().name())
+                .lambdaCreated(d.getLambdaCreated())
+                .functionARN(d.getFunctionArn())
+                .versionId(d.getVersionId())
+                .failureMessage(d.getFailureMessage())
+                .build();
+    }
+
+    private void fail(LambdaTargetDeployment d, String message) {
+        logger.error(String.format("Deployment to %s failed: %s", describe(d), message));
+        d.setStep(LambdaTargetStep.FAILED);
+        d.setUrl(null);
+        d.setFailureMessage(message);
+    }
+
+    private boolean anyFailed(List<LambdaTargetDeployment> deployments) {
+        return deployments.stream().anyMatch(d -> d.getStep() == LambdaTargetStep.FAILED);
+    }
+
+    private String describe(LambdaTargetDeployment d) {
+        LambdaDeploymentInput ldi = d.getInput();
+        return String.format("%s/%s/%s", ldi.getAccount(), ldi.getRegion(), ldi.getFunctionName());
+    }
+
+    private LambdaTargetFailurePolicy getFailurePolicy(StageExecution stage) {
+        return LambdaTargetFailurePolicy.fromString((String) stage.getContext().get(LambdaStageConstants.failurePolicyKey));
+    }
+
+    private List<LambdaTargetDeployment> getDeployments(StageExecution stage) {
+        List<Object> stored = (List<Object>) stage.getContext().get(LambdaStageConstants.targetDeploymentsKey);
+        if (stored == null) {
+            return new ArrayList<>();
+        }
+        return stored.stream()
+                .map(x -> utils.convertValue(x, LambdaTargetDeployment.class))
+                .collect(Collectors.toList());
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@Nonnull StageExecution stage) {
+        List<LambdaTargetDeployment> deployments = getDeployments(stage);
+        deployments.stream()
+                .filter(d -> !d.getStep().isComplete())
+                .forEach(d -> fail(d, String.format("Timed out during %s", d.getStep())));
+        return finish(stage, deployments, getFailurePolicy(stage));
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return backoffMillis;
+    }
+
+    void setProps(CloudDriverConfigurationProperties props) {
+        this.props = props;
+    }
+
+    void setUtils(LambdaCloudDriverUtils utils) {
+        this.utils = utils;
+    }
+
+    void setAsyncUtils(LambdaCloudDriverAsyncUtils asyncUtils) {
+        this.asyncUtils = asyncUtils;
+    }
+
+    void setArtifactStore(LambdaArtifactStore artifactStore) {
+        this.artifactStore = artifactStore;
+    }
+
+    void setMaxTargetsInFlight(int maxTargetsInFlight) {
+        this.maxTargetsInFlight = maxTargetsInFlight;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.multitarget;
+
+/**
+ * What a multi-target deployment does when one of its targets fails.
+ * FAIL_FAST stops submitting operations and fails the stage at once.
+ * BEST_EFFORT lets the other targets finish and reports every failure; the pipeline continues unless
+ * every target failed.
+ */
+public enum LambdaTargetFailurePolicy {
+    FAIL_FAST,
+    BEST_EFFORT;
+
+    public static LambdaTargetFailurePolicy fromString(String value) {
+        if (value == null || value.isEmpty()) {
+            return FAIL_FAST;
+        }
+        return LambdaTargetFailurePolicy.valueOf(value.toUpperCase());
+    }
+}
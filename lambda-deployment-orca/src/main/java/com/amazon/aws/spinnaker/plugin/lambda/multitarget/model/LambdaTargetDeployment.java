@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.multitarget.model;
+
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Progress of the deployment to one target. Kept in the stage context between polls.
+ * url is set while the clouddriver operation for the current step is in flight. expectedRevisionId is the
+ * revision produced by the last completed operation, used to tell when clouddriver has caught up with it.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaTargetDeployment {
+    private LambdaDeploymentInput input;
+    private LambdaTargetStep step;
+    private String url;
+    private String expectedRevisionId;
+    private Boolean lambdaCreated;
+    private Boolean changed;
+    private String functionArn;
+    private String versionId;
+    private String failureMessage;
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.multitarget.model;
+
+/**
+ * Where a single target is in its deployment. CREATE, UPDATE_CODE, UPDATE_CONFIG and PUBLISH each
+ * correspond to one clouddriver operation.
+ */
+public enum LambdaTargetStep {
+    LOOKUP,
+    CREATE,
+    UPDATE_CODE,
+    UPDATE_CONFIG,
+    PUBLISH,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isComplete() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.powertuning;
+
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.model.LambdaPowerTuningResult;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * What a power tuning run optimises for.
+ * COST picks the cheapest memory size per invocation and SPEED the one with the lowest average duration,
+ * each breaking ties with the other. BALANCED picks the size with the lowest sum of cost and duration, each
+ * relative to the best measured.
+ */
+public enum LambdaPowerTuningObjective {
+    COST,
+    SPEED,
+    BALANCED;
+
+    public static LambdaPowerTuningObjective fromString(String value) {
+        if (value == null || value.isEmpty()) {
+            return COST;
+        }
+        return LambdaPowerTuningObjective.valueOf(value.toUpperCase());
+    }
+
+    /**
+     * @param candidates results that have both a cost and a duration
+     */
+    public Optional<LambdaPowerTuningResult> pick(List<LambdaPowerTuningResult> candidates) {
+        Comparator<LambdaPowerTuningResult> byCost = Comparator.comparing(LambdaPowerTuningResult::getCostPerInvocation);
+        Comparator<LambdaPowerTuningResult> bySpeed = Comparator.comparing(LambdaPowerTuningResult::getAvgDurationMs);
+        switch (this) {
+            case SPEED:
+                return candidates.stream().min(bySpeed.thenComparing(byCost));
+            case BALANCED:
+                double minCost = candidates.stream().mapToDouble(LambdaPowerTuningResult::getCostPerInvocation).min().orElse(1);
+                double minDuration = candidates.stream().mapToDouble(LambdaPowerTuningResult::getAvgDurationMs).min().orElse(1);
+                return candidates.stream().min(Comparator.comparing((LambdaPowerTuningResult x) ->
+                        x.getCostPerInvocation() / Math.max(minCost, Double.MIN_VALUE)
+                                + x.getAvgDurationMs() / Math.max(minDuration, Double.MIN_VALUE)));
+            default:
+                return candidates.stream().min(byCost.thenComparing(bySpeed));
+        }
+    }
+}
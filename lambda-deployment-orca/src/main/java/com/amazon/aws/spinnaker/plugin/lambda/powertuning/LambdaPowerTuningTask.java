@@ -0,0 +1,607 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.powertuning;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.LambdaVersionPruner;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaDeleteStageInput;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaVersionPruneResult;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.LambdaInvocationReports;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvocationReport;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvokeStageInput;
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.model.LambdaPowerTuningInput;
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.model.LambdaPowerTuningResult;
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.model.LambdaPowerTuningState;
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.model.LambdaPowerTuningStep;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaPublisVersionInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.*;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverResultObject;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
+import com.amazonaws.services.lambda.model.Layer;
+import com.netflix.spinnaker.orca.api.pipeline.RetryableTask;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the function at each of the requested memory sizes and picks the best one.
+ * For every size the configuration is updated, a test version is published and invoked invocationCount
+ * times, and the durations are read from the REPORT lines of the invocations. Each poll does at most one
+ * of these steps, so no thread waits on lambda. Afterwards the function is set back to its original memory
+ * size, or to the optimum if applyOptimum is set, and the test versions are deleted.
+ * If a step fails the function is set back to its original memory size before the task fails. A run that
+ * times out or is cancelled sets it back and deletes its test versions straight away.
+ */
+@Component
+public class LambdaPowerTuningTask implements LambdaStageBaseTask, RetryableTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaPowerTuningTask.class);
+    private static final String CLOUDDRIVER_UPDATE_CONFIG_PATH = "/aws/ops/updateLambdaFunctionConfiguration";
+    private static final String CLOUDDRIVER_PUBLISH_VERSION_PATH = "/aws/ops/publishLambdaFunctionVersion";
+    private static final String CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH = "/aws/ops/invokeLambdaFunction";
+    private static final int MIN_MEMORY_SIZE = 128;
+    private static final int MAX_MEMORY_SIZE = 10240;
+
+    @Autowired
+    private CloudDriverConfigurationProperties props;
+    private  String cloudDriverUrl;
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
+    @Autowired
+    private LambdaVersionPruner pruner;
+
+    @Value("${lambdaPlugin.powerTuning.backoffMillis:2000}")
+    private long backoffMillis;
+
+    @Value("${lambdaPlugin.powerTuning.timeoutMillis:3600000}")
+    private long timeoutMillis;
+
+    @Value("${lambdaPlugin.powerTuning.defaultInvocationCount:10}")
+    private int defaultInvocationCount;
+
+    @Value("${lambdaPlugin.powerTuning.pricePerGbSecond:0.0000166667}")
+    private double pricePerGbSecond;
+
+    @Value("${lambdaPlugin.powerTuning.pricePerRequest:0.0000002}")
+    private double pricePerRequest;
+
+    @Nonnull
+    @Override
+    public TaskResult execute(@Nonnull StageExecution stage) {
+        logger.debug("Executing LambdaPowerTuningTask...");
+        cloudDriverUrl = props.getCloudDriverBaseUrl();
+        prepareTask(stage);
+        LambdaPowerTuningInput inp = getInput(stage);
+
+        Object saved = stage.getContext().get(LambdaStageConstants.powerTuningStateKey);
+        LambdaPowerTuningState state;
+        if (saved == null) {
+            String invalid = validate(inp);
+            if (invalid != null) {
+                return formErrorTaskResult(stage, invalid);
+            }
+            LambdaDefinition lf = readFunction(inp);
+            if (lf == null) {
+                return formErrorTaskResult(stage, "No such lambda found.");
+            }
+            state = LambdaPowerTuningState.builder()
+                    .step(LambdaPowerTuningStep.CONFIGURE)
+                    .sizeIndex(0)
+                    .originalMemorySize(lf.getMemorySize())
+                    .publishedVersions(new ArrayList<>())
+                    .preexistingVersions(lf.getRevisions() != null ? new ArrayList<>(lf.getRevisions().values()) : new ArrayList<>())
+                    .results(new ArrayList<>())
+                    .build();
+        } else {
+            state = utils.convertValue(saved, LambdaPowerTuningState.class);
+        }
+
+        if (state.getUrl() != null && !checkOperation(inp, state)) {
+            return running(stage, state);
+        }
+        if (state.getInvocationUrls() != null && !checkInvocations(inp, state)) {
+            return running(stage, state);
+        }
+        if (state.getStep() != LambdaPowerTuningStep.DONE) {
+            try {
+                submitNext(inp, state);
+            } catch (RuntimeException e) {
+                failed(state, e.getMessage());
+            }
+        }
+        if (state.getStep() == LambdaPowerTuningStep.DONE) {
+            return finish(stage, inp, state);
+        }
+        return running(stage, state);
+    }
+
+    private String validate(LambdaPowerTuningInput inp) {
+        if (inp.getAccount() == null || inp.getRegion() == null || inp.getFunctionName() == null) {
+            return "account, region and functionName are required";
+        }
+        if (inp.getMemorySizes() == null || inp.getMemorySizes().isEmpty()) {
+            return "memorySizes must list at least one memory size";
+        }
+        if (inp.getMemorySizes().stream().anyMatch(x -> x == null || x < MIN_MEMORY_SIZE || x > MAX_MEMORY_SIZE)) {
+            return String.format("Memory sizes must be between %d and %d MB", MIN_MEMORY_SIZE, MAX_MEMORY_SIZE);
+        }
+        if (inp.getInvocationCount() != null && inp.getInvocationCount() < 1) {
+            return "invocationCount must be at least 1";
+        }
+        try {
+            LambdaPowerTuningObjective.fromString(inp.getOptimizeFor());
+        } catch (IllegalArgumentException e) {
+            return "optimizeFor must be one of " + Arrays.toString(LambdaPowerTuningObjective.values());
+        }
+        return null;
+    }
+
+    /**
+     * @return true once the operation in flight has completed, successfully or not
+     */
+    private boolean checkOperation(LambdaPowerTuningInput inp, LambdaPowerTuningState state) {
+        LambdaCloudDriverTaskResults taskResult;
+        try {
+            taskResult = LambdaCloudDriverAsyncUtils.join(asyncUtils.verifyStatusAsync(state.getUrl()));
+        } catch (RuntimeException e) {
+            logger.warn("Could not check power tuning operation, retrying", e);
+            return false;
+        }
+        if (!taskResult.getStatus().isCompleted()) {
+            return false;
+        }
+        state.setUrl(null);
+        if (taskResult.getStatus().isFailed()) {
+            failed(state, taskResult.getErrors() != null ? taskResult.getErrors().getMessage() : "Operation failed");
+            return true;
+        }
+        LambdaCloudDriverResultObject result = taskResult.getResults();
+        state.setExpectedRevisionId(result != null ? result.getRevisionId() : null);
+        utils.refreshFunctionCache(inp.getAccount(), inp.getRegion(), inp.getAppName(), inp.getFunctionName());
+        switch (state.getStep()) {
+            case CONFIGURE:
+                state.setStep(LambdaPowerTuningStep.PUBLISH);
+                break;
+            case PUBLISH:
+                if (result == null || result.getVersion() == null) {
+                    failed(state, "Clouddriver did not report the published version");
+                    break;
+                }
+                state.setTestVersion(result.getVersion());
+                state.getPublishedVersions().add(result.getVersion());
+                state.setStep(LambdaPowerTuningStep.INVOKE);
+                break;
+            default:
+                state.setStep(LambdaPowerTuningStep.DONE);
+        }
+        return true;
+    }
+
+    /**
+     * @return true once every invocation of the current memory size has completed and been measured
+     */
+    private boolean checkInvocations(LambdaPowerTuningInput inp, LambdaPowerTuningState state) {
+        List<CompletableFuture<LambdaCloudDriverTaskResults>> checks = state.getInvocationUrls().stream()
+                .map(asyncUtils::verifyStatusAsync)
+                .collect(Collectors.toList());
+        List<LambdaCloudDriverTaskResults> ops;
+        try {
+            ops = LambdaCloudDriverAsyncUtils.joinAll(checks);
+        } catch (RuntimeException e) {
+            logger.warn("Could not check power tuning invocations, retrying", e);
+            return false;
+        }
+        if (ops.stream().anyMatch(x -> !x.getStatus().isCompleted())) {
+            return false;
+        }
+
+        int errors = 0;
+        List<LambdaInvocationReport> reports = new ArrayList<>();
+        for (LambdaCloudDriverTaskResults op : ops) {
+            if (op.getStatus().isFailed() || op.getResults() == null || op.getResults().getInvokeResult() == null
+                    || op.getResults().getInvokeResult().getFunctionError() != null) {
+                errors++;
+                continue;
+            }
+            LambdaInvocationReport report = LambdaInvocationReports.parse(op.getResults().getInvokeResult().getLogResult());
+            if (report != null && report.getDurationMs() != null) {
+                reports.add(report);
+            }
+        }
+        int memorySize = inp.getMemorySizes().get(state.getSizeIndex());
+        LambdaPowerTuningResult result = measure(memorySize, ops.size(), errors, reports);
+        logger.info(String.format("Power tuning %s at %d MB: %s", inp.getFunctionName(), memorySize, result));
+        state.getResults().add(result);
+        state.setInvocationUrls(null);
+        state.setSizeIndex(state.getSizeIndex() + 1);
+        if (state.getSizeIndex() < inp.getMemorySizes().size()) {
+            state.setStep(LambdaPowerTuningStep.CONFIGURE);
+        } else {
+            Optional<LambdaPowerTuningResult> optimum = optimum(inp, state);
+            state.setStep(LambdaPowerTuningStep.APPLY);
+            state.setTargetMemorySize(Boolean.TRUE.equals(inp.getApplyOptimum()) && optimum.isPresent()
+                    ? optimum.get().getMemorySize()
+                    : state.getOriginalMemorySize());
+        }
+        return true;
+    }
+
+    LambdaPowerTuningResult measure(int memorySize, int invocations, int errors, List<LambdaInvocationReport> reports) {
+        LambdaPowerTuningResult result = LambdaPowerTuningResult.builder()
+                .memorySize(memorySize)
+                .invocations(invocations)
+                .errors(errors)
+                .reported(reports.size())
+                .coldStarts((int) reports.stream().filter(x -> x.getInitDurationMs() != null).count())
+                .build();
+        if (reports.isEmpty()) {
+            return result;
+        }
+        List<Double> durations = reports.stream().map(LambdaInvocationReport::getDurationMs).sorted().collect(Collectors.toList());
+        double avgBilled = reports.stream()
+                .mapToDouble(x -> x.getBilledDurationMs() != null ? x.getBilledDurationMs() : x.getDurationMs())
+                .average().orElse(0);
+        result.setAvgDurationMs(LambdaStatistics.round(durations.stream().mapToDouble(Double::doubleValue).average().orElse(0)));
+        result.setP95DurationMs(LambdaStatistics.percentile(durations, 95));
+        result.setAvgBilledDurationMs(LambdaStatistics.round(avgBilled));
+        result.setCostPerInvocation(avgBilled / 1000.0 * memorySize / 1024.0 * pricePerGbSecond + pricePerRequest);
+        return result;
+    }
+
+    /**
+     * Only memory sizes at which every invocation succeeded and reported a duration are considered.
+     */
+    private Optional<LambdaPowerTuningResult> optimum(LambdaPowerTuningInput inp, LambdaPowerTuningState state) {
+        List<LambdaPowerTuningResult> candidates = state.getResults().stream()
+                .filter(x -> x.getErrors() == 0 && x.getAvgDurationMs() != null)
+                .collect(Collectors.toList());
+        return LambdaPowerTuningObjective.fromString(inp.getOptimizeFor()).pick(candidates);
+    }
+
+    private void submitNext(LambdaPowerTuningInput inp, LambdaPowerTuningState state) {
+        switch (state.getStep()) {
+            case CONFIGURE:
+            case APPLY: {
+                int memorySize = state.getStep() == LambdaPowerTuningStep.CONFIGURE
+                        ? inp.getMemorySizes().get(state.getSizeIndex())
+                        : state.getTargetMemorySize();
+                LambdaDefinition lf = readSettledFunction(inp, state);
+                if (lf == null) {
+                    return;
+                }
+                if (Objects.equals(lf.getMemorySize(), memorySize)) {
+                    if (state.getStep() == LambdaPowerTuningStep.APPLY) {
+                        state.setStep(LambdaPowerTuningStep.DONE);
+                        return;
+                    }
+                    state.setStep(LambdaPowerTuningStep.PUBLISH);
+                    submitNext(inp, state);
+                    return;
+                }
+                state.setUrl(post(inp, CLOUDDRIVER_UPDATE_CONFIG_PATH, toConfigurationInput(inp, lf, memorySize)));
+                return;
+            }
+            case PUBLISH: {
+                LambdaDefinition lf = readSettledFunction(inp, state);
+                if (lf == null) {
+                    return;
+                }
+                state.setUrl(post(inp, CLOUDDRIVER_PUBLISH_VERSION_PATH, LambdaPublisVersionInput.builder()
+                        .account(inp.getAccount())
+                        .credentials(inp.getAccount())
+                        .appName(inp.getAppName())
+                        .region(inp.getRegion())
+                        .functionName(inp.getFunctionName())
+                        .description(String.format("Power tuning at %d MB", lf.getMemorySize()))
+                        .revisionId(lf.getRevisionId())
+                        .build()));
+                return;
+            }
+            case INVOKE: {
+                LambdaInvokeStageInput invokeInput = LambdaInvokeStageInput.builder()
+                        .account(inp.getAccount())
+                        .credentials(inp.getAccount())
+                        .appName(inp.getAppName())
+                        .region(inp.getRegion())
+                        .functionName(inp.getFunctionName())
+                        .qualifier(state.getTestVersion())
+                        .payload(inp.getPayload())
+                        .payloadArtifact(inp.getPayloadArtifact() != null ? inp.getPayloadArtifact().getArtifact() : null)
+                        .timeout(inp.getTimeout())
+                        .build();
+                String rawString = utils.asString(invokeInput);
+                int count = inp.getInvocationCount() != null ? inp.getInvocationCount() : defaultInvocationCount;
+                List<CompletableFuture<LambdaCloudDriverResponse>> invocations = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    invocations.add(asyncUtils.postToCloudDriverAsync(cloudDriverUrl + CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH,
+                            rawString, inp.getAccount(), inp.getRegion()));
+                }
+                state.setInvocationUrls(LambdaCloudDriverAsyncUtils.joinAll(invocations).stream()
+                        .map(x -> cloudDriverUrl + x.getResourceUri())
+                        .collect(Collectors.toList()));
+                return;
+            }
+            default:
+        }
+    }
+
+    /**
+     * @return the function once clouddriver shows the revision the last operation produced and lambda has
+     * finished applying it, or null while waiting for that
+     */
+    private LambdaDefinition readSettledFunction(LambdaPowerTuningInput inp, LambdaPowerTuningState state) {
+        LambdaDefinition lf = readFunction(inp);
+        if (lf == null) {
+            throw new RuntimeException("Function no longer exists");
+        }
+        return LambdaCloudDriverUtils.isSettled(lf, state.getExpectedRevisionId()) ? lf : null;
+    }
+
+    /**
+     * The function's current configuration with only the memory size changed, since clouddriver applies
+     * every field of the request.
+     */
+    private LambdaDeploymentInput toConfigurationInput(LambdaPowerTuningInput inp, LambdaDefinition lf, int memorySize) {
+        LambdaDeploymentInput.LambdaDeploymentInputBuilder builder = LambdaDeploymentInput.builder()
+                .account(inp.getAccount())
+                .credentials(inp.getAccount())
+                .appName(inp.getAppName())
+                .region(inp.getRegion())
+                .functionName(inp.getFunctionName())
+                .handler(lf.getHandler())
+                .runtime(lf.getRuntime())
+                .role(lf.getRole())
+                .description(lf.getDescription())
+                .memorySize(memorySize)
+                .timeout(lf.getTimeout() != null ? lf.getTimeout() : 0)
+                .kmskeyArn(lf.getKMSKeyArn());
+        if (lf.getEnvironment() != null && lf.getEnvironment().getVariables() != null) {
+            builder.envVariables(new HashMap<>(lf.getEnvironment().getVariables()));
+        }
+        if (lf.getLayers() != null) {
+            builder.layers(lf.getLayers().stream().map(Layer::getArn).collect(Collectors.toList()));
+        }
+        if (lf.getVpcConfig() != null) {
+            builder.subnetIds(lf.getVpcConfig().getSubnetIds())
+                    .securityGroupIds(lf.getVpcConfig().getSecurityGroupIds())
+                    .vpcId(lf.getVpcConfig().getVpcId());
+        }
+        if (lf.getTracingConfig() != null && lf.getTracingConfig().getMode() != null) {
+            HashMap<String, String> tracingConfig = new HashMap<>();
+            tracingConfig.put("mode", lf.getTracingConfig().getMode());
+            builder.tracingConfig(tracingConfig);
+        }
+        if (lf.getDeadLetterConfig() != null && lf.getDeadLetterConfig().getTargetArn() != null) {
+            HashMap<String, String> deadLetterConfig = new HashMap<>();
+            deadLetterConfig.put("targetArn", lf.getDeadLetterConfig().getTargetArn());
+            builder.deadLetterConfig(deadLetterConfig);
+        }
+        return builder.build();
+    }
+
+    private String post(LambdaPowerTuningInput inp, String path, Object body) {
+        LambdaCloudDriverResponse respObj = LambdaCloudDriverAsyncUtils.join(
+                asyncUtils.postToCloudDriverAsync(cloudDriverUrl + path, utils.asString(body), inp.getAccount(), inp.getRegion()));
+        String url = cloudDriverUrl + respObj.getResourceUri();
+        logger.debug("Posted to cloudDriver for power tuning: " + url);
+        return url;
+    }
+
+    /**
+     * Set the function back to its original memory size, unless that is what just failed.
+     */
+    private void failed(LambdaPowerTuningState state, String message) {
+        logger.error("Power tuning failed: " + message);
+        if (state.getFailureMessage() == null) {
+            state.setFailureMessage(message);
+        }
+        state.setUrl(null);
+        state.setInvocationUrls(null);
+        if (state.getStep() == LambdaPowerTuningStep.APPLY) {
+            state.setStep(LambdaPowerTuningStep.DONE);
+            return;
+        }
+        state.setStep(LambdaPowerTuningStep.APPLY);
+        state.setTargetMemorySize(state.getOriginalMemorySize());
+    }
+
+    private TaskResult finish(StageExecution stage, LambdaPowerTuningInput inp, LambdaPowerTuningState state) {
+        stage.getContext().remove(LambdaStageConstants.powerTuningStateKey);
+        addToOutput(stage, "powerTuningResults", state.getResults());
+        addToOutput(stage, "memorySize", state.getTargetMemorySize());
+        Optional<LambdaPowerTuningResult> optimum = optimum(inp, state);
+        optimum.ifPresent(x -> addToOutput(stage, "powerTuningOptimum", x));
+        deleteTestVersions(stage, inp, state);
+
+        if (state.getFailureMessage() != null) {
+            return formErrorTaskResult(stage, state.getFailureMessage());
+        }
+        if (!optimum.isPresent()) {
+            return formErrorTaskResult(stage, "No memory size completed its invocations without errors");
+        }
+        return taskComplete(stage);
+    }
+
+    /**
+     * Test versions are deleted with the same pruner as version retention; the deletes are verified by the
+     * next task of the stage.
+     */
+    private void deleteTestVersions(StageExecution stage, LambdaPowerTuningInput inp, LambdaPowerTuningState state) {
+        List<String> testVersions = state.getPublishedVersions().stream()
+                .distinct()
+                .filter(x -> !state.getPreexistingVersions().contains(x))
+                .collect(Collectors.toList());
+        if (testVersions.isEmpty()) {
+            return;
+        }
+        try {
+            LambdaDeleteStageInput del = LambdaDeleteStageInput.builder()
+                    .appName(inp.getAppName())
+                    .account(inp.getAccount())
+                    .region(inp.getRegion())
+                    .functionName(inp.getFunctionName())
+                    .build();
+            LambdaVersionPruneResult pruned = pruner.prune(del, readFunction(inp), testVersions);
+            addToTaskContext(stage, "urlList", pruned.getUrlList());
+        } catch (RuntimeException e) {
+            logger.warn("Could not delete power tuning versions " + testVersions, e);
+            addErrorMessage(stage, "Could not delete power tuning versions " + testVersions);
+        }
+    }
+
+    private LambdaDefinition readFunction(LambdaPowerTuningInput inp) {
+        return utils.retrieveLatestLambda(LambdaGetInput.builder()
+                .account(inp.getAccount())
+                .region(inp.getRegion())
+                .functionName(inp.getFunctionName())
+                .appName(inp.getAppName())
+                .build());
+    }
+
+    private LambdaPowerTuningInput getInput(StageExecution stage) {
+        LambdaPowerTuningInput inp = utils.getInput(stage, LambdaPowerTuningInput.class);
+        inp.setAppName(stage.getExecution().getApplication());
+        inp.setCredentials(inp.getAccount());
+        return inp;
+    }
+
+    private TaskResult running(StageExecution stage, LambdaPowerTuningState state) {
+        stage.getContext().put(LambdaStageConstants.powerTuningStateKey, state);
+        return TaskResult.builder(ExecutionStatus.RUNNING).build();
+    }
+
+    /**
+     * Set the function back to its original memory size and delete the test versions, for a run that is stopped
+     * before it could do so itself. Neither is waited for; a restore that clouddriver rejects is only logged.
+     */
+    private void abandon(StageExecution stage, LambdaPowerTuningInput inp, LambdaPowerTuningState state) {
+        cloudDriverUrl = props.getCloudDriverBaseUrl();
+        try {
+            LambdaDefinition lf = readFunction(inp);
+            if (lf != null && state.getOriginalMemorySize() != null
+                    && (state.getUrl() != null || !Objects.equals(lf.getMemorySize(), state.getOriginalMemorySize()))) {
+                post(inp, CLOUDDRIVER_UPDATE_CONFIG_PATH, toConfigurationInput(inp, lf, state.getOriginalMemorySize()));
+            }
+        } catch (RuntimeException e) {
+            logger.error(String.format("Could not set %s back to %d MB", inp.getFunctionName(), state.getOriginalMemorySize()), e);
+            addErrorMessage(stage, String.format("Could not set the function back to %d MB", state.getOriginalMemorySize()));
+        }
+        if (state.getStep() == LambdaPowerTuningStep.PUBLISH && state.getUrl() != null) {
+            addPublishedVersion(state);
+        }
+        deleteTestVersions(stage, inp, state);
+    }
+
+    /**
+     * A version whose publish was still being checked is deleted too if clouddriver has finished publishing it.
+     */
+    private void addPublishedVersion(LambdaPowerTuningState state) {
+        try {
+            LambdaCloudDriverTaskResults taskResult = LambdaCloudDriverAsyncUtils.join(asyncUtils.verifyStatusAsync(state.getUrl()));
+            LambdaCloudDriverResultObject result = taskResult.getResults();
+            if (taskResult.getStatus().isCompleted() && !taskResult.getStatus().isFailed()
+                    && result != null && result.getVersion() != null) {
+                state.getPublishedVersions().add(result.getVersion());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not check the power tuning version being published", e);
+        }
+    }
+
+    private LambdaPowerTuningState getState(StageExecution stage) {
+        Object saved = stage.getContext().remove(LambdaStageConstants.powerTuningStateKey);
+        return saved != null ? utils.convertValue(saved, LambdaPowerTuningState.class) : null;
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@Nonnull StageExecution stage) {
+        prepareTask(stage);
+        LambdaPowerTuningState state = getState(stage);
+        if (state == null) {
+            return formErrorTaskResult(stage, "Power tuning timed out");
+        }
+        addToOutput(stage, "powerTuningResults", state.getResults());
+        abandon(stage, getInput(stage), state);
+        return formErrorTaskResult(stage, String.format("Power tuning timed out during %s; the function was set back to %d MB",
+                state.getStep(), state.getOriginalMemorySize()));
+    }
+
+    @Override
+    public void onCancel(@Nonnull StageExecution stage) {
+        prepareTask(stage);
+        LambdaPowerTuningState state = getState(stage);
+        if (state != null) {
+            abandon(stage, getInput(stage), state);
+        }
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return backoffMillis;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+
+    void setProps(CloudDriverConfigurationProperties props) {
+        this.props = props;
+    }
+
+    void setUtils(LambdaCloudDriverUtils utils) {
+        this.utils = utils;
+    }
+
+    void setAsyncUtils(LambdaCloudDriverAsyncUtils asyncUtils) {
+        this.asyncUtils = asyncUtils;
+    }
+
+    void setPruner(LambdaVersionPruner pruner) {
+        this.pruner = pruner;
+    }
+
+    void setDefaultInvocationCount(int defaultInvocationCount) {
+        this.defaultInvocationCount = defaultInvocationCount;
+    }
+
+    void setPricePerGbSecond(double pricePerGbSecond) {
+        this.pricePerGbSecond = pricePerGbSecond;
+    }
+
+    void setPricePerRequest(double pricePerRequest) {
+        this.pricePerRequest = pricePerRequest;
+    }
+}
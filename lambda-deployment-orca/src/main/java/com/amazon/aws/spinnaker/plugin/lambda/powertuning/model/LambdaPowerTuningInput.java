@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.powertuning.model;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaHealthCheckArtifact;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaPowerTuningInput {
+    private String account, region, functionName, appName, credentials;
+    private List<Integer> memorySizes;
+    private Integer invocationCount;
+    private String payload;
+    private LambdaHealthCheckArtifact payloadArtifact;
+    private String optimizeFor;
+    private Boolean applyOptimum;
+    private int timeout;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.powertuning.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Progress of a power tuning run, kept in the stage context between polls.
+ * url is set while a configuration update or publish is in flight, invocationUrls while the test
+ * version is being invoked. expectedRevisionId is the revision the last operation produced.
+ * preexistingVersions are the versions the function had before the run; they are never cleaned up, even
+ * when publishing an unchanged configuration hands one of them back.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaPowerTuningState {
+    private LambdaPowerTuningStep step;
+    private Integer sizeIndex;
+    private Integer originalMemorySize;
+    private Integer targetMemorySize;
+    private String url;
+    private String expectedRevisionId;
+    private String testVersion;
+    private List<String> invocationUrls;
+    private List<String> publishedVersions;
+    private List<String> preexistingVersions;
+    private List<LambdaPowerTuningResult> results;
+    private String failureMessage;
+}
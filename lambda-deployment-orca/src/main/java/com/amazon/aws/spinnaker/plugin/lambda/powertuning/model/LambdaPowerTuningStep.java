@@ -0,0 +1,29 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.powertuning.model;
+
+/**
+ * Where a power tuning run is. CONFIGURE, PUBLISH and INVOKE are repeated for every memory size;
+ * APPLY sets the memory size the function is left with.
+ */
+public enum LambdaPowerTuningStep {
+    CONFIGURE,
+    PUBLISH,
+    INVOKE,
+    APPLY,
+    DONE
+}
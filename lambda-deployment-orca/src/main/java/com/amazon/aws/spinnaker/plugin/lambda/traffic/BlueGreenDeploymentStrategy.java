@@ -17,11 +17,10 @@
 package com.amazon.aws.spinnaker.plugin.lambda.traffic;
 
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.LambdaInvocationReports;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvocationReport;
 import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.*;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
-import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.*;
 import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
 import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
 import lombok.RequiredArgsConstructor;
@@ -32,8 +31,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Component
@@ -41,62 +41,38 @@ public class BlueGreenDeploymentStrategy extends BaseDeploymentStrategy<LambdaBl
     private static final Logger logger = LoggerFactory.getLogger(BlueGreenDeploymentStrategy.class);
 
     @Autowired
-    private LambdaCloudDriverUtils utils;
+    LambdaCloudDriverUtils utils;
+
+    @Autowired
+    LambdaCloudDriverAsyncUtils asyncUtils;
 
     @Autowired
     CloudDriverConfigurationProperties props;
 
     static String CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH = "/aws/ops/invokeLambdaFunction";
 
+    /**
+     * Points the alias at the latest version. The health check has already been run by the
+     * LambdaBlueGreenInvokeTask, LambdaBlueGreenWaitForInvokeTask and LambdaBlueGreenCompareTask
+     * that LambdaTrafficRoutingStage places ahead of the traffic update for this strategy.
+     */
     @Override
     public LambdaDeploymentStrategyOutput deploy(LambdaBlueGreenStrategyInput inp) {
-        LambdaInvokeFunctionOutput invokeOutput = invokeLambdaFunction(inp);
-        Pair<Boolean, String> results = verifyResults(inp, invokeOutput);
-        if (results.getLeft()) {
-            return updateLambdaToLatest(inp);
-        }
-        else {
-            LambdaCloudOperationOutput cloudOperationOutput = LambdaCloudOperationOutput.builder().build();
-            LambdaDeploymentStrategyOutput deploymentStrategyOutput =LambdaDeploymentStrategyOutput.builder().build();
-            deploymentStrategyOutput.setSucceeded(false);
-            deploymentStrategyOutput.setErrorMessage(results.getRight());
-            deploymentStrategyOutput.setOutput(cloudOperationOutput);
-            logger.error("BlueGreen Deployment failed: " + results.getRight());
-            return deploymentStrategyOutput;
-        }
+        return updateLambdaToLatest(inp);
     }
 
-    private Pair<Boolean, String> verifyResults(LambdaBlueGreenStrategyInput inp, LambdaInvokeFunctionOutput output) {
-        int timeout = inp.getTimeout() * 1000;
-        String url = output.getUrl();
-        int sleepTime = 10000;
-
-        LambdaCloudDriverTaskResults taskResult = null;
-        boolean done = false;
-        while (timeout > 0) {
-            taskResult = utils.verifyStatus(url);
-            if (taskResult.getStatus().isCompleted()) {
-                done = true;
-                break;
-            }
-            try {
-                utils.await();
-                timeout -= sleepTime;
-            } catch (Throwable e) {
-                logger.error("Error waiting for blue green test to complete");
-                continue;
-            }
-        }
-
-        if (!done)
-            return Pair.of(Boolean.FALSE, "Lambda Invocation did not finish on time");
+    /**
+     * Compares the output of a completed health check invocation with the expected output artifact.
+     */
+    public Pair<Boolean, String> verifyResults(LambdaPipelineArtifact outputArtifact, String url) {
+        return compareOutput(expectedOutput(outputArtifact), utils.getLambdaInvokeResults(url));
+    }
 
-        if (taskResult.getStatus().isFailed()) {
-            return Pair.of(Boolean.FALSE, "Lambda Invocation returned failure");
-        }
+    private String expectedOutput(LambdaPipelineArtifact outputArtifact) {
+        return utils.getPipelinesArtifactContent(outputArtifact).replaceAll("[\\n\\t ]", "");
+    }
 
-        LambdaCloudDriverInvokeOperationResults invokeResponse = utils.getLambdaInvokeResults(url);
-        String expected = utils.getPipelinesArtifactContent(inp.getOutputArtifact()).replaceAll("[\\n\\t ]", "");
+    private Pair<Boolean, String> compareOutput(String expected, LambdaCloudDriverInvokeOperationResults invokeResponse) {
         String actual = null;
         if (invokeResponse != null) {
             if (invokeResponse.getBody() != null) {
@@ -108,10 +84,15 @@ public class BlueGreenDeploymentStrategy extends BaseDeploymentStrategy<LambdaBl
         boolean comparison = ObjectUtils.defaultIfNull(expected, "").equals(actual);
         if (!comparison) {
             String err = String.format("BlueGreenDeployment failed: Comparison failed. expected : [%s], actual : [%s]", expected, actual);
+            logger.error(err);
+            if (invokeResponse == null) {
+                return Pair.of(Boolean.FALSE, err);
+            }
             logger.error("Response string: " + invokeResponse.getResponseString());
             String errMsg = String.format("%s \n %s", err, invokeResponse.getErrorMessage());
-            logger.error("Log results: " + invokeResponse.getInvokeResult().getLogResult());
-            logger.error(err);
+            if (invokeResponse.getInvokeResult() != null) {
+                logger.error("Log results: " + invokeResponse.getInvokeResult().getLogResult());
+            }
             return Pair.of(Boolean.FALSE, errMsg);
         }
         return Pair.of(Boolean.TRUE, "");
@@ -151,7 +132,7 @@ public class BlueGreenDeploymentStrategy extends BaseDeploymentStrategy<LambdaBl
         );
 
         LambdaDefinition lf = null;
-        lf = utils.findLambda(stage, true);
+        lf = utils.findLatestLambda(stage, true);
 
         String qual = utils.getCanonicalVersion(lf, "$LATEST", "", 1);
         blueGreenInput.setQualifier(qual);
@@ -161,16 +142,117 @@ public class BlueGreenDeploymentStrategy extends BaseDeploymentStrategy<LambdaBl
         return blueGreenInput;
     }
 
-    private LambdaInvokeFunctionOutput invokeLambdaFunction(LambdaBlueGreenStrategyInput ldi) {
-        // ldi.setPayload(utils.getPipelinesArtifactContent(ldi.getPayloadArtifact()));
-        String cloudDriverUrl = props.getCloudDriverBaseUrl();
-        String endPoint = cloudDriverUrl + CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH;
-        String rawString = utils.asString(ldi);
-        LambdaCloudDriverResponse respObj = utils.postToCloudDriver(endPoint, rawString);
-        String url = cloudDriverUrl + respObj.getResourceUri();
-        logger.debug("Posted to cloudDriver for blueGreenDeployment: " + url);
-        LambdaInvokeFunctionOutput ldso = LambdaInvokeFunctionOutput.builder().url(url).build();
-        return ldso;
+    public LambdaBlueGreenHealthCheck getHealthCheck(StageExecution stage) {
+        Object healthCheck = stage.getContext().get(LambdaStageConstants.healthCheckKey);
+        return healthCheck != null
+                ? utils.convertValue(healthCheck, LambdaBlueGreenHealthCheck.class)
+                : LambdaBlueGreenHealthCheck.builder().build();
+    }
+
+    /**
+     * Submits every health check sample in one batch, without waiting for one to be accepted before the next.
+     */
+    public List<LambdaBlueGreenSample> invokeSamples(StageExecution stage, LambdaBlueGreenStrategyInput inp) {
+        List<LambdaBlueGreenHealthCheckCase> cases = getCases(stage);
+        int sampleCount = Math.max(ObjectUtils.defaultIfNull(getHealthCheck(stage).getSamples(), 1), cases.size());
+        String endPoint = props.getCloudDriverBaseUrl() + CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH;
+        List<CompletableFuture<LambdaCloudDriverResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < sampleCount; i++) {
+            LambdaBlueGreenStrategyInput sampleInput = utils.convertValue(inp, LambdaBlueGreenStrategyInput.class);
+            sampleInput.setPayloadArtifact(cases.get(i % cases.size()).getPayloadArtifact().getArtifact());
+            futures.add(asyncUtils.postToCloudDriverAsync(endPoint, utils.asString(sampleInput), inp.getAccount(), inp.getRegion()));
+        }
+        List<LambdaCloudDriverResponse> responses = LambdaCloudDriverAsyncUtils.joinAll(futures);
+        List<LambdaBlueGreenSample> samples = new ArrayList<>();
+        for (int i = 0; i < responses.size(); i++) {
+            samples.add(LambdaBlueGreenSample.builder()
+                    .url(props.getCloudDriverBaseUrl() + responses.get(i).getResourceUri())
+                    .caseIndex(i % cases.size())
+                    .build());
+        }
+        logger.debug(String.format("Posted %d blue/green health check samples to cloudDriver", samples.size()));
+        return samples;
+    }
+
+    /**
+     * @return the submitted samples, or none if the health check has not been invoked
+     */
+    public List<LambdaBlueGreenSample> getSamples(StageExecution stage) {
+        Object samples = stage.getContext().get(LambdaStageConstants.blueGreenSamplesKey);
+        return samples != null
+                ? Arrays.asList(utils.convertValue(samples, LambdaBlueGreenSample[].class))
+                : Collections.emptyList();
+    }
+
+    /**
+     * Reads the results of every sample at once and checks them against the expected outputs and the
+     * latency ceiling, which is measured from the REPORT line of each invocation's log.
+     */
+    public LambdaBlueGreenHealthCheckResult verifySamples(StageExecution stage) {
+        LambdaBlueGreenHealthCheck healthCheck = getHealthCheck(stage);
+        List<LambdaBlueGreenHealthCheckCase> cases = getCases(stage);
+        List<LambdaBlueGreenSample> samples = getSamples(stage);
+        List<LambdaCloudDriverInvokeOperationResults> responses = LambdaCloudDriverAsyncUtils.joinAll(samples.stream()
+                .map(x -> asyncUtils.getLambdaInvokeResultsAsync(x.getUrl()).exceptionally(e -> null))
+                .collect(Collectors.toList()));
+
+        Map<Integer, String> expectedOutputs = new HashMap<>();
+        List<Double> durations = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < samples.size(); i++) {
+            int caseIndex = samples.get(i).getCaseIndex();
+            String expected = expectedOutputs.computeIfAbsent(caseIndex, x -> expectedOutput(cases.get(x).getOutputArtifact().getArtifact()));
+            LambdaCloudDriverInvokeOperationResults response = responses.get(i);
+            Pair<Boolean, String> comparison = compareOutput(expected, response);
+            LambdaInvocationReport report = response != null && response.getInvokeResult() != null
+                    ? LambdaInvocationReports.parse(response.getInvokeResult().getLogResult())
+                    : null;
+            Double duration = report != null ? report.getDurationMs() : null;
+            if (duration != null) {
+                durations.add(duration);
+            }
+            if (!comparison.getLeft()) {
+                failures.add(comparison.getRight());
+            } else if (healthCheck.getMaxDurationMs() != null && duration == null) {
+                failures.add(String.format("BlueGreenDeployment failed: no REPORT line to measure the duration of sample %d", i));
+            } else if (healthCheck.getMaxDurationMs() != null && duration > healthCheck.getMaxDurationMs()) {
+                failures.add(String.format("BlueGreenDeployment failed: sample %d took %.2fms, above the ceiling of %.2fms",
+                        i, duration, healthCheck.getMaxDurationMs()));
+            }
+        }
+
+        int passedSamples = samples.size() - failures.size();
+        double passRatio = samples.isEmpty() ? 0.0 : (double) passedSamples / samples.size();
+        double requiredPassRatio = ObjectUtils.defaultIfNull(healthCheck.getPassRatio(), 1.0);
+        return LambdaBlueGreenHealthCheckResult.builder()
+                .passed(!samples.isEmpty() && passRatio >= requiredPassRatio)
+                .samples(samples.size())
+                .passedSamples(passedSamples)
+                .passRatio(LambdaStatistics.round(passRatio))
+                .requiredPassRatio(requiredPassRatio)
+                .durationMs(LambdaStatistics.summarize(durations))
+                .failures(failures)
+                .build();
+    }
+
+    /**
+     * The stage's payload and output artifacts make up the only case unless healthCheck lists its own.
+     */
+    private List<LambdaBlueGreenHealthCheckCase> getCases(StageExecution stage) {
+        LambdaTrafficUpdateInput aliasInp = utils.getInput(stage, LambdaTrafficUpdateInput.class);
+        List<LambdaBlueGreenHealthCheckCase> configured = getHealthCheck(stage).getCases();
+        if (configured == null || configured.isEmpty()) {
+            return Collections.singletonList(LambdaBlueGreenHealthCheckCase.builder()
+                    .payloadArtifact(aliasInp.getPayloadArtifact())
+                    .outputArtifact(aliasInp.getOutputArtifact())
+                    .build());
+        }
+        return configured.stream()
+                .map(x -> LambdaBlueGreenHealthCheckCase.builder()
+                        .payloadArtifact(ObjectUtils.defaultIfNull(x.getPayloadArtifact(), aliasInp.getPayloadArtifact()))
+                        .outputArtifact(ObjectUtils.defaultIfNull(x.getOutputArtifact(), aliasInp.getOutputArtifact()))
+                        .build())
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -43,6 +43,12 @@ public enum DeploymentStrategyEnum {
         public BaseDeploymentStrategy getStrategyImpl() {
             return null;
         }
+    },
+    $PROGRESSIVE {
+        @Override
+        public BaseDeploymentStrategy getStrategyImpl() {
+            return null;
+        }
     };
 
     public abstract BaseDeploymentStrategy getStrategyImpl();
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaBlueGreenHealthCheckResult;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Compares the outputs of the completed blue/green health check invocations with the expected output artifacts.
+ * The latest version is promoted only if enough samples pass; the outcome is reported as blueGreenHealthCheck.
+ */
+@Component
+public class LambdaBlueGreenCompareTask implements LambdaStageBaseTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaBlueGreenCompareTask.class);
+
+    @Autowired
+    private BlueGreenDeploymentStrategy blueGreenStrategy;
+
+    @Nonnull
+    @Override
+    public TaskResult execute(@Nonnull StageExecution stage) {
+        logger.debug("Executing LambdaBlueGreenCompareTask...");
+        prepareTask(stage);
+        LambdaBlueGreenHealthCheckResult results = blueGreenStrategy.verifySamples(stage);
+        addToOutput(stage, LambdaStageConstants.blueGreenHealthCheckKey, results);
+        if (!results.getPassed()) {
+            String message = results.getSamples() == 1 && results.getFailures().size() == 1
+                    ? results.getFailures().get(0)
+                    : String.format("BlueGreenDeployment failed: %d of %d health check samples passed, a pass ratio of %.2f is required\n%s",
+                            results.getPassedSamples(), results.getSamples(), results.getRequiredPassRatio(),
+                            String.join("\n", results.getFailures()));
+            logger.error("BlueGreen Deployment failed: " + message);
+            return formErrorTaskResult(stage, message);
+        }
+        return taskComplete(stage);
+    }
+}
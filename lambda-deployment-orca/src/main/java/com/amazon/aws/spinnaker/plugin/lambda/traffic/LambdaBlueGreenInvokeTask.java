@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaBlueGreenSample;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaBlueGreenStrategyInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Submits the blue/green health check invocations of the latest version, one per sample, all at once.
+ * The invocations are followed by LambdaBlueGreenWaitForInvokeTask through their task urls.
+ */
+@Component
+public class LambdaBlueGreenInvokeTask implements LambdaStageBaseTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaBlueGreenInvokeTask.class);
+
+    @Autowired
+    private BlueGreenDeploymentStrategy blueGreenStrategy;
+
+    @Nonnull
+    @Override
+    public TaskResult execute(@Nonnull StageExecution stage) {
+        logger.debug("Executing LambdaBlueGreenInvokeTask...");
+        prepareTask(stage);
+        LambdaBlueGreenStrategyInput inp = blueGreenStrategy.setupInput(stage);
+        List<LambdaBlueGreenSample> samples = blueGreenStrategy.invokeSamples(stage, inp);
+        addToTaskContext(stage, LambdaStageConstants.blueGreenSamplesKey, samples);
+        return taskComplete(stage);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaBlueGreenSample;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
+import com.netflix.spinnaker.orca.api.pipeline.OverridableTimeoutRetryableTask;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Polls the blue/green health check invocations, all at once, until clouddriver reports every one completed.
+ * The wait is bounded by the health check timeout configured on the stage. Failed samples are left for
+ * LambdaBlueGreenCompareTask to weigh against the pass ratio; the task fails only if all of them failed.
+ */
+@Component
+public class LambdaBlueGreenWaitForInvokeTask implements LambdaStageBaseTask, OverridableTimeoutRetryableTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaBlueGreenWaitForInvokeTask.class);
+
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
+    @Autowired
+    private BlueGreenDeploymentStrategy blueGreenStrategy;
+
+    @Value("${lambdaPlugin.blueGreen.pollBackoffMillis:5000}")
+    private long backoffMillis;
+
+    @Value("${lambdaPlugin.blueGreen.defaultTimeoutMillis:300000}")
+    private long defaultTimeoutMillis;
+
+    @Nonnull
+    @Override
+    public TaskResult execute(@Nonnull StageExecution stage) {
+        logger.debug("Executing LambdaBlueGreenWaitForInvokeTask...");
+        prepareTask(stage);
+        List<LambdaBlueGreenSample> samples = blueGreenStrategy.getSamples(stage);
+        if (samples.isEmpty()) {
+            return formErrorTaskResult(stage, "No health check invocation found to wait for");
+        }
+        List<LambdaCloudDriverTaskResults> taskResults = LambdaCloudDriverAsyncUtils.joinAll(samples.stream()
+                .map(x -> asyncUtils.verifyStatusAsync(x.getUrl()))
+                .collect(Collectors.toList()));
+        if (taskResults.stream().anyMatch(x -> !x.getStatus().isCompleted())) {
+            return TaskResult.builder(ExecutionStatus.RUNNING).build();
+        }
+        if (taskResults.stream().allMatch(x -> x.getStatus().isFailed())) {
+            return formErrorTaskResult(stage, "Lambda Invocation returned failure");
+        }
+        return taskComplete(stage);
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@Nonnull StageExecution stage) {
+        return formErrorTaskResult(stage, "Lambda Invocation did not finish on time");
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return backoffMillis;
+    }
+
+    @Override
+    public long getTimeout() {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * The stage's timeout field is the health check timeout in seconds.
+     */
+    @Override
+    public long getDynamicTimeout(StageExecution stage) {
+        Number timeout = (Number) stage.getContext().get("timeout");
+        if (timeout != null && timeout.longValue() > 0) {
+            return timeout.longValue() * 1000;
+        }
+        return getTimeout();
+    }
+}
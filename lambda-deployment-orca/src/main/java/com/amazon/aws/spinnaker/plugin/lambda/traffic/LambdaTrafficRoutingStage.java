@@ -17,6 +17,7 @@
 
 package com.amazon.aws.spinnaker.plugin.lambda.traffic;
 
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.LambdaRecreateEventMappingsTask;
 import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.LambdaUpdateEventConfigurationTask;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.LambdaPutConcurrencyTask;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.LambdaVerificationTask;
@@ -41,11 +42,18 @@ public class LambdaTrafficRoutingStage implements StageDefinitionBuilder {
     @Override
     public void taskGraph(@Nonnull StageExecution stage, @Nonnull TaskNode.Builder builder) {
         logger.debug("taskGraph for Aws.LambdaTrafficRoutingStage");
+        if (DeploymentStrategyEnum.$BLUEGREEN.name().equals(stage.getContext().get("deploymentStrategy"))) {
+            builder.withTask("lambdaBlueGreenInvokeTask", LambdaBlueGreenInvokeTask.class);
+            builder.withTask("lambdaBlueGreenWaitForInvokeTask", LambdaBlueGreenWaitForInvokeTask.class);
+            builder.withTask("lambdaBlueGreenCompareTask", LambdaBlueGreenCompareTask.class);
+        }
         builder.withTask("lambdaTrafficUpdateTask", LambdaTrafficUpdateTask.class);
         builder.withTask("lambdaTrafficUpdateVerificationTask", LambdaTrafficUpdateVerificationTask.class);
         builder.withTask("lambdaPutConcurrencyTask", LambdaPutConcurrencyTask.class);
         builder.withTask("lambdaVerificationTask", LambdaVerificationTask.class);
         builder.withTask("lambdaEventConfigurationTask", LambdaUpdateEventConfigurationTask.class);
         builder.withTask("lambdaVerificationTask", LambdaVerificationTask.class);
+        builder.withTask("lambdaRecreateEventMappingsTask", LambdaRecreateEventMappingsTask.class);
+        builder.withTask("lambdaVerificationTask", LambdaVerificationTask.class);
     }
 }
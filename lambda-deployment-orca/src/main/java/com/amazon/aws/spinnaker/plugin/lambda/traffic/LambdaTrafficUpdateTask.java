@@ -18,28 +18,47 @@ package com.amazon.aws.spinnaker.plugin.lambda.traffic;
 
 
 import com.amazon.aws.spinnaker.plugin.lambda.*;
-import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaBaseStrategyInput;
-import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaDeploymentStrategyOutput;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvokeStageInput;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.LambdaMetricGate;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricGateConfig;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricGateDecision;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.*;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.*;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
+import com.netflix.spinnaker.orca.api.pipeline.RetryableTask;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
 import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
 import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
 import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
 import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.pf4j.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
 
+/**
+ * Applies the stage's deployment strategy to the alias.
+ * Most strategies update the alias once. $PROGRESSIVE moves traffic over several steps: each execution
+ * either checks the alias update in flight, waits out the current step, checks the health of the new version
+ * or applies the next step, so the rollout never holds a worker thread. If the new version is unhealthy the
+ * alias is pointed back at the old version and the task fails.
+ * When the stage has a metricGate, the new version's metrics are checked while it takes traffic, and a
+ * breach rolls the alias back. A gated step is not passed until its metrics show the new version was invoked.
+ * A gated $WEIGHTED shift is watched for metricGate.observationSeconds.
+ */
 @Component
-public class LambdaTrafficUpdateTask implements LambdaStageBaseTask {
+public class LambdaTrafficUpdateTask implements LambdaStageBaseTask, RetryableTask {
     private static Logger logger = LoggerFactory.getLogger(LambdaTrafficUpdateTask.class);
+    private static final String CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH = "/aws/ops/invokeLambdaFunction";
+    private static final String UPDATE_FAILED = "Failed";
 
     private String cloudDriverUrl;
 
@@ -52,6 +71,33 @@ public class LambdaTrafficUpdateTask implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
+    @Autowired
+    private ProgressiveDeploymentStrategy progressiveStrategy;
+
+    @Autowired
+    private WeightedDeploymentStrategy weightedStrategy;
+
+    @Autowired
+    private BlueGreenDeploymentStrategy blueGreenStrategy;
+
+    @Autowired
+    private LambdaMetricGate metricGate;
+
+    @Value("${lambdaPlugin.progressive.pollMillis:10000}")
+    private long pollMillis;
+
+    @Value("${lambdaPlugin.progressive.defaultStepIntervalSeconds:300}")
+    private int defaultStepIntervalSeconds;
+
+    @Value("${lambdaPlugin.progressive.timeoutMarginMillis:1800000}")
+    private long timeoutMarginMillis;
+
+    @Value("${lambdaPlugin.metrics.checkIntervalMillis:60000}")
+    private long metricCheckIntervalMillis;
+
     @NotNull
     @Override
     public TaskResult execute(@NotNull StageExecution stage) {
@@ -65,6 +111,9 @@ public class LambdaTrafficUpdateTask implements LambdaStageBaseTask {
             logger.error("Validation failed for traffic update task");
             return this.formErrorListTaskResult(stage, validationErrors);
         }
+        if (deploymentStrategy == progressiveStrategy || isWatchedWeightedShift(stage, deploymentStrategy)) {
+            return shiftProgressively(stage, deploymentStrategy);
+        }
         LambdaBaseStrategyInput input = deploymentStrategy.setupInput(stage);
         result = deploymentStrategy.deploy(input);
         if (!result.isSucceeded()) {
@@ -94,17 +143,348 @@ public class LambdaTrafficUpdateTask implements LambdaStageBaseTask {
         return true;
     }
 
+    private boolean isWatchedWeightedShift(StageExecution stage, BaseDeploymentStrategy deploymentStrategy) {
+        LambdaMetricGateConfig gate = getMetricGate(stage);
+        return deploymentStrategy == weightedStrategy && LambdaMetricGate.isEnabled(gate)
+                && gate.getObservationSeconds() != null && gate.getObservationSeconds() > 0;
+    }
+
+    private TaskResult shiftProgressively(StageExecution stage, BaseDeploymentStrategy<LambdaWeightedStrategyInput> strategy) {
+        LambdaProgressiveShiftState state = getShiftState(stage);
+        if (state == null) {
+            LambdaMetricGateConfig gate = getMetricGate(stage);
+            List<Integer> steps;
+            int intervalSeconds;
+            LambdaWeightedStrategyInput input = strategy.setupInput(stage);
+            if (strategy == progressiveStrategy) {
+                LambdaProgressiveSchedule schedule = utils.getInput(stage, LambdaProgressiveSchedule.class);
+                try {
+                    steps = ProgressiveDeploymentStrategy.getSteps(schedule);
+                } catch (IllegalArgumentException e) {
+                    return formErrorTaskResult(stage, e.getMessage());
+                }
+                intervalSeconds = schedule.getStepIntervalSeconds() != null ? schedule.getStepIntervalSeconds() : defaultStepIntervalSeconds;
+            } else {
+                steps = Collections.singletonList((int) Math.round(input.getWeightToMinorFunctionVersion() * 100));
+                intervalSeconds = gate.getObservationSeconds();
+            }
+            if (input.getMajorFunctionVersion() == null || input.getMinorFunctionVersion() == null) {
+                return formErrorTaskResult(stage, "Could not resolve the versions to shift traffic between");
+            }
+            if (input.getMajorFunctionVersion().equals(input.getMinorFunctionVersion())) {
+                return formErrorTaskResult(stage, String.format("Alias %s already points at version %s", input.getAliasName(), input.getMinorFunctionVersion()));
+            }
+            state = LambdaProgressiveShiftState.builder()
+                    .input(input)
+                    .steps(steps)
+                    .intervalSeconds(intervalSeconds)
+                    .stepIndex(-1)
+                    .holdLastStep(strategy != progressiveStrategy)
+                    .rollingBack(Boolean.FALSE)
+                    .metricGate(LambdaMetricGate.isEnabled(gate) ? gate : null)
+                    .build();
+        }
+
+        if (state.getUrl() != null) {
+            LambdaCloudDriverTaskResults op = checkStatus(state.getUrl());
+            if (op == null || !op.getStatus().isCompleted()) {
+                return keepShifting(stage, state);
+            }
+            String url = state.getUrl();
+            state.setUrl(null);
+            if (op.getStatus().isFailed()) {
+                String message = op.getErrors() != null ? op.getErrors().getMessage() : "Alias update failed";
+                if (Boolean.TRUE.equals(state.getRollingBack())) {
+                    return shiftFailed(stage, state, String.format("%s; rollback failed: %s", state.getFailureMessage(), message));
+                }
+                return rollBack(stage, state, "Alias update failed: " + message);
+            }
+            if (Boolean.TRUE.equals(state.getRollingBack())) {
+                return shiftFailed(stage, state, String.format("%s; traffic was moved back to version %s",
+                        state.getFailureMessage(), state.getInput().getMajorFunctionVersion()));
+            }
+            state.setStepAppliedAt(System.currentTimeMillis());
+            state.setAppliedUrl(url);
+            logger.info(String.format("Alias %s sends %d%% of traffic to version %s", state.getInput().getAliasName(),
+                    currentPercent(state), state.getInput().getMinorFunctionVersion()));
+            if (currentPercent(state) == 100 && !Boolean.TRUE.equals(state.getHoldLastStep())) {
+                return shiftComplete(stage, state, url);
+            }
+        }
+
+        if (state.getHealthCheckUrl() != null) {
+            LambdaCloudDriverTaskResults op = checkStatus(state.getHealthCheckUrl());
+            if (op == null || !op.getStatus().isCompleted()) {
+                return keepShifting(stage, state);
+            }
+            String url = state.getHealthCheckUrl();
+            state.setHealthCheckUrl(null);
+            if (op.getStatus().isFailed()) {
+                return rollBack(stage, state, "Health check invocation of the new version failed");
+            }
+            LambdaTrafficUpdateInput inp = utils.getInput(stage, LambdaTrafficUpdateInput.class);
+            Pair<Boolean, String> result = blueGreenStrategy.verifyResults(inp.getOutputArtifact().getArtifact(), url);
+            if (!result.getLeft()) {
+                return rollBack(stage, state, result.getRight());
+            }
+            state.setHealthCheckedStep(state.getStepIndex());
+        }
+
+        if (state.getStepIndex() >= 0) {
+            long holdEndsAt = state.getStepAppliedAt() + state.getIntervalSeconds() * 1000L;
+            boolean holding = System.currentTimeMillis() < holdEndsAt;
+            if (state.getMetricGate() != null && isMetricCheckDue(state, holding, holdEndsAt)) {
+                TaskResult gateResult = checkMetrics(stage, state, holding);
+                if (gateResult != null) {
+                    return gateResult;
+                }
+            }
+            if (holding) {
+                return keepShifting(stage, state);
+            }
+            String unhealthy = checkFunctionHealth(stage);
+            if (unhealthy != null) {
+                return rollBack(stage, state, unhealthy);
+            }
+            if (hasHealthCheck(stage) && !state.getStepIndex().equals(state.getHealthCheckedStep())) {
+                state.setHealthCheckUrl(invokeNewVersion(stage, state.getInput()));
+                return keepShifting(stage, state);
+            }
+            if (state.getStepIndex() == state.getSteps().size() - 1) {
+                return shiftComplete(stage, state, state.getAppliedUrl());
+            }
+        }
+
+        state.setStepIndex(state.getStepIndex() + 1);
+        state.getInput().setWeightToMinorFunctionVersion(currentPercent(state) / 100.0);
+        LambdaCloudOperationOutput out = strategy.deploy(state.getInput()).getOutput();
+        state.setUrl(out.getUrl());
+        state.setOutputMap(out.getOutputMap());
+        return keepShifting(stage, state);
+    }
+
+    /**
+     * Metrics are checked every checkIntervalMillis while a step is held, and once more when the hold ends.
+     */
+    private boolean isMetricCheckDue(LambdaProgressiveShiftState state, boolean holding, long holdEndsAt) {
+        long lastCheckAt = state.getLastMetricCheckAt() != null ? state.getLastMetricCheckAt() : 0L;
+        if (holding) {
+            return System.currentTimeMillis() - lastCheckAt >= metricCheckIntervalMillis;
+        }
+        return lastCheckAt < holdEndsAt;
+    }
+
+    /**
+     * @return the result of the execution if the metrics stop the shift from going on, or null
+     */
+    private TaskResult checkMetrics(StageExecution stage, LambdaProgressiveShiftState state, boolean holding) {
+        long started = System.nanoTime();
+        LambdaMetricGateDecision decision = metricGate.evaluate(state.getMetricGate(), state.getInput(), state.getStepAppliedAt());
+        if (decision == null) {
+            // never move past a step without having seen its metrics
+            return holding ? null : keepShifting(stage, state);
+        }
+        state.setMetricDecision(decision);
+        if (Boolean.TRUE.equals(decision.getNoData())) {
+            // keep checking after the hold ends until the new version has been invoked
+            if (holding) {
+                state.setLastMetricCheckAt(decision.getEvaluatedAt());
+                return null;
+            }
+            return keepShifting(stage, state);
+        }
+        state.setLastMetricCheckAt(decision.getEvaluatedAt());
+        if (!decision.getBreached()) {
+            return null;
+        }
+        return rollBack(stage, state, "Metric gate breached: " + String.join("; ", decision.getBreaches()), started);
+    }
+
+    private int currentPercent(LambdaProgressiveShiftState state) {
+        return state.getSteps().get(state.getStepIndex());
+    }
+
+    /**
+     * @return why the new version is unhealthy, or null if it is healthy
+     */
+    private String checkFunctionHealth(StageExecution stage) {
+        LambdaDefinition lf = utils.findLatestLambda(stage);
+        if (lf == null) {
+            return "Function no longer exists";
+        }
+        if (UPDATE_FAILED.equals(lf.getLastUpdateStatus())) {
+            return String.format("Last update of function failed with reason: %s", lf.getLastUpdateStatusReason());
+        }
+        return null;
+    }
+
+    /**
+     * Steps are gated on a health check invocation when the stage has both a payload and an expected output.
+     */
+    private boolean hasHealthCheck(StageExecution stage) {
+        LambdaTrafficUpdateInput inp = utils.getInput(stage, LambdaTrafficUpdateInput.class);
+        return inp.getPayloadArtifact() != null && inp.getPayloadArtifact().getArtifact() != null
+                && inp.getOutputArtifact() != null && inp.getOutputArtifact().getArtifact() != null;
+    }
+
+    private String invokeNewVersion(StageExecution stage, LambdaWeightedStrategyInput input) {
+        LambdaTrafficUpdateInput inp = utils.getInput(stage, LambdaTrafficUpdateInput.class);
+        LambdaInvokeStageInput invokeInput = LambdaInvokeStageInput.builder()
+                .account(input.getAccount())
+                .credentials(input.getAccount())
+                .region(input.getRegion())
+                .appName(input.getAppName())
+                .functionName(input.getFunctionName())
+                .qualifier(input.getMinorFunctionVersion())
+                .payloadArtifact(inp.getPayloadArtifact().getArtifact())
+                .timeout(inp.getTimeout())
+                .build();
+        LambdaCloudDriverResponse respObj = LambdaCloudDriverAsyncUtils.join(asyncUtils.postToCloudDriverAsync(
+                cloudDriverUrl + CLOUDDRIVER_INVOKE_LAMBDA_FUNCTION_PATH, utils.asString(invokeInput), input.getAccount(), input.getRegion()));
+        return cloudDriverUrl + respObj.getResourceUri();
+    }
+
+    private LambdaCloudDriverTaskResults checkStatus(String url) {
+        try {
+            return LambdaCloudDriverAsyncUtils.join(asyncUtils.verifyStatusAsync(url));
+        } catch (RuntimeException e) {
+            logger.warn(String.format("Could not check task at %s, retrying", url), e);
+            return null;
+        }
+    }
+
+    private TaskResult rollBack(StageExecution stage, LambdaProgressiveShiftState state, String message) {
+        return rollBack(stage, state, message, null);
+    }
+
+    /**
+     * Points the alias back at the major version with a single alias update.
+     * @param decisionStartedAt System.nanoTime() when the check that led to the rollback started, to time the decision
+     */
+    private TaskResult rollBack(StageExecution stage, LambdaProgressiveShiftState state, String message, Long decisionStartedAt) {
+        logger.error(String.format("Rolling back alias %s: %s", state.getInput().getAliasName(), message));
+        state.setFailureMessage(message);
+        state.setRollingBack(Boolean.TRUE);
+        state.setHealthCheckUrl(null);
+        if (state.getStepIndex() < 0) {
+            return shiftFailed(stage, state, message);
+        }
+        try {
+            state.setUrl(progressiveStrategy.rollback(state.getInput()).getOutput().getUrl());
+        } catch (RuntimeException e) {
+            return shiftFailed(stage, state, String.format("%s; rollback failed: %s", message, e.getMessage()));
+        }
+        if (decisionStartedAt != null && state.getMetricDecision() != null) {
+            state.getMetricDecision().setRollbackMillis((System.nanoTime() - decisionStartedAt) / 1_000_000);
+            logger.info(String.format("Rollback of alias %s submitted %dms after the metric check started",
+                    state.getInput().getAliasName(), state.getMetricDecision().getRollbackMillis()));
+        }
+        return keepShifting(stage, state);
+    }
+
+    private TaskResult shiftFailed(StageExecution stage, LambdaProgressiveShiftState state, String message) {
+        stage.getContext().remove(LambdaStageConstants.progressiveShiftStateKey);
+        if (state.getMetricDecision() != null) {
+            addToOutput(stage, "metricGate:decision", state.getMetricDecision());
+        }
+        return formErrorTaskResult(stage, message);
+    }
+
+    private TaskResult shiftComplete(StageExecution stage, LambdaProgressiveShiftState state, String url) {
+        stage.getContext().remove(LambdaStageConstants.progressiveShiftStateKey);
+        if (state.getOutputMap() != null) {
+            state.getOutputMap().forEach((x, y) -> addToTaskContext(stage, x, y));
+        }
+        addToTaskContext(stage, "deployment:trafficSteps", state.getSteps());
+        if (state.getMetricDecision() != null) {
+            addToTaskContext(stage, "metricGate:decision", state.getMetricDecision());
+        }
+        addCloudOperationToContext(stage, LambdaCloudOperationOutput.builder().url(url).build(), "url");
+        return taskComplete(stage);
+    }
+
+    private TaskResult keepShifting(StageExecution stage, LambdaProgressiveShiftState state) {
+        stage.getContext().put(LambdaStageConstants.progressiveShiftStateKey, state);
+        return TaskResult.builder(ExecutionStatus.RUNNING).build();
+    }
+
+    private LambdaMetricGateConfig getMetricGate(StageExecution stage) {
+        Object gate = stage.getContext().get(LambdaStageConstants.metricGateKey);
+        return gate != null ? utils.convertValue(gate, LambdaMetricGateConfig.class) : null;
+    }
+
+    private LambdaProgressiveShiftState getShiftState(StageExecution stage) {
+        Object saved = stage.getContext().get(LambdaStageConstants.progressiveShiftStateKey);
+        return saved != null ? utils.convertValue(saved, LambdaProgressiveShiftState.class) : null;
+    }
+
     private BaseDeploymentStrategy getDeploymentStrategy(StageExecution stage) {
         return injector.getStrategy(DeploymentStrategyEnum.valueOf((String)stage.getContext().get("deploymentStrategy")));
     }
 
+    /**
+     * A progressive or watched shift that runs out of time is rolled back before the task fails.
+     */
     @Nullable
     @Override
     public TaskResult onTimeout(@NotNull StageExecution stage) {
-        return null;
+        LambdaProgressiveShiftState state = getShiftState(stage);
+        if (state == null) {
+            return null;
+        }
+        if (state.getStepIndex() < 0) {
+            return shiftFailed(stage, state, "Traffic shift timed out before any traffic was moved");
+        }
+        String rollbackFailure = rollBackNow(state);
+        return shiftFailed(stage, state, rollbackFailure == null
+                ? "Traffic shift timed out; rollback to version " + state.getInput().getMajorFunctionVersion() + " submitted"
+                : "Traffic shift timed out; rollback failed: " + rollbackFailure);
     }
 
     @Override
     public void onCancel(@NotNull StageExecution stage) {
+        LambdaProgressiveShiftState state = getShiftState(stage);
+        if (state != null) {
+            rollBackNow(state);
+            stage.getContext().remove(LambdaStageConstants.progressiveShiftStateKey);
+        }
+    }
+
+    /**
+     * @return why the rollback could not be submitted, or null if it was submitted or no traffic was moved
+     */
+    private String rollBackNow(LambdaProgressiveShiftState state) {
+        if (state.getStepIndex() < 0) {
+            return null;
+        }
+        try {
+            progressiveStrategy.rollback(state.getInput());
+            return null;
+        } catch (RuntimeException e) {
+            logger.error("Could not roll back alias " + state.getInput().getAliasName(), e);
+            return e.getMessage();
+        }
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return pollMillis;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMarginMillis;
+    }
+
+    /**
+     * A progressive or watched shift gets the time its schedule needs on top of the margin.
+     */
+    @Override
+    public long getDynamicTimeout(StageExecution stage) {
+        LambdaProgressiveShiftState state = getShiftState(stage);
+        if (state == null) {
+            return getTimeout();
+        }
+        return state.getSteps().size() * state.getIntervalSeconds() * 1000L + getTimeout();
     }
 }
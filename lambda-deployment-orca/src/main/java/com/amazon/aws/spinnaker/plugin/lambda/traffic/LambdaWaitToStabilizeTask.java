@@ -14,32 +14,42 @@
  * limitations under the License.
  */
 
-
 package com.amazon.aws.spinnaker.plugin.lambda.traffic;
 
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.OverridableTimeoutRetryableTask;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
 import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
 import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
-import java.util.Map;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Waits for the function to leave the Pending state and for its last update to finish.
+ * Each execution checks the function once; between checks orca backs off exponentially, with jitter,
+ * based on the number of checks made so far. The overall wait is bounded by the task timeout, which
+ * can be overridden per stage.
+ */
 @Component
-public class LambdaWaitToStabilizeTask implements LambdaStageBaseTask {
+public class LambdaWaitToStabilizeTask implements LambdaStageBaseTask, OverridableTimeoutRetryableTask {
     private static Logger logger = LoggerFactory.getLogger(LambdaWaitToStabilizeTask.class);
 
-    final String PENDING_STATE = "Pending";
     final String ACTIVE_STATE = "Active";
     final String FUNCTION_CREATING = "Creating";
+    final String UPDATE_FAILED = "Failed";
+    private static final String attemptsKey = "lambdaStabilizeAttempts";
 
     @Autowired
     CloudDriverConfigurationProperties props;
@@ -47,29 +57,48 @@ public class LambdaWaitToStabilizeTask implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Value("${lambdaPlugin.waitToStabilize.initialBackoffMillis:1000}")
+    private long initialBackoffMillis;
+
+    @Value("${lambdaPlugin.waitToStabilize.maxBackoffMillis:30000}")
+    private long maxBackoffMillis;
+
+    @Value("${lambdaPlugin.waitToStabilize.timeoutMillis:900000}")
+    private long timeoutMillis;
+
     @Nonnull
     @Override
     public TaskResult execute(@Nonnull StageExecution stage) {
         logger.debug("Executing LambdaWaitToStabilizeTask...");
-        return waitForStableState(stage);
+        return checkStableState(stage);
     }
 
-    private TaskResult waitForStableState(@NotNull StageExecution stage) {
-        LambdaDefinition lf = null;
-        while(true) {
-            lf = utils.findLambda(stage);
-            if (lf != null && lf.getState() != null) {
-                logger.debug(String.format("lambda state %s", lf.getState()));
-                if (lf.getState().equals(PENDING_STATE) && lf.getStateReasonCode() != null && lf.getStateReasonCode().equals(FUNCTION_CREATING)) {
-                    utils.await(10000);
-                    continue;
-                }
-                if (lf.getState().equals(ACTIVE_STATE)) {
-                    return taskComplete(stage);
-                }
+    private TaskResult checkStableState(@NotNull StageExecution stage) {
+        LambdaDefinition lf = utils.findLatestLambda(stage);
+        if (lf != null && lf.getState() != null) {
+            logger.debug(String.format("lambda state %s, last update status %s", lf.getState(), lf.getLastUpdateStatus()));
+            if (LambdaCloudDriverUtils.PENDING_STATE.equals(lf.getState()) && FUNCTION_CREATING.equals(lf.getStateReasonCode())) {
+                return keepWaiting(stage);
+            }
+            if (LambdaCloudDriverUtils.UPDATE_IN_PROGRESS.equals(lf.getLastUpdateStatus())) {
+                return keepWaiting(stage);
+            }
+            if (UPDATE_FAILED.equals(lf.getLastUpdateStatus())) {
+                stage.getContext().remove(attemptsKey);
+                return this.formErrorTaskResult(
+                        stage,
+                        String.format(
+                                "Last update of function failed with reason: %s",
+                                lf.getLastUpdateStatusReason() != null ? lf.getLastUpdateStatusReason() : "Unknown reason"
+                        )
+                );
+            }
+            if (lf.getState().equals(ACTIVE_STATE)) {
+                stage.getContext().remove(attemptsKey);
+                return taskComplete(stage);
             }
-            break;
         }
+        stage.getContext().remove(attemptsKey);
         return this.formErrorTaskResult(
                 stage,
                 String.format(
@@ -79,4 +108,43 @@ public class LambdaWaitToStabilizeTask implements LambdaStageBaseTask {
                 )
         );
     }
+
+    private TaskResult keepWaiting(StageExecution stage) {
+        stage.getContext().put(attemptsKey, getAttempts(stage) + 1);
+        return TaskResult.builder(ExecutionStatus.RUNNING).build();
+    }
+
+    private int getAttempts(StageExecution stage) {
+        Number attempts = (Number) stage.getContext().get(attemptsKey);
+        return attempts != null ? attempts.intValue() : 0;
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@Nonnull StageExecution stage) {
+        stage.getContext().remove(attemptsKey);
+        return this.formErrorTaskResult(stage, "Timed out waiting for function to stabilize");
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * Doubles with every check up to maxBackoffMillis; half of the period is randomized so that many
+     * functions deployed together do not poll clouddriver in lockstep.
+     */
+    @Override
+    public long getDynamicBackoffPeriod(StageExecution stage, Duration taskDuration) {
+        int exponent = Math.min(getAttempts(stage), 30);
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << exponent);
+        long half = Math.max(1, backoff / 2);
+        return half + ThreadLocalRandom.current().nextLong(half);
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMillis;
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaDeploymentStrategyOutput;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaProgressiveSchedule;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaTrafficUpdateInput;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaWeightedStrategyInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.amazonaws.services.lambda.model.AliasConfiguration;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves an alias from its current version to a new one over several steps.
+ * Each call to deploy applies one step; LambdaTrafficUpdateTask works through the schedule, holding every
+ * step for its interval and checking the new version's health before moving on.
+ */
+@Component
+public class ProgressiveDeploymentStrategy extends BaseDeploymentStrategy<LambdaWeightedStrategyInput> {
+    private static final int DEFAULT_STEP_PERCENT = 10;
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    CloudDriverConfigurationProperties props;
+
+    /**
+     * Points the alias at the input's versions and weight; a weight of 1 sends all traffic to the minor version.
+     */
+    @Override
+    public LambdaDeploymentStrategyOutput deploy(LambdaWeightedStrategyInput inp) {
+        if (inp.getWeightToMinorFunctionVersion() >= 1.0) {
+            return updateAlias(inp, inp.getMinorFunctionVersion(), null, 0.0);
+        }
+        return updateAlias(inp, inp.getMajorFunctionVersion(), inp.getMinorFunctionVersion(), inp.getWeightToMinorFunctionVersion());
+    }
+
+    /**
+     * Sends all traffic back to the major version.
+     */
+    public LambdaDeploymentStrategyOutput rollback(LambdaWeightedStrategyInput inp) {
+        return updateAlias(inp, inp.getMajorFunctionVersion(), null, 0.0);
+    }
+
+    private LambdaDeploymentStrategyOutput updateAlias(LambdaWeightedStrategyInput inp, String major, String minor, double weight) {
+        LambdaWeightedStrategyInput aliasUpdate = LambdaWeightedStrategyInput.builder()
+                .credentials(inp.getCredentials())
+                .account(inp.getAccount())
+                .region(inp.getRegion())
+                .appName(inp.getAppName())
+                .functionName(inp.getFunctionName())
+                .aliasName(inp.getAliasName())
+                .aliasDescription(inp.getAliasDescription())
+                .majorFunctionVersion(major)
+                .minorFunctionVersion(minor)
+                .weightToMinorFunctionVersion(weight)
+                .build();
+        Map<String, Object> outputMap = new HashMap<>();
+        outputMap.put("deployment:majorVersionDeployed", major);
+        outputMap.put("deployment:minorVersionDeployed", minor);
+        outputMap.put("deployment:aliasDeployed", inp.getAliasName());
+        outputMap.put("deployment:strategyUsed", "ProgressiveDeploymentStrategy");
+        LambdaCloudOperationOutput out = postToCloudDriver(aliasUpdate, props.getCloudDriverBaseUrl(), utils);
+        out.setOutputMap(outputMap);
+        LambdaDeploymentStrategyOutput deployOutput = LambdaDeploymentStrategyOutput.builder().build();
+        deployOutput.setSucceeded(true);
+        deployOutput.setOutput(out);
+        return deployOutput;
+    }
+
+    /**
+     * The major version is the one the alias points at unless versionNameA says otherwise; the minor version
+     * is the latest one unless versionNameB says otherwise.
+     */
+    @Override
+    public LambdaWeightedStrategyInput setupInput(StageExecution stage) {
+        LambdaTrafficUpdateInput aliasInp = utils.getInput(stage, LambdaTrafficUpdateInput.class);
+        LambdaWeightedStrategyInput progressiveInput = utils.getInput(stage, LambdaWeightedStrategyInput.class);
+        progressiveInput.setAppName(stage.getExecution().getApplication());
+        progressiveInput.setAccount(aliasInp.getAccount());
+        progressiveInput.setCredentials(aliasInp.getAccount());
+        progressiveInput.setWeightToMinorFunctionVersion(0.0);
+
+        String major = getVersion(stage, aliasInp.getVersionNameA(), aliasInp.getVersionNumberA());
+        if (major == null) {
+            major = currentAliasVersion(utils.findLatestLambda(stage), aliasInp.getAliasName());
+        }
+        String minor = getVersion(stage, aliasInp.getVersionNameB() != null ? aliasInp.getVersionNameB() : "$LATEST", aliasInp.getVersionNumberB());
+        progressiveInput.setMajorFunctionVersion(major);
+        progressiveInput.setMinorFunctionVersion(minor);
+        return progressiveInput;
+    }
+
+    private String currentAliasVersion(LambdaDefinition lf, String aliasName) {
+        if (lf == null || lf.getAliasConfigurations() == null) {
+            return null;
+        }
+        return lf.getAliasConfigurations().stream()
+                .filter(x -> aliasName != null && aliasName.equals(x.getName()))
+                .map(AliasConfiguration::getFunctionVersion)
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * @return the percentage of traffic on the new version at each step, ending with 100
+     */
+    public static List<Integer> getSteps(LambdaProgressiveSchedule schedule) {
+        List<Integer> steps = new ArrayList<>();
+        if (schedule.getTrafficSteps() != null && !schedule.getTrafficSteps().isEmpty()) {
+            int previous = 0;
+            for (Integer step : schedule.getTrafficSteps()) {
+                if (step == null || step <= previous || step > 100) {
+                    throw new IllegalArgumentException("trafficSteps must be increasing percentages up to 100");
+                }
+                steps.add(step);
+                previous = step;
+            }
+        } else {
+            int stepPercent = schedule.getStepPercent() != null ? schedule.getStepPercent() : DEFAULT_STEP_PERCENT;
+            if (stepPercent <= 0 || stepPercent > 100) {
+                throw new IllegalArgumentException("stepPercent must be between 1 and 100");
+            }
+            if ("LINEAR".equalsIgnoreCase(schedule.getProgressiveType())) {
+                for (int percent = stepPercent; percent < 100; percent += stepPercent) {
+                    steps.add(percent);
+                }
+            } else if (schedule.getProgressiveType() == null || "CANARY".equalsIgnoreCase(schedule.getProgressiveType())) {
+                steps.add(stepPercent);
+            } else {
+                throw new IllegalArgumentException("progressiveType must be CANARY or LINEAR");
+            }
+        }
+        if (steps.isEmpty() || steps.get(steps.size() - 1) != 100) {
+            steps.add(100);
+        }
+        return steps;
+    }
+
+    @Override
+    public LambdaCloudDriverUtils getUtils() {
+        return utils;
+    }
+}
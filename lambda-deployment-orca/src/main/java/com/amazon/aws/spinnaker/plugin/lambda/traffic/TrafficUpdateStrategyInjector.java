@@ -37,6 +37,8 @@ public class TrafficUpdateStrategyInjector {
     private WeightedDeploymentStrategy weightedStrat;
     @Autowired
     private BlueGreenDeploymentStrategy blueGreenStrat;
+    @Autowired
+    private ProgressiveDeploymentStrategy progressiveStrat;
 
     private Map<DeploymentStrategyEnum, BaseDeploymentStrategy> factoryMap = new HashMap<>();
 
@@ -53,6 +55,7 @@ public class TrafficUpdateStrategyInjector {
         factoryMap.put(DeploymentStrategyEnum.$BLUEGREEN, blueGreenStrat);
         factoryMap.put(DeploymentStrategyEnum.$WEIGHTED, weightedStrat);
         factoryMap.put(DeploymentStrategyEnum.$SIMPLE, simpleStrat);
+        factoryMap.put(DeploymentStrategyEnum.$PROGRESSIVE, progressiveStrat);
     }
 }
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaCloudMetricStatistics;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricQuery;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaVersionMetrics;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
+import okhttp3.HttpUrl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Reads the AWS/Lambda CloudWatch metrics through clouddriver's cloudMetrics endpoint, using the account's
+ * credentials in clouddriver. The endpoint only serves standard statistics, so only the maximum duration is
+ * read and the p99 duration is left unknown.
+ */
+@Component
+public class CloudDriverMetricProvider implements MetricProvider {
+    static final String NAME = "clouddriver";
+    private static final String CLOUDDRIVER_METRICS_PATH = "/cloudMetrics/aws/%s/%s/%s/statistics";
+
+    @Autowired
+    LambdaCloudDriverUtils utils;
+
+    @Autowired
+    CloudDriverConfigurationProperties props;
+
+    @Value("${lambdaPlugin.metrics.periodSeconds:60}")
+    int periodSeconds;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public LambdaVersionMetrics getMetrics(LambdaMetricQuery query) {
+        return LambdaVersionMetrics.builder()
+                .invocations(total(getStatistics(query, "Invocations", "Sum").getDatapoints()))
+                .errors(total(getStatistics(query, "Errors", "Sum").getDatapoints()))
+                .throttles(total(getStatistics(query, "Throttles", "Sum").getDatapoints()))
+                .maxDurationMs(maximum(getStatistics(query, "Duration", "Maximum").getDatapoints()))
+                .build();
+    }
+
+    private LambdaCloudMetricStatistics getStatistics(LambdaMetricQuery query, String metricName, String statistic) {
+        String path = String.format(CLOUDDRIVER_METRICS_PATH, query.getAccount(), query.getRegion(), metricName);
+        HttpUrl.Builder httpBuilder = HttpUrl.parse(props.getCloudDriverBaseUrl() + path).newBuilder();
+        httpBuilder.addQueryParameter("namespace", "AWS/Lambda");
+        httpBuilder.addQueryParameter("statistics", statistic);
+        httpBuilder.addQueryParameter("period", String.valueOf(periodSeconds));
+        httpBuilder.addQueryParameter("startTime", String.valueOf(query.getStartTime()));
+        httpBuilder.addQueryParameter("endTime", String.valueOf(query.getEndTime()));
+        httpBuilder.addQueryParameter("FunctionName", query.getFunctionName());
+        if (query.getAliasName() != null) {
+            httpBuilder.addQueryParameter("Resource", query.getFunctionName() + ":" + query.getAliasName());
+            httpBuilder.addQueryParameter("ExecutedVersion", query.getQualifier());
+        } else {
+            httpBuilder.addQueryParameter("Resource", query.getFunctionName() + ":" + query.getQualifier());
+        }
+        return utils.getFromCloudDriver(httpBuilder.build().toString(), LambdaCloudMetricStatistics.class);
+    }
+
+    private static Double total(List<LambdaCloudMetricStatistics.Datapoint> datapoints) {
+        return fold(datapoints, LambdaCloudMetricStatistics.Datapoint::getSum, Double::sum, 0.0);
+    }
+
+    private static Double maximum(List<LambdaCloudMetricStatistics.Datapoint> datapoints) {
+        return fold(datapoints, LambdaCloudMetricStatistics.Datapoint::getMaximum, Math::max, null);
+    }
+
+    private static Double fold(List<LambdaCloudMetricStatistics.Datapoint> datapoints,
+                               Function<LambdaCloudMetricStatistics.Datapoint, Double> field,
+                               BinaryOperator<Double> op, Double empty) {
+        if (datapoints == null) {
+            return empty;
+        }
+        return datapoints.stream().map(field).filter(Objects::nonNull).reduce(op).orElse(empty);
+    }
+}
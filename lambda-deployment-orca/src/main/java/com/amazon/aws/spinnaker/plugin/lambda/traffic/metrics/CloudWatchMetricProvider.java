@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricQuery;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaVersionMetrics;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaAccountCredentialsProvider;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.cloudwatch.AmazonCloudWatch;
+import com.amazonaws.services.cloudwatch.AmazonCloudWatchClientBuilder;
+import com.amazonaws.services.cloudwatch.model.Datapoint;
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.GetMetricStatisticsRequest;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the AWS/Lambda metrics straight from CloudWatch, including the p99 and maximum duration, acting as the queried
+ * account through {@link LambdaAccountCredentialsProvider}. A custom endpoint can be configured to point at a
+ * CloudWatch compatible stand-in, so gated shifts can be exercised against a local environment.
+ */
+@Component
+public class CloudWatchMetricProvider implements MetricProvider {
+    static final String NAME = "cloudwatch";
+    private static final String P99 = "p99";
+
+    @Autowired
+    private LambdaAccountCredentialsProvider accountCredentials;
+
+    @Value("${lambdaPlugin.metrics.periodSeconds:60}")
+    private int periodSeconds;
+
+    @Value("${lambdaPlugin.metrics.cloudWatch.endpoint:}")
+    private String endpoint;
+
+    private final Map<String, AmazonCloudWatch> clients = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public LambdaVersionMetrics getMetrics(LambdaMetricQuery query) {
+        AWSCredentialsProvider credentials = accountCredentials.getCredentials(query.getAccount(), query.getRegion());
+        AmazonCloudWatch client = clients.computeIfAbsent(query.getAccount() + ":" + query.getRegion(),
+                x -> buildClient(credentials, query.getRegion()));
+        List<Datapoint> durations = client.getMetricStatistics(request(query, "Duration").withStatistics("Maximum").withExtendedStatistics(P99)).getDatapoints();
+        return LambdaVersionMetrics.builder()
+                .invocations(total(client.getMetricStatistics(request(query, "Invocations").withStatistics("Sum")).getDatapoints()))
+                .errors(total(client.getMetricStatistics(request(query, "Errors").withStatistics("Sum")).getDatapoints()))
+                .throttles(total(client.getMetricStatistics(request(query, "Throttles").withStatistics("Sum")).getDatapoints()))
+                .p99DurationMs(durations.stream()
+                        .map(x -> x.getExtendedStatistics() != null ? x.getExtendedStatistics().get(P99) : null)
+                        .filter(Objects::nonNull)
+                        .reduce(Math::max)
+                        .orElse(null))
+                .maxDurationMs(durations.stream()
+                        .map(Datapoint::getMaximum)
+                        .filter(Objects::nonNull)
+                        .reduce(Math::max)
+                        .orElse(null))
+                .build();
+    }
+
+    private GetMetricStatisticsRequest request(LambdaMetricQuery query, String metricName) {
+        List<Dimension> dimensions = new ArrayList<>();
+        dimensions.add(new Dimension().withName("FunctionName").withValue(query.getFunctionName()));
+        if (query.getAliasName() != null) {
+            dimensions.add(new Dimension().withName("Resource").withValue(query.getFunctionName() + ":" + query.getAliasName()));
+            dimensions.add(new Dimension().withName("ExecutedVersion").withValue(query.getQualifier()));
+        } else {
+            dimensions.add(new Dimension().withName("Resource").withValue(query.getFunctionName() + ":" + query.getQualifier()));
+        }
+        return new GetMetricStatisticsRequest()
+                .withNamespace("AWS/Lambda")
+                .withMetricName(metricName)
+                .withDimensions(dimensions)
+                .withStartTime(new Date(query.getStartTime()))
+                .withEndTime(new Date(query.getEndTime()))
+                .withPeriod(periodSeconds);
+    }
+
+    private static Double total(List<Datapoint> datapoints) {
+        return datapoints.stream().map(Datapoint::getSum).filter(Objects::nonNull).reduce(0.0, Double::sum);
+    }
+
+    private AmazonCloudWatch buildClient(AWSCredentialsProvider credentials, String region) {
+        AmazonCloudWatchClientBuilder builder = AmazonCloudWatchClientBuilder.standard().withCredentials(credentials);
+        if (StringUtils.isNotEmpty(endpoint)) {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+        } else {
+            builder.withRegion(region);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricGateConfig;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricGateDecision;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricQuery;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaVersionMetrics;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaWeightedStrategyInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the metrics of the version a shift is moving traffic to against the stage's thresholds.
+ */
+@Component
+public class LambdaMetricGate {
+    private static final Logger logger = LoggerFactory.getLogger(LambdaMetricGate.class);
+
+    @Autowired
+    List<MetricProvider> providers;
+
+    @Value("${lambdaPlugin.metrics.provider:clouddriver}")
+    String providerName;
+
+    public static boolean isEnabled(LambdaMetricGateConfig config) {
+        return config != null && (config.getMaxErrorRate() != null || config.getMaxThrottles() != null
+                || config.getMaxP99DurationMs() != null || config.getMaxDurationMs() != null);
+    }
+
+    /**
+     * @return the decision for the minor version's metrics since the given time, or null if they could not be read
+     */
+    public LambdaMetricGateDecision evaluate(LambdaMetricGateConfig config, LambdaWeightedStrategyInput input, long since) {
+        long started = System.nanoTime();
+        long now = System.currentTimeMillis();
+        MetricProvider provider = getProvider();
+        LambdaMetricQuery query = LambdaMetricQuery.builder()
+                .account(input.getAccount())
+                .region(input.getRegion())
+                .functionName(LambdaCloudDriverUtils.qualifiedFunctionName(input.getAppName(), input.getFunctionName()))
+                .aliasName(input.getAliasName())
+                .qualifier(input.getMinorFunctionVersion())
+                .startTime(since)
+                .endTime(now)
+                .build();
+        LambdaVersionMetrics metrics;
+        try {
+            metrics = provider.getMetrics(query);
+        } catch (RuntimeException e) {
+            logger.warn(String.format("Could not read metrics of %s:%s from %s", query.getFunctionName(), query.getQualifier(), provider.getName()), e);
+            return null;
+        }
+        if (config.getMaxP99DurationMs() != null && metrics.getP99DurationMs() == null && hasEnoughInvocations(config, metrics)) {
+            logger.warn(String.format("The %s metric provider did not report a p99 duration, maxP99DurationMs is not checked", provider.getName()));
+        }
+        List<String> breaches = findBreaches(config, metrics);
+        return LambdaMetricGateDecision.builder()
+                .provider(provider.getName())
+                .breached(!breaches.isEmpty())
+                .noData(breaches.isEmpty() && !hasEnoughInvocations(config, metrics))
+                .breaches(breaches)
+                .metrics(metrics)
+                .evaluatedAt(now)
+                .evaluationMillis((System.nanoTime() - started) / 1_000_000)
+                .build();
+    }
+
+    /**
+     * Throttles and the durations can breach before the error rate can be judged, since throttled requests
+     * are not counted as invocations.
+     */
+    static List<String> findBreaches(LambdaMetricGateConfig config, LambdaVersionMetrics metrics) {
+        List<String> breaches = new ArrayList<>();
+        if (config.getMaxErrorRate() != null && hasEnoughInvocations(config, metrics)) {
+            double errorRate = valueOf(metrics.getErrors()) / valueOf(metrics.getInvocations());
+            if (errorRate > config.getMaxErrorRate()) {
+                breaches.add(String.format("error rate %.4f is above %.4f", errorRate, config.getMaxErrorRate()));
+            }
+        }
+        if (config.getMaxThrottles() != null && valueOf(metrics.getThrottles()) > config.getMaxThrottles()) {
+            breaches.add(String.format("%.0f throttles is above %.0f", valueOf(metrics.getThrottles()), config.getMaxThrottles()));
+        }
+        if (config.getMaxP99DurationMs() != null && metrics.getP99DurationMs() != null
+                && metrics.getP99DurationMs() > config.getMaxP99DurationMs()) {
+            breaches.add(String.format("p99 duration %.2fms is above %.2fms", metrics.getP99DurationMs(), config.getMaxP99DurationMs()));
+        }
+        if (config.getMaxDurationMs() != null && metrics.getMaxDurationMs() != null
+                && metrics.getMaxDurationMs() > config.getMaxDurationMs()) {
+            breaches.add(String.format("max duration %.2fms is above %.2fms", metrics.getMaxDurationMs(), config.getMaxDurationMs()));
+        }
+        return breaches;
+    }
+
+    static boolean hasEnoughInvocations(LambdaMetricGateConfig config, LambdaVersionMetrics metrics) {
+        int minInvocations = config.getMinInvocations() != null ? config.getMinInvocations() : 1;
+        return valueOf(metrics.getInvocations()) >= Math.max(1, minInvocations);
+    }
+
+    private MetricProvider getProvider() {
+        return providers.stream()
+                .filter(x -> x.getName().equalsIgnoreCase(providerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No metric provider named " + providerName));
+    }
+
+    private static double valueOf(Double value) {
+        return value != null ? value : 0.0;
+    }
+}
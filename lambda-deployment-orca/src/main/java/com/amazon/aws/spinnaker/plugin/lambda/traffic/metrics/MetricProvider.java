@@ -0,0 +1,34 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricQuery;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaVersionMetrics;
+
+/**
+ * Source of the metrics a traffic shift is gated on. The provider used is picked by name with
+ * lambdaPlugin.metrics.provider.
+ */
+public interface MetricProvider {
+    String getName();
+
+    /**
+     * @return the metrics of the queried version over the query's time window; metrics with no data points are 0,
+     * except the durations which are null; a provider that cannot read a duration statistic leaves it null
+     */
+    LambdaVersionMetrics getMetrics(LambdaMetricQuery query);
+}
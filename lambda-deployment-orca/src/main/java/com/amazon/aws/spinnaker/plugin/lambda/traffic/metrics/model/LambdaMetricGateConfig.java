@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Thresholds the new version must stay within while it takes traffic, read from the stage's metricGate.
+ * maxErrorRate is a fraction of invocations. maxP99DurationMs needs a provider that reads the p99 duration,
+ * maxDurationMs is checked with any provider. Until minInvocations (by default 1) have been seen the metrics
+ * pass only as no data, so a step the new version took no traffic in is never passed.
+ * observationSeconds is how long a $WEIGHTED shift is watched before the stage completes.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaMetricGateConfig {
+    private Double maxErrorRate;
+    private Double maxThrottles;
+    private Double maxP99DurationMs;
+    private Double maxDurationMs;
+    private Integer minInvocations;
+    private Integer observationSeconds;
+}
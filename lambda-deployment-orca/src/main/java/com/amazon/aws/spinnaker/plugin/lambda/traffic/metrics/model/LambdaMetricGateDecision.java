@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of one metric check. noData is set when too few invocations were seen to judge the version, which
+ * is not a pass. evaluationMillis is how long reading and checking the metrics took;
+ * rollbackMillis, set when a breach rolled the alias back, is the time from the start of the check to the
+ * rollback being submitted.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaMetricGateDecision {
+    private String provider;
+    private Boolean breached;
+    private Boolean noData;
+    private List<String> breaches;
+    private LambdaVersionMetrics metrics;
+    private Long evaluatedAt;
+    private Long evaluationMillis;
+    private Long rollbackMillis;
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * How the blue/green health check samples the latest version, read from the stage's healthCheck.
+ * samples invocations are made at once, spread over the cases; without cases the stage's payload and output
+ * artifacts are used. The version is promoted when at least passRatio of the samples return the expected
+ * output, within maxDurationMs when it is set.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaBlueGreenHealthCheck {
+    private Integer samples;
+    private List<LambdaBlueGreenHealthCheckCase> cases;
+    private Double passRatio;
+    private Double maxDurationMs;
+}
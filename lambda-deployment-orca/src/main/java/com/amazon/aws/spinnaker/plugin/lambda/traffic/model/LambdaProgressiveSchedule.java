@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * How a progressive deployment moves traffic to the new version.
+ * trafficSteps lists the percentages explicitly. Otherwise progressiveType CANARY sends stepPercent and
+ * then everything, and LINEAR adds stepPercent at every step. Each step is held for stepIntervalSeconds
+ * before the next one.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaProgressiveSchedule {
+    private String progressiveType;
+    private List<Integer> trafficSteps;
+    private Integer stepPercent;
+    private Integer stepIntervalSeconds;
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricGateConfig;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricGateDecision;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Progress of a progressive deployment, kept in the stage context between executions.
+ * input holds the versions resolved when the deployment started, so a version published meanwhile
+ * does not change the rollout. stepIndex is the step last applied, -1 before the first one.
+ * url is set while an alias update is in flight and healthCheckUrl while a health check invocation is.
+ * A $WEIGHTED shift with a metric gate is watched the same way, as a single step that is held before the
+ * stage completes (holdLastStep).
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaProgressiveShiftState {
+    private LambdaWeightedStrategyInput input;
+    private List<Integer> steps;
+    private Integer intervalSeconds;
+    private Integer stepIndex;
+    private Long stepAppliedAt;
+    private String url;
+    private String healthCheckUrl;
+    private Integer healthCheckedStep;
+    private Boolean holdLastStep;
+    private String appliedUrl;
+    private Map<String, Object> outputMap;
+    private Boolean rollingBack;
+    private String failureMessage;
+    private LambdaMetricGateConfig metricGate;
+    private Long lastMetricCheckAt;
+    private LambdaMetricGateDecision metricDecision;
+}
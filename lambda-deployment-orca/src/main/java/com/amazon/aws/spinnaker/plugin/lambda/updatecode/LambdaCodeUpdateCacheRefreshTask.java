@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.updatecode;
+
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.LambdaCacheRefreshTask;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Cache refresh after a code update. Nothing changed when the code update was skipped, so neither is the refresh.
+ */
+@Component
+public class LambdaCodeUpdateCacheRefreshTask extends LambdaCacheRefreshTask {
+
+    @Nonnull
+    @Override
+    public TaskResult execute(@Nonnull StageExecution stage) {
+        if (Boolean.TRUE.equals(stage.getContext().get(LambdaStageConstants.lambdaCodeUnchangedKey))) {
+            prepareTask(stage);
+            return taskComplete(stage);
+        }
+        return super.execute(stage);
+    }
+}
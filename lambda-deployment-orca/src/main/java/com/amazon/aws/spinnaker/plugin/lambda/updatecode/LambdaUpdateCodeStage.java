@@ -17,7 +17,6 @@
 package com.amazon.aws.spinnaker.plugin.lambda.updatecode;
 
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.LambdaUpdateCodeTask;
-import com.amazon.aws.spinnaker.plugin.lambda.verify.LambdaCacheRefreshTask;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.LambdaVerificationTask;
 import com.netflix.spinnaker.orca.api.pipeline.graph.StageDefinitionBuilder;
 import com.netflix.spinnaker.orca.api.pipeline.graph.TaskNode;
@@ -42,7 +41,7 @@ public class LambdaUpdateCodeStage implements StageDefinitionBuilder {
         logger.debug("taskGraph for Aws.LambdaUpdateCodeStage");
         builder.withTask("lambdaUpdateCodeTask", LambdaUpdateCodeTask.class);
         builder.withTask("lambdaVerificationTask", LambdaVerificationTask.class);
-        builder.withTask("lambdaCacheRefreshTask", LambdaCacheRefreshTask.class);
+        builder.withTask("lambdaCacheRefreshTask", LambdaCodeUpdateCacheRefreshTask.class);
         builder.withTask("lambdaWaitForCacheTask", LambdaWaitForCacheCodeUpdateTask.class);
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.upsert;
+
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
+import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.LambdaUpdateEventConfigurationTask;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Submits the concurrency, event source mapping and alias operations of a deployment together.
+ * They don't depend on each other, so a single LambdaVerificationTask afterwards waits for all of them.
+ */
+@Component
+public class LambdaApplyFunctionAttachmentsTask implements LambdaStageBaseTask {
+    private static Logger logger = LoggerFactory.getLogger(LambdaApplyFunctionAttachmentsTask.class);
+
+    @Autowired
+    private LambdaPutConcurrencyTask putConcurrencyTask;
+
+    @Autowired
+    private LambdaUpdateEventConfigurationTask updateEventConfigurationTask;
+
+    @Autowired
+    private LambdaUpdateAliasesTask updateAliasesTask;
+
+    @NotNull
+    @Override
+    public TaskResult execute(@NotNull StageExecution stage) {
+        logger.debug("Executing LambdaApplyFunctionAttachmentsTask...");
+        prepareTask(stage);
+        CompletableFuture<List<LambdaCloudOperationOutput>> events = updateEventConfigurationTask.submitEventConfiguration(stage);
+        if (events == null) {
+            return formErrorTaskResult(stage, "Could not find lambda to update event config for");
+        }
+        CompletableFuture<LambdaCloudOperationOutput> concurrency = putConcurrencyTask.submitConcurrency(stage);
+        CompletableFuture<List<LambdaCloudOperationOutput>> aliases = updateAliasesTask.submitAliases(stage);
+        LambdaCloudDriverAsyncUtils.join(CompletableFuture.allOf(concurrency, events, aliases));
+
+        if (concurrency.join() != null) {
+            addCloudOperationToContext(stage, concurrency.join(), LambdaStageConstants.putConcurrencyUrlKey);
+        }
+        List<String> eventUrls = events.join().stream().map(LambdaCloudOperationOutput::getUrl).collect(Collectors.toList());
+        addToTaskContext(stage, LambdaStageConstants.eventTaskKey, eventUrls);
+        if (aliases.join() != null) {
+            updateAliasesTask.buildContextOutput(stage, aliases.join());
+        }
+        return taskComplete(stage);
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@NotNull StageExecution stage) {
+        return TaskResult.builder(ExecutionStatus.SKIPPED).build();
+    }
+
+    @Override
+    public void onCancel(@NotNull StageExecution stage) {
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.upsert;
+
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.amazonaws.services.lambda.model.Layer;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the configuration requested by a deployment with the function's current configuration.
+ * Covers every field that updateLambdaFunctionConfiguration sets. Fields left empty in the request
+ * where clouddriver would leave the function unchanged are not compared.
+ */
+public class LambdaConfigurationDiff {
+
+    /**
+     * @return the differing fields, each mapped to its current and desired value. Empty when nothing would change.
+     */
+    public static Map<String, Object> compute(LambdaDeploymentInput desired, LambdaDefinition current) {
+        Map<String, Object> diff = new LinkedHashMap<>();
+
+        compareText(diff, "handler", current.getHandler(), desired.getHandler());
+        compareText(diff, "runtime", current.getRuntime(), desired.getRuntime());
+        compareText(diff, "role", current.getRole(), desired.getRole());
+        compareText(diff, "description", current.getDescription(), desired.getDescription());
+        if (desired.getMemorySize() > 0) {
+            compare(diff, "memorySize", current.getMemorySize(), desired.getMemorySize());
+        }
+        if (desired.getTimeout() > 0) {
+            compare(diff, "timeout", current.getTimeout(), desired.getTimeout());
+        }
+
+        Map<String, String> currentEnv = current.getEnvironment() != null ? current.getEnvironment().getVariables() : null;
+        compare(diff, "envVariables", emptyIfNull(currentEnv), emptyIfNull(desired.getEnvVariables()));
+
+        List<String> currentLayers = current.getLayers() != null
+                ? current.getLayers().stream().map(Layer::getArn).collect(Collectors.toList())
+                : null;
+        compare(diff, "layers", emptyIfNull(currentLayers), emptyIfNull(desired.getLayers()));
+
+        List<String> currentSubnets = current.getVpcConfig() != null ? current.getVpcConfig().getSubnetIds() : null;
+        List<String> currentSecurityGroups = current.getVpcConfig() != null ? current.getVpcConfig().getSecurityGroupIds() : null;
+        compare(diff, "subnetIds", new HashSet<>(emptyIfNull(currentSubnets)), new HashSet<>(emptyIfNull(desired.getSubnetIds())));
+        compare(diff, "securityGroupIds", new HashSet<>(emptyIfNull(currentSecurityGroups)), new HashSet<>(emptyIfNull(desired.getSecurityGroupIds())));
+
+        String desiredTracingMode = desired.getTracingConfig() != null ? desired.getTracingConfig().get("mode") : null;
+        if (StringUtils.isNotEmpty(desiredTracingMode)) {
+            String currentTracingMode = current.getTracingConfig() != null ? current.getTracingConfig().getMode() : null;
+            compareText(diff, "tracingConfig.mode", currentTracingMode, desiredTracingMode);
+        }
+
+        String desiredDlq = desired.getDeadLetterConfig() != null ? desired.getDeadLetterConfig().get("targetArn") : null;
+        String currentDlq = current.getDeadLetterConfig() != null ? current.getDeadLetterConfig().getTargetArn() : null;
+        compareText(diff, "deadLetterConfig.targetArn", currentDlq, desiredDlq);
+
+        compareText(diff, "kmskeyArn", current.getKMSKeyArn(), desired.getKmskeyArn());
+
+        // Tags are only added by the update, so only the requested tags are compared.
+        Map<String, String> currentTags = emptyIfNull(current.getTags());
+        Map<String, String> missingTags = emptyIfNull(desired.getTags()).entrySet().stream()
+                .filter(e -> !Objects.equals(currentTags.get(e.getKey()), e.getValue()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        if (!missingTags.isEmpty()) {
+            diff.put("tags", valueChange(currentTags, missingTags));
+        }
+
+        if (StringUtils.isNotEmpty(desired.getTargetGroups())
+                && !emptyIfNull(current.getTargetGroups()).contains(desired.getTargetGroups())) {
+            diff.put("targetGroups", valueChange(current.getTargetGroups(), desired.getTargetGroups()));
+        }
+        return diff;
+    }
+
+    private static void compareText(Map<String, Object> diff, String field, String current, String desired) {
+        compare(diff, field, StringUtils.defaultString(current), StringUtils.defaultString(desired));
+    }
+
+    private static void compare(Map<String, Object> diff, String field, Object current, Object desired) {
+        if (!Objects.equals(current, desired)) {
+            diff.put(field, valueChange(current, desired));
+        }
+    }
+
+    private static Map<String, Object> valueChange(Object current, Object desired) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("current", current);
+        change.put("desired", desired);
+        return change;
+    }
+
+    private static <T> List<T> emptyIfNull(List<T> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+
+    private static <K, V> Map<K, V> emptyIfNull(Map<K, V> map) {
+        return map != null ? map : Collections.emptyMap();
+    }
+}
@@ -61,7 +61,7 @@ public class LambdaCreateTask implements LambdaStageBaseTask {
         ldi.setAppName(stage.getExecution().getApplication());
         LambdaGetInput lgi = utils.getInput(stage, LambdaGetInput.class);
         lgi.setAppName(stage.getExecution().getApplication());
-        LambdaDefinition lambdaDefinition = utils.retrieveLambda(lgi);
+        LambdaDefinition lambdaDefinition = utils.retrieveLatestLambda(lgi);
         if (lambdaDefinition != null) {
             logger.debug("noOp. Lambda already exists. only needs updating.");
             fillTaskContext(stage, lambdaDefinition);
@@ -18,7 +18,7 @@ package com.amazon.aws.spinnaker.plugin.lambda.upsert;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaConcurrencyInput;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -34,6 +34,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+
 @Component
 public class LambdaPutConcurrencyTask implements LambdaStageBaseTask {
     private static Logger logger = LoggerFactory.getLogger(LambdaPutConcurrencyTask.class);
@@ -46,6 +48,9 @@ public class LambdaPutConcurrencyTask implements LambdaStageBaseTask {
 
     @Autowired
     private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
     private  String cloudDriverUrl;
 
     @NotNull
@@ -54,19 +59,29 @@ public class LambdaPutConcurrencyTask implements LambdaStageBaseTask {
         logger.debug("Executing LambdaPutConcurrencyTask...");
         cloudDriverUrl = props.getCloudDriverBaseUrl();
         prepareTask(stage);
+        LambdaCloudOperationOutput output = LambdaCloudDriverAsyncUtils.join(submitConcurrency(stage));
+        if (output != null) {
+            addCloudOperationToContext(stage, output, LambdaStageConstants.putConcurrencyUrlKey);
+        }
+        return taskComplete(stage);
+    }
+
+    /**
+     * Submits the concurrency operation without waiting for clouddriver to accept it.
+     * Completes with null when there is nothing to update.
+     */
+    public CompletableFuture<LambdaCloudOperationOutput> submitConcurrency(StageExecution stage) {
+        cloudDriverUrl = props.getCloudDriverBaseUrl();
         LambdaConcurrencyInput inp = utils.getInput(stage, LambdaConcurrencyInput.class);
         inp.setAppName(stage.getExecution().getApplication());
         if ((inp.getProvisionedConcurrentExecutions() == 0)  && (inp.getReservedConcurrentExecutions() == 0)){
             addToOutput(stage, "LambdaPutConcurrencyTask" , "Lambda concurrency : nothing to update");
-            return taskComplete(stage);
+            return CompletableFuture.completedFuture(null);
         }
-
-        LambdaCloudOperationOutput output = putConcurrency(inp);
-        addCloudOperationToContext(stage, output, LambdaStageConstants.putConcurrencyUrlKey);
-        return taskComplete(stage);
+        return putConcurrency(inp);
     }
 
-    private LambdaCloudOperationOutput putConcurrency(LambdaConcurrencyInput inp) {
+    private CompletableFuture<LambdaCloudOperationOutput> putConcurrency(LambdaConcurrencyInput inp) {
         inp.setCredentials(inp.getAccount());
         if (inp.getProvisionedConcurrentExecutions() != 0 &&
                 StringUtils.isNotNullOrEmpty(inp.getAliasName())) {
@@ -75,28 +90,30 @@ public class LambdaPutConcurrencyTask implements LambdaStageBaseTask {
         if (inp.getReservedConcurrentExecutions() != 0) {
             return putReservedConcurrency(inp);
         }
-        return LambdaCloudOperationOutput.builder().build();
+        return CompletableFuture.completedFuture(LambdaCloudOperationOutput.builder().build());
     }
 
-    private LambdaCloudOperationOutput putReservedConcurrency( LambdaConcurrencyInput inp) {
+    private CompletableFuture<LambdaCloudOperationOutput> putReservedConcurrency( LambdaConcurrencyInput inp) {
         String rawString = utils.asString(inp);
-        String endPoint = cloudDriverUrl + CLOUDDRIVER_RESERVED_CONCURRENCY_PATH;
-        LambdaCloudDriverResponse respObj = utils.postToCloudDriver(endPoint, rawString);
-        String url = cloudDriverUrl + respObj.getResourceUri();
-        logger.debug("Posted to cloudDriver for putReservedConcurrency: " + url);
-        LambdaCloudOperationOutput operationOutput = LambdaCloudOperationOutput.builder().resourceId(respObj.getId()).url(url).build();
-        return operationOutput;
+        final String baseUrl = cloudDriverUrl;
+        String endPoint = baseUrl + CLOUDDRIVER_RESERVED_CONCURRENCY_PATH;
+        return asyncUtils.postToCloudDriverAsync(endPoint, rawString, inp.getAccount(), inp.getRegion()).thenApply(respObj -> {
+            String url = baseUrl + respObj.getResourceUri();
+            logger.debug("Posted to cloudDriver for putReservedConcurrency: " + url);
+            return LambdaCloudOperationOutput.builder().resourceId(respObj.getId()).url(url).build();
+        });
     }
 
-    private LambdaCloudOperationOutput putProvisionedConcurrency(LambdaConcurrencyInput inp) {
+    private CompletableFuture<LambdaCloudOperationOutput> putProvisionedConcurrency(LambdaConcurrencyInput inp) {
         inp.setQualifier(inp.getAliasName());
         String rawString = utils.asString(inp);
-        String endPoint = cloudDriverUrl + CLOUDDRIVER_PROVISIONED_CONCURRENCY_PATH;
-        LambdaCloudDriverResponse respObj = utils.postToCloudDriver(endPoint, rawString);
-        String url = cloudDriverUrl + respObj.getResourceUri();
-        logger.debug("Posted to cloudDriver for putProvisionedConcurrency: " + url);
-        LambdaCloudOperationOutput operationOutput = LambdaCloudOperationOutput.builder().resourceId(respObj.getId()).url(url).build();
-        return operationOutput;
+        final String baseUrl = cloudDriverUrl;
+        String endPoint = baseUrl + CLOUDDRIVER_PROVISIONED_CONCURRENCY_PATH;
+        return asyncUtils.postToCloudDriverAsync(endPoint, rawString, inp.getAccount(), inp.getRegion()).thenApply(respObj -> {
+            String url = baseUrl + respObj.getResourceUri();
+            logger.debug("Posted to cloudDriver for putProvisionedConcurrency: " + url);
+            return LambdaCloudOperationOutput.builder().resourceId(respObj.getId()).url(url).build();
+        });
     }
 
     @Nullable
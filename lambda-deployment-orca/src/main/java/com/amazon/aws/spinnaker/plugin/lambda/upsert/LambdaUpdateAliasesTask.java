@@ -19,9 +19,8 @@ package com.amazon.aws.spinnaker.plugin.lambda.upsert;
 
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
-import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaUpdateEventConfigurationTaskOutput;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaUpdateAliasesInput;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -38,9 +37,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Component
 public class LambdaUpdateAliasesTask implements LambdaStageBaseTask {
@@ -57,54 +56,70 @@ public class LambdaUpdateAliasesTask implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
     @NotNull
     @Override
     public TaskResult execute(@NotNull StageExecution stage) {
         logger.debug("Executing LambdaUpdateAliasesTask...");
         cloudDriverUrl = props.getCloudDriverBaseUrl();
         prepareTask(stage);
+        List<LambdaCloudOperationOutput> output = LambdaCloudDriverAsyncUtils.join(submitAliases(stage));
+        if (output != null) {
+            buildContextOutput(stage, output);
+        }
+        return taskComplete(stage);
+    }
+
+    /**
+     * Submits the alias updates without waiting for clouddriver to accept them.
+     * Completes with null when the stage has no aliases.
+     */
+    public CompletableFuture<List<LambdaCloudOperationOutput>> submitAliases(StageExecution stage) {
+        cloudDriverUrl = props.getCloudDriverBaseUrl();
         if (!shouldAddAliases(stage)) {
             addToOutput(stage, LambdaStageConstants.lambaAliasesUpdatedKey, Boolean.FALSE);
-            return taskComplete(stage);
+            return CompletableFuture.completedFuture(null);
         }
-        List<LambdaCloudOperationOutput> output = updateLambdaAliases(stage);
-        buildContextOutput(stage, output);
-        addToTaskContext(stage, LambdaStageConstants.lambaAliasesUpdatedKey, Boolean.TRUE);
-        addToOutput(stage, LambdaStageConstants.lambaAliasesUpdatedKey, Boolean.TRUE);
-        return taskComplete(stage);
+        List<CompletableFuture<LambdaCloudOperationOutput>> updates = updateLambdaAliases(stage);
+        return CompletableFuture.allOf(updates.toArray(new CompletableFuture[0]))
+                .thenApply(x -> updates.stream().map(CompletableFuture::join).collect(Collectors.toList()));
     }
 
     /**
      * Fill up with values required for next task
      */
-    private void buildContextOutput(StageExecution stage, List<LambdaCloudOperationOutput> ldso) {
+    public void buildContextOutput(StageExecution stage, List<LambdaCloudOperationOutput> ldso) {
         List<String> urlList = new ArrayList<String>();
         ldso.forEach(x -> {
             urlList.add(x.getUrl());
         });
-        Map<String, Object> context = new HashMap<>();
-        addToTaskContext(stage,LambdaStageConstants.eventTaskKey, urlList);
+        addToTaskContext(stage, LambdaStageConstants.aliasTaskKey, urlList);
+        addToTaskContext(stage, LambdaStageConstants.lambaAliasesUpdatedKey, Boolean.TRUE);
+        addToOutput(stage, LambdaStageConstants.lambaAliasesUpdatedKey, Boolean.TRUE);
     }
 
     private boolean shouldAddAliases(StageExecution stage) {
         return stage.getContext().containsKey("aliases");
     }
 
-    private LambdaCloudOperationOutput updateSingleAlias(LambdaUpdateAliasesInput inp, String alias) {
+    private CompletableFuture<LambdaCloudOperationOutput> updateSingleAlias(LambdaUpdateAliasesInput inp, String alias) {
         inp.setAliasDescription(DEFAULT_ALIAS_DESCRIPTION);
         inp.setAliasName(alias);
         inp.setMajorFunctionVersion(LATEST_VERSION_STRING);
-        String endPoint = cloudDriverUrl + CLOUDDRIVER_UPDATE_ALIAS_PATH;
+        final String baseUrl = cloudDriverUrl;
+        String endPoint = baseUrl + CLOUDDRIVER_UPDATE_ALIAS_PATH;
         String rawString = utils.asString(inp);
-        LambdaCloudDriverResponse respObj = utils.postToCloudDriver(endPoint, rawString);
-        String url = cloudDriverUrl + respObj.getResourceUri();
-        logger.debug("Posted to cloudDriver for updateLambdaAliases: " + url);
-        LambdaCloudOperationOutput operationOutput = LambdaCloudOperationOutput.builder().resourceId(respObj.getId()).url(url).build();
-        return operationOutput;
+        return asyncUtils.postToCloudDriverAsync(endPoint, rawString, inp.getAccount(), inp.getRegion()).thenApply(respObj -> {
+            String url = baseUrl + respObj.getResourceUri();
+            logger.debug("Posted to cloudDriver for updateLambdaAliases: " + url);
+            return LambdaCloudOperationOutput.builder().resourceId(respObj.getId()).url(url).build();
+        });
     }
 
-    private List<LambdaCloudOperationOutput> updateLambdaAliases(StageExecution stage) {
-        List<LambdaCloudOperationOutput> result = new ArrayList<>();
+    private List<CompletableFuture<LambdaCloudOperationOutput>> updateLambdaAliases(StageExecution stage) {
+        List<CompletableFuture<LambdaCloudOperationOutput>> result = new ArrayList<>();
         List<String> aliases = (List<String>)stage.getContext().get("aliases");
         LambdaUpdateAliasesInput inp = utils.getInput(stage, LambdaUpdateAliasesInput.class);
         inp.setAppName(stage.getExecution().getApplication());
@@ -115,8 +130,7 @@ public class LambdaUpdateAliasesTask implements LambdaStageBaseTask {
             String formattedAlias = alias.trim();
             if (StringUtils.isNullOrEmpty(formattedAlias))
                 continue;
-            LambdaCloudOperationOutput operationOutput = updateSingleAlias(inp, formattedAlias);
-            result.add(operationOutput);
+            result.add(updateSingleAlias(inp, formattedAlias));
         }
         return result;
     }
@@ -20,8 +20,10 @@ package com.amazon.aws.spinnaker.plugin.lambda.upsert;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaUpdateCodeInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaArtifactStore;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
@@ -35,6 +37,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Optional;
+
 @Component
 public class LambdaUpdateCodeTask implements LambdaStageBaseTask {
     private static Logger logger = LoggerFactory.getLogger(LambdaUpdateCodeTask.class);
@@ -50,6 +54,9 @@ public class LambdaUpdateCodeTask implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Autowired
+    private LambdaArtifactStore artifactStore;
+
     @NotNull
     @Override
     public TaskResult execute(@NotNull StageExecution stage) {
@@ -60,14 +67,28 @@ public class LambdaUpdateCodeTask implements LambdaStageBaseTask {
         if (justCreated) {
             return taskComplete(stage);
         }
-        LambdaCloudOperationOutput output = updateLambdaCode(stage);
+        LambdaUpdateCodeInput inp = utils.getInput(stage, LambdaUpdateCodeInput.class);
+        if (isCodeUnchanged(stage, inp)) {
+            logger.debug("Artifact matches the deployed code, skipping code update");
+            addToTaskContext(stage, LambdaStageConstants.lambdaCodeUnchangedKey, Boolean.TRUE);
+            return taskComplete(stage);
+        }
+        LambdaCloudOperationOutput output = updateLambdaCode(stage, inp);
         addCloudOperationToContext(stage, output, LambdaStageConstants.updateCodeUrlKey);
         addToTaskContext(stage, LambdaStageConstants.lambaCodeUpdatedKey, Boolean.TRUE);
         return taskComplete(stage);
     }
 
-    private LambdaCloudOperationOutput updateLambdaCode(StageExecution stage) {
-        LambdaUpdateCodeInput inp = utils.getInput(stage, LambdaUpdateCodeInput.class);
+    private boolean isCodeUnchanged(StageExecution stage, LambdaUpdateCodeInput inp) {
+        Optional<String> artifactSha256 = artifactStore.getContentSha256(inp.getAccount(), inp.getRegion(), inp.getS3bucket(), inp.getS3key());
+        if (!artifactSha256.isPresent()) {
+            return false;
+        }
+        LambdaDefinition lf = utils.findLatestLambda(stage);
+        return lf != null && artifactSha256.get().equals(lf.getCodeSha256());
+    }
+
+    private LambdaCloudOperationOutput updateLambdaCode(StageExecution stage, LambdaUpdateCodeInput inp) {
         inp.setAppName(stage.getExecution().getApplication());
         inp.setCredentials(inp.getAccount());
         String endPoint = cloudDriverUrl + CLOUDDRIVER_UPDATE_CODE_PATH;
@@ -22,6 +22,7 @@ import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
@@ -37,6 +38,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class LambdaUpdateConfigurationTask implements LambdaStageBaseTask {
@@ -66,6 +68,15 @@ public class LambdaUpdateConfigurationTask implements LambdaStageBaseTask {
         if (!utils.validateUpsertLambdaInput(ldi, errors)) {
             return this.formErrorListTaskResult(stage, errors);
         }
+        LambdaDefinition lf = utils.findLatestLambda(stage);
+        if (lf != null) {
+            Map<String, Object> diff = LambdaConfigurationDiff.compute(ldi, lf);
+            addToOutput(stage, LambdaStageConstants.configurationDiffKey, diff);
+            if (diff.isEmpty()) {
+                logger.debug("Function configuration is unchanged, skipping update");
+                return taskComplete(stage);
+            }
+        }
         LambdaCloudOperationOutput output = this.updateLambdaConfig(stage, ldi);
         addCloudOperationToContext(stage, output,  LambdaStageConstants.updateConfigUrlKey);
         addToTaskContext(stage, LambdaStageConstants.lambaConfigurationUpdatedKey, Boolean.TRUE);
@@ -21,21 +21,29 @@ import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.RetryableTask;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
 import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
 import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
-import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nonnull;
-import java.util.Map;
+import javax.annotation.Nullable;
 
+/**
+ * Waits for the published version to show up in clouddriver's cache, when a later stage reads the function from it.
+ * Each execution reads the function once. The version is kept in the stage context between polls and removed
+ * once the wait is over, since a stage may run this task more than once.
+ */
 @Component
-public class LambdaWaitForCachePublishTask implements LambdaStageBaseTask {
+public class LambdaWaitForCachePublishTask implements LambdaStageBaseTask, RetryableTask {
     private static Logger logger = LoggerFactory.getLogger(LambdaWaitForCachePublishTask.class);
+    private static final String versionKey = "lambdaCachePublishedVersion";
 
     @Autowired
     CloudDriverConfigurationProperties props;
@@ -43,29 +51,54 @@ public class LambdaWaitForCachePublishTask implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Value("${lambdaPlugin.waitForCache.backoffMillis:5000}")
+    private long backoffMillis;
+
+    @Value("${lambdaPlugin.waitForCache.timeoutMillis:120000}")
+    private long timeoutMillis;
+
     @Nonnull
     @Override
     public TaskResult execute(@Nonnull StageExecution stage) {
         logger.debug("Executing LambdaWaitForCachePublishTask...");
-        return waitForCacheUpdate(stage);
-    }
-
-    private TaskResult waitForCacheUpdate(@NotNull StageExecution stage) {
-        if (stage.getContext().containsKey(LambdaStageConstants.publishVersionUrlKey)) {
-            String publishUrl = (String) stage.getContext().get(LambdaStageConstants.publishVersionUrlKey);
-            String version = utils.getPublishedVersion(publishUrl);
-            for (int i = 0; i < 10; i++) {
-                LambdaDefinition lf = utils.findLambda(stage);
-                if (lf != null) {
-                    Map<String, String> revisions = lf.getRevisions();
-                    if (revisions.containsValue(version)) {
-                        return taskComplete(stage);
-                    }
-                }
-                utils.await(10000);
+        prepareTask(stage);
+        if (!stage.getContext().containsKey(LambdaStageConstants.publishVersionUrlKey)) {
+            return taskComplete(stage);
+        }
+        String version = (String) stage.getContext().get(versionKey);
+        if (version == null) {
+            String url = (String) stage.getContext().get(LambdaStageConstants.publishVersionUrlKey);
+            version = addVersionToOutput(stage, utils.verifyStatus(url));
+            if (!utils.requiresCacheConsistency(stage)) {
+                logger.debug("No later stage reads the function from the cache, not waiting for it");
+                return taskComplete(stage);
             }
-            return this.formErrorTaskResult(stage, "Failed to update cache after PublishVersionTask");
+            stage.getContext().put(versionKey, version);
+        }
+
+        LambdaDefinition lf = utils.findLatestLambda(stage);
+        if (lf != null && lf.getRevisions() != null && lf.getRevisions().containsValue(version)) {
+            stage.getContext().remove(versionKey);
+            return taskComplete(stage);
         }
-        return taskComplete(stage);
+        logger.debug(String.format("Version %s is not in clouddriver's cache yet", version));
+        return TaskResult.builder(ExecutionStatus.RUNNING).outputs(stage.getOutputs()).build();
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@Nonnull StageExecution stage) {
+        stage.getContext().remove(versionKey);
+        return this.formErrorTaskResult(stage, "Failed to update cache after PublishVersionTask");
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return backoffMillis;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMillis;
     }
 }
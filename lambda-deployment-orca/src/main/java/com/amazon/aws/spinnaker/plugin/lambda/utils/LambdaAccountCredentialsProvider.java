@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.auth.STSAssumeRoleSessionCredentialsProvider;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClientBuilder;
+import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the credentials to act as a clouddriver account when orca calls AWS itself. The account is looked up
+ * in clouddriver on every call, so a user who may not read the account is refused, and its role is assumed
+ * with orca's own credentials. An account without a role is used with orca's own credentials.
+ */
+@Component
+public class LambdaAccountCredentialsProvider {
+    private static final String CLOUDDRIVER_CREDENTIALS_PATH = "/credentials/";
+    private static final String DEFAULT_SESSION_NAME = "Spinnaker";
+
+    @Autowired
+    private LambdaCloudDriverUtils utils;
+
+    @Autowired
+    private CloudDriverConfigurationProperties props;
+
+    private final Map<String, AWSCredentialsProvider> providers = new ConcurrentHashMap<>();
+
+    public AWSCredentialsProvider getCredentials(String account, String region) {
+        LambdaAccountCredentials credentials = utils.getFromCloudDriver(
+                props.getCloudDriverBaseUrl() + CLOUDDRIVER_CREDENTIALS_PATH + account, LambdaAccountCredentials.class);
+        if (credentials == null || !account.equals(credentials.getName())) {
+            throw new IllegalStateException(String.format("Account %s could not be read from clouddriver", account));
+        }
+        String roleArn = roleArn(credentials);
+        if (roleArn == null) {
+            return DefaultAWSCredentialsProviderChain.getInstance();
+        }
+        return providers.computeIfAbsent(String.join(":", account, region, roleArn), x ->
+                new STSAssumeRoleSessionCredentialsProvider.Builder(roleArn,
+                        StringUtils.defaultIfEmpty(credentials.getSessionName(), DEFAULT_SESSION_NAME))
+                        .withExternalId(StringUtils.trimToNull(credentials.getExternalId()))
+                        .withStsClient(AWSSecurityTokenServiceClientBuilder.standard().withRegion(region).build())
+                        .build());
+    }
+
+    /**
+     * Clouddriver qualifies a role that is not an ARN with the account's id in the same way.
+     */
+    static String roleArn(LambdaAccountCredentials credentials) {
+        String role = credentials.getAssumeRole();
+        if (StringUtils.isEmpty(role)) {
+            return null;
+        }
+        if (role.startsWith("arn:")) {
+            return role;
+        }
+        return String.format("arn:aws:iam::%s:%s", credentials.getAccountId(), role);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import java.util.Optional;
+
+/**
+ * Read access to the storage holding function code artifacts.
+ */
+public interface LambdaArtifactStore {
+
+    /**
+     * Reads the object as the given clouddriver account.
+     *
+     * @return the base64 encoded SHA-256 of the object's content, in the same form as the function's CodeSha256,
+     * or empty when it is not known without downloading the object.
+     */
+    Optional<String> getContentSha256(String account, String region, String bucket, String key);
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaCloudDriverInvokeOperationResults;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking companion to LambdaCloudDriverUtils.
+ * Operations are sent through the shared http client's dispatcher and complete a CompletableFuture,
+ * so a task can submit all of its operations together and wait for them once.
+ * The number of operations in flight for a single account and region is bounded; anything above
+ * the limit is queued and sent as earlier operations complete.
+ */
+@Component
+public class LambdaCloudDriverAsyncUtils {
+    private static final Logger logger = LoggerFactory.getLogger(LambdaCloudDriverAsyncUtils.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String STATUS_CHECK_LIMITER = "taskStatus";
+    static {
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Autowired
+    LambdaCloudDriverHttpClient httpClient;
+
+    @Autowired
+    LambdaCloudDriverUtils utils;
+
+    @Value("${lambdaPlugin.cloudDriver.maxInFlightPerAccountRegion:10}")
+    private int maxInFlightPerAccountRegion;
+
+    @Value("${lambdaPlugin.cloudDriver.maxConcurrentStatusChecks:10}")
+    private int maxConcurrentStatusChecks;
+
+    private final Map<String, InFlightLimiter> limiters = new ConcurrentHashMap<>();
+
+    public CompletableFuture<LambdaCloudDriverResponse> postToCloudDriverAsync(String endPointUrl, String jsonString, String account, String region) {
+        return postToCloudDriverAsync(endPointUrl, jsonString, String.format("%s/%s", account, region), maxInFlightPerAccountRegion);
+    }
+
+    /**
+     * Post an operation under a named bound instead of the account and region one, for callers that
+     * need their own limit on how many of a kind of operation are in flight.
+     */
+    public CompletableFuture<LambdaCloudDriverResponse> postToCloudDriverAsync(String endPointUrl, String jsonString, String limiterKey, int limit) {
+        return postAsync(endPointUrl, jsonString, limiterKey, limit,
+                (code, respString) -> objectMapper.readValue(respString, LambdaCloudDriverResponse.class));
+    }
+
+    /**
+     * Non-blocking postToCloudDriverForStatusCode, for endpoints that answer with a status rather than a task.
+     * Shares the account and region bound with the operations.
+     */
+    public CompletableFuture<Integer> postToCloudDriverForStatusCodeAsync(String endPointUrl, String jsonString, String account, String region) {
+        return postAsync(endPointUrl, jsonString, String.format("%s/%s", account, region), maxInFlightPerAccountRegion,
+                (code, respString) -> code);
+    }
+
+    private <T> CompletableFuture<T> postAsync(String endPointUrl, String jsonString, String limiterKey, int limit, ResponseDecoder<T> decoder) {
+        utils.invalidateForOperation(endPointUrl, jsonString);
+        RequestBody body = RequestBody.create(MediaType.parse("application/json"), jsonString);
+        // Built on the calling thread so that the authentication headers of the current execution are captured.
+        Request request = new Request.Builder()
+                .url(endPointUrl)
+                .headers(utils.buildHeaders())
+                .post(body)
+                .build();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        InFlightLimiter limiter = limiters.computeIfAbsent(limiterKey, k -> new InFlightLimiter(limit));
+        limiter.submit(() -> httpClient.getClient().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                limiter.release();
+                logger.error("Error calling clouddriver.", e);
+                future.completeExceptionally(new RuntimeException(e));
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                limiter.release();
+                try (Response resp = response) {
+                    String respString = resp.body().string();
+                    if (200 != resp.code() && 202 != resp.code()) {
+                        logger.error("Error calling cloud driver");
+                        logger.error(respString);
+                        throw new RuntimeException("Error calling cloud driver: " + respString);
+                    }
+                    logger.debug(respString);
+                    future.complete(decoder.decode(resp.code(), respString));
+                } catch (Exception e) {
+                    logger.error("Error calling clouddriver.", e);
+                    future.completeExceptionally(e instanceof RuntimeException ? e : new RuntimeException(e));
+                }
+            }
+        }));
+        return future;
+    }
+
+    private interface ResponseDecoder<T> {
+        T decode(int code, String body) throws IOException;
+    }
+
+    /**
+     * Fetch the status of a clouddriver task. Status checks share one bound on the number in flight.
+     */
+    public CompletableFuture<LambdaCloudDriverTaskResults> verifyStatusAsync(String endPoint) {
+        return readTaskAsync(endPoint, utils::readTaskResults);
+    }
+
+    /**
+     * Fetch the results of a clouddriver invocation task, sharing the bound on status checks in flight.
+     */
+    public CompletableFuture<LambdaCloudDriverInvokeOperationResults> getLambdaInvokeResultsAsync(String endPoint) {
+        return readTaskAsync(endPoint, utils::readLambdaInvokeResults);
+    }
+
+    private <T> CompletableFuture<T> readTaskAsync(String endPoint, TaskDecoder<T> decoder) {
+        Request request = new Request.Builder()
+                .url(endPoint)
+                .headers(utils.buildHeaders())
+                .get()
+                .build();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        InFlightLimiter limiter = limiters.computeIfAbsent(STATUS_CHECK_LIMITER, k -> new InFlightLimiter(maxConcurrentStatusChecks));
+        limiter.submit(() -> httpClient.getClient().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                limiter.release();
+                logger.error(String.format("Failed verifying task at %s", endPoint), e);
+                future.completeExceptionally(new RuntimeException(e));
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                limiter.release();
+                try (Response resp = response) {
+                    future.complete(decoder.decode(resp.body().byteStream()));
+                } catch (Exception e) {
+                    logger.error(String.format("Failed verifying task at %s", endPoint), e);
+                    future.completeExceptionally(new RuntimeException(e));
+                }
+            }
+        }));
+        return future;
+    }
+
+    private interface TaskDecoder<T> {
+        T decode(InputStream body) throws IOException;
+    }
+
+    /**
+     * Wait for every future and return their results in submission order.
+     * If any of them failed, the first failure is rethrown the same way the blocking calls throw.
+     */
+    public static <T> List<T> joinAll(List<CompletableFuture<T>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    /**
+     * Wait for a single future, rethrowing its failure the same way as joinAll.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        return joinAll(Collections.singletonList(future)).get(0);
+    }
+
+    private static class InFlightLimiter {
+        private final int limit;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+        InFlightLimiter(int limit) {
+            this.limit = Math.max(1, limit);
+        }
+
+        void submit(Runnable dispatch) {
+            pending.add(dispatch);
+            drain();
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+            drain();
+        }
+
+        private void drain() {
+            while (!pending.isEmpty()) {
+                int current = inFlight.get();
+                if (current >= limit) {
+                    return;
+                }
+                if (!inFlight.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                Runnable next = pending.poll();
+                if (next == null) {
+                    inFlight.decrementAndGet();
+                    continue;
+                }
+                next.run();
+            }
+        }
+    }
+}
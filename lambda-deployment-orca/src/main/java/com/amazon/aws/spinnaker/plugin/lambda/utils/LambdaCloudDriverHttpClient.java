@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plugin-wide http client used for every call to clouddriver.
+ * A single client means a single connection pool and dispatcher, so connections to clouddriver are
+ * kept alive and reused across tasks, polling iterations and pipelines.
+ *
+ * HTTP/2 is negotiated through ALPN when clouddriver is served over TLS. For a plain-text clouddriver
+ * that is known to speak HTTP/2, set lambdaPlugin.cloudDriver.http2PriorKnowledge to true.
+ */
+@Component
+public class LambdaCloudDriverHttpClient {
+    private static final Logger logger = LoggerFactory.getLogger(LambdaCloudDriverHttpClient.class);
+
+    @Value("${lambdaPlugin.cloudDriver.connectTimeoutSeconds:10}")
+    private long connectTimeoutSeconds;
+
+    @Value("${lambdaPlugin.cloudDriver.readTimeoutSeconds:60}")
+    private long readTimeoutSeconds;
+
+    @Value("${lambdaPlugin.cloudDriver.writeTimeoutSeconds:60}")
+    private long writeTimeoutSeconds;
+
+    @Value("${lambdaPlugin.cloudDriver.maxIdleConnections:20}")
+    private int maxIdleConnections;
+
+    @Value("${lambdaPlugin.cloudDriver.keepAliveSeconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${lambdaPlugin.cloudDriver.maxRequestsPerHost:32}")
+    private int maxRequestsPerHost;
+
+    @Value("${lambdaPlugin.cloudDriver.http2PriorKnowledge:false}")
+    private boolean http2PriorKnowledge;
+
+    private OkHttpClient client;
+
+    @PostConstruct
+    private void init() {
+        logger.debug("Building shared clouddriver http client");
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .connectTimeout(connectTimeoutSeconds, TimeUnit.SECONDS)
+                .readTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                .writeTimeout(writeTimeoutSeconds, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .protocols(http2PriorKnowledge
+                        ? Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)
+                        : Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .build();
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+}
@@ -19,18 +19,22 @@ package com.amazon.aws.spinnaker.plugin.lambda.utils;
 import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaCloudDriverInvokeOperationResults;
 import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaPipelineArtifact;
 import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCacheRefreshInput;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverErrorObject;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverResultObject;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResultObject;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
-import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaVerificationStatusOutput;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskStatus;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.IntNode;
-import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.io.CharStreams;
 import com.netflix.spinnaker.kork.artifacts.model.Artifact;
 import com.netflix.spinnaker.kork.core.RetrySupport;
@@ -46,39 +50,96 @@ import org.pf4j.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
 public class LambdaCloudDriverUtils {
     private static final Logger logger = LoggerFactory.getLogger(LambdaCloudDriverUtils.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectReader taskStatusReader;
     private static final String CLOUDDRIVER_GET_PATH = "/functions";
+    private static final String CLOUDDRIVER_INVOKE_PATH = "/aws/ops/invokeLambdaFunction";
+    private static final String LAMBDA_STAGE_TYPE_PREFIX = "Aws.Lambda";
+    public static final String CLOUDDRIVER_REFRESH_CACHE_PATH = "/cache/aws/function";
+    public static final String PENDING_STATE = "Pending";
+    public static final String UPDATE_IN_PROGRESS = "InProgress";
     static {
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         objectMapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+        taskStatusReader = objectMapper.readerFor(LambdaCloudDriverTaskStatus.class);
     }
 
     @Autowired
     CloudDriverConfigurationProperties props;
 
+    @Autowired
+    LambdaCloudDriverHttpClient httpClient;
+
+    @Value("${lambdaPlugin.consistentRead:true}")
+    private boolean consistentRead;
+
+    @Value("${lambdaPlugin.functionCache.ttlSeconds:60}")
+    private long functionCacheTtlSeconds;
+
+    @Value("${lambdaPlugin.functionCache.maxSize:1000}")
+    private long functionCacheMaxSize;
+
+    /**
+     * Function definitions read from clouddriver, keyed by the requesting user and the function's account, region
+     * and name. Clouddriver authorizes reads per user, so a definition is only served back to the user it was read for.
+     * Entries are dropped whenever an operation against the function is submitted from this instance; other Orca
+     * instances keep theirs until the TTL expires, so reads that decide whether or what to mutate must not use them.
+     */
+    private Cache<String, LambdaDefinition> lambdaCache;
+
+    /**
+     * The revisionId a function had when its cache entry was last invalidated. Until clouddriver reports a
+     * different revision, a read of that function is returned but not cached, since it is the stale definition.
+     */
+    private Cache<String, String> invalidatedRevisions;
+
+    private final Map<String, CompletableFuture<LambdaDefinition>> inFlightLookups = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void initCache() {
+        lambdaCache = Caffeine.newBuilder()
+                .maximumSize(functionCacheMaxSize)
+                .expireAfterWrite(functionCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        invalidatedRevisions = Caffeine.newBuilder()
+                .maximumSize(functionCacheMaxSize)
+                .expireAfterWrite(functionCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
     public LambdaCloudDriverResponse postToCloudDriver(String endPointUrl, String jsonString) {
+        invalidateForOperation(endPointUrl, jsonString);
         RequestBody body = RequestBody.create(MediaType.parse("application/json"), jsonString);
         Request request = new Request.Builder()
                 .url(endPointUrl)
                 .headers(buildHeaders())
                 .post(body)
                 .build();
-        OkHttpClient client = new OkHttpClient();
-        Call call = client.newCall(request);
-        try {
-            Response response = call.execute();
+        Call call = httpClient.getClient().newCall(request);
+        try (Response response = call.execute()) {
             String respString = response.body().string();
             if (200 != response.code() && 202 != response.code()) {
                 logger.error("Error calling cloud driver");
@@ -94,96 +155,192 @@ public class LambdaCloudDriverUtils {
         }
     }
 
+    /**
+     * Posts to clouddriver and returns the response code, for endpoints that answer with a status rather than a task.
+     */
+    public int postToCloudDriverForStatusCode(String endPointUrl, String jsonString) {
+        invalidateForOperation(endPointUrl, jsonString);
+        RequestBody body = RequestBody.create(MediaType.parse("application/json"), jsonString);
+        Request request = new Request.Builder()
+                .url(endPointUrl)
+                .headers(buildHeaders())
+                .post(body)
+                .build();
+        Call call = httpClient.getClient().newCall(request);
+        try (Response response = call.execute()) {
+            if (200 != response.code() && 202 != response.code()) {
+                String respString = response.body().string();
+                logger.error("Error calling cloud driver");
+                logger.error(respString);
+                throw new RuntimeException("Error calling cloud driver: " + respString);
+            }
+            return response.code();
+        } catch (Exception e) {
+            logger.error("Error calling clouddriver.", e);
+            throw new RuntimeException(e);
+        }
+    }
+
     public LambdaCloudDriverInvokeOperationResults getLambdaInvokeResults(String endPoint) {
-        String respString = getFromCloudDriver(endPoint);
-        LambdaCloudDriverInvokeOperationResults respObject = null;
         try {
-            JsonNode jsonResults = objectMapper.readTree(respString);
-            JsonNode statusNode = jsonResults.get("status");
-            ArrayNode resultsNode = (ArrayNode)jsonResults.get("resultObjects");
-            if ((resultsNode != null) && resultsNode.isArray() && resultsNode.size() > 0) {
-                respObject =objectMapper.convertValue(resultsNode.get(0), LambdaCloudDriverInvokeOperationResults.class);
-                JsonNode respStringNode = objectMapper.readTree(respObject.getResponseString());
-                if (respStringNode.has("statusCode")) {
-                    int statusCode = ((IntNode)respStringNode.get("statusCode")).intValue();
-                    respObject.setStatusCode(statusCode);
-                }
-                if (respStringNode.has("body")) {
-                    String body = ((TextNode) respStringNode.get("body")).textValue();
-                    respObject.setBody(body);
-                }else if (respStringNode.has("payload")) {
-                    String body = ((TextNode) respStringNode.get("pyaload")).textValue();
-                    respObject.setBody(body);
-                }
-                if (respStringNode.has("errorMessage")) {
-                    String errorMessage = ((TextNode) respStringNode.get("errorMessage")).textValue();
-                    respObject.setErrorMessage(errorMessage);
+            return toInvokeResults(readFromCloudDriver(endPoint, taskStatusReader));
+        }
+        catch (Exception e) {
+            logger.error(String.format("Failed getLambdaInvokeResults task at %s", endPoint), e);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the invocation results out of a task status response body, for callers that fetched it themselves.
+     */
+    LambdaCloudDriverInvokeOperationResults readLambdaInvokeResults(InputStream body) throws IOException {
+        return toInvokeResults(taskStatusReader.readValue(body));
+    }
+
+    private LambdaCloudDriverInvokeOperationResults toInvokeResults(LambdaCloudDriverTaskStatus taskStatus) throws IOException {
+        LambdaCloudDriverTaskResultObject result = firstResultObject(taskStatus);
+        if (result == null) {
+            return null;
+        }
+        LambdaCloudDriverInvokeOperationResults respObject = LambdaCloudDriverInvokeOperationResults.builder()
+                .invokeResult(result.getInvokeResult())
+                .responseString(result.getResponseString())
+                .build();
+        if (result.getResponseString() != null) {
+            readInvokeResponseString(result.getResponseString(), respObject);
+        }
+        return respObject;
+    }
+
+    /**
+     * Pick statusCode, body (or payload) and errorMessage out of the invocation's response string
+     * in one pass over its top level fields, without building a tree of the whole payload.
+     */
+    private void readInvokeResponseString(String responseString, LambdaCloudDriverInvokeOperationResults respObject) throws IOException {
+        respObject.setHasErrors(false);
+        try (JsonParser parser = objectMapper.getFactory().createParser(responseString)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            String body = null;
+            String payload = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("statusCode".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    respObject.setStatusCode(parser.getIntValue());
+                } else if ("body".equals(field) && value == JsonToken.VALUE_STRING) {
+                    body = parser.getText();
+                } else if ("payload".equals(field) && value == JsonToken.VALUE_STRING) {
+                    payload = parser.getText();
+                } else if ("errorMessage".equals(field) && value == JsonToken.VALUE_STRING) {
+                    respObject.setErrorMessage(parser.getText());
                     respObject.setHasErrors(true);
-                }
-                else {
-                    respObject.setHasErrors(false);
+                } else {
+                    parser.skipChildren();
                 }
             }
-            LambdaVerificationStatusOutput st = objectMapper.convertValue(statusNode, LambdaVerificationStatusOutput.class);
-
-            return respObject;
-        }
-        catch (Exception e) {
-            logger.error(String.format("Failed getLambdaInvokeResults task at {}", endPoint), e);
-            return respObject;
+            respObject.setBody(body != null ? body : payload);
         }
     }
 
     public String getPublishedVersion(String endPoint) {
-        String respString = getFromCloudDriver(endPoint);
         try {
-            JsonNode jsonResults = objectMapper.readTree(respString);
-            ArrayNode resultsNode = (ArrayNode) jsonResults.get("resultObjects");
-            if (resultsNode.isArray() && resultsNode.size() > 0) {
-                JsonNode result = resultsNode.get(0);
-                if (result.has("version")) {
-                    return result.get("version").textValue();
-                }
+            LambdaCloudDriverTaskResultObject result = firstResultObject(readFromCloudDriver(endPoint, taskStatusReader));
+            if (result != null && result.getVersion() != null) {
+                return result.getVersion();
             }
         } catch (Exception e) {
-            logger.error(String.format("Failed getPublishedVersion task at {}", endPoint), e);
+            logger.error(String.format("Failed getPublishedVersion task at %s", endPoint), e);
         }
         return "$LATEST";
     }
 
     public LambdaCloudDriverTaskResults verifyStatus(String endPoint) {
-        String respString = getFromCloudDriver(endPoint);
         try {
-            JsonNode jsonResults = objectMapper.readTree(respString);
-            JsonNode statusNode = jsonResults.get("status");
-            ArrayNode resultsNode = (ArrayNode)jsonResults.get("resultObjects");
-            LambdaCloudDriverResultObject ro = null;
-            LambdaCloudDriverErrorObject err = null;
-            LambdaCloudDriverInvokeOperationResults respObject;
-            if ((resultsNode != null) && resultsNode.isArray()) {
-                ro = objectMapper.convertValue(resultsNode.get(0), LambdaCloudDriverResultObject.class);
-                err = objectMapper.convertValue(resultsNode.get(0), LambdaCloudDriverErrorObject.class);
-            }
-            LambdaVerificationStatusOutput st = objectMapper.convertValue(statusNode, LambdaVerificationStatusOutput.class);
+            return toTaskResults(readFromCloudDriver(endPoint, taskStatusReader));
+        }
+        catch (Exception e) {
+            logger.error(String.format("Failed verifying task at %s", endPoint), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Decodes a task status response body, for callers that fetched it themselves.
+     */
+    LambdaCloudDriverTaskResults readTaskResults(InputStream body) throws IOException {
+        return toTaskResults(taskStatusReader.readValue(body));
+    }
 
-            return LambdaCloudDriverTaskResults.builder().results(ro).status(st).errors(err).build();
+    private LambdaCloudDriverTaskResults toTaskResults(LambdaCloudDriverTaskStatus taskStatus) {
+        LambdaCloudDriverTaskResultObject result = firstResultObject(taskStatus);
+        LambdaCloudDriverResultObject ro = null;
+        LambdaCloudDriverErrorObject err = null;
+        if (result != null) {
+            ro = LambdaCloudDriverResultObject.builder()
+                    .version(result.getVersion())
+                    .functionName(result.getFunctionName())
+                    .eventSourceArn(result.getEventSourceArn())
+                    .functionArn(result.getFunctionArn())
+                    .uuid(result.getUuid())
+                    .state(result.getState())
+                    .revisionId(result.getRevisionId())
+                    .invokeResult(result.getInvokeResult())
+                    .build();
+            err = LambdaCloudDriverErrorObject.builder()
+                    .cause(result.getCause())
+                    .message(result.getMessage())
+                    .operation(result.getOperation())
+                    .type(result.getType())
+                    .build();
+        }
+        return LambdaCloudDriverTaskResults.builder().results(ro).status(taskStatus.getStatus()).errors(err).build();
+    }
+
+    private LambdaCloudDriverTaskResultObject firstResultObject(LambdaCloudDriverTaskStatus taskStatus) {
+        if (taskStatus == null || taskStatus.getResultObjects() == null || taskStatus.getResultObjects().isEmpty()) {
+            return null;
+        }
+        return taskStatus.getResultObjects().get(0);
+    }
+
+    /**
+     * Decode the response in a single pass straight from the response stream, without holding the body as a string.
+     */
+    private <T> T readFromCloudDriver(String endPoint, ObjectReader reader) {
+        Request request = new Request.Builder()
+                .url(endPoint)
+                .headers(buildHeaders())
+                .get()
+                .build();
+        Call call = httpClient.getClient().newCall(request);
+        try (Response response = call.execute()) {
+            return reader.readValue(response.body().byteStream());
         }
         catch (Exception e) {
-            logger.error(String.format("Failed verifying task at {}", endPoint), e);
+            logger.error("Exception verifying task", e);
             throw new RuntimeException(e);
         }
     }
 
+    public <T> List<T> getListFromCloudDriver(String endPoint, Class<T> type) {
+        return readFromCloudDriver(endPoint, objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, type)));
+    }
+
+    public <T> T getFromCloudDriver(String endPoint, Class<T> type) {
+        return readFromCloudDriver(endPoint, objectMapper.readerFor(type));
+    }
+
     public String getFromCloudDriver(String endPoint) {
         Request request = new Request.Builder()
                 .url(endPoint)
                 .headers(buildHeaders())
                 .get()
                 .build();
-        OkHttpClient client = new OkHttpClient();
-        Call call = client.newCall(request);
-        try {
-            Response response = call.execute();
+        Call call = httpClient.getClient().newCall(request);
+        try (Response response = call.execute()) {
             String respString = response.body().string();
             return respString;
         }
@@ -193,7 +350,7 @@ public class LambdaCloudDriverUtils {
         }
     }
 
-    private Headers buildHeaders() {
+    Headers buildHeaders() {
         Headers.Builder headersBuilder = new Headers.Builder();
 
         AuthenticatedRequest.getAuthenticationHeaders().forEach((key, value) -> {
@@ -210,17 +367,180 @@ public class LambdaCloudDriverUtils {
         return thisLambda != null;
     }
 
+    /**
+     * Returns the function definition, served from the function cache when present.
+     * The cached definition may predate an operation submitted by another Orca instance; use
+     * retrieveLatestLambda for reads that decide whether to mutate the function or which version to target.
+     */
     public LambdaDefinition retrieveLambda(LambdaGetInput inp) {
+        String key = userCacheKey(cacheKey(inp.getAccount(), inp.getRegion(), qualifiedFunctionName(inp.getAppName(), inp.getFunctionName())));
+        LambdaDefinition cached = lambdaCache.getIfPresent(key);
+        if (cached != null) {
+            logger.debug("Found function definition in cache: " + key);
+            return cached;
+        }
+        return retrieveLatestLambda(inp);
+    }
+
+    /**
+     * Always reads the function definition from clouddriver, for tasks that poll for a change to show up.
+     * The cache is refreshed with what was read.
+     * Concurrent reads of the same function share a single request to clouddriver: the first caller
+     * performs the lookup on its own thread and the others wait for its result.
+     */
+    public LambdaDefinition retrieveLatestLambda(LambdaGetInput inp) {
+        String fName = qualifiedFunctionName(inp.getAppName(), inp.getFunctionName());
+        String key = userCacheKey(cacheKey(inp.getAccount(), inp.getRegion(), fName));
+        CompletableFuture<LambdaDefinition> lookup = new CompletableFuture<>();
+        CompletableFuture<LambdaDefinition> inFlight = inFlightLookups.putIfAbsent(key, lookup);
+        if (inFlight != null) {
+            logger.debug("Joining in-flight lookup of " + key);
+            return LambdaCloudDriverAsyncUtils.join(inFlight);
+        }
+        try {
+            LambdaDefinition lambdaDef = fetchLambda(inp.getAccount(), inp.getRegion(), fName);
+            if (lambdaDef != null) {
+                cacheLambda(key, lambdaDef);
+            }
+            lookup.complete(lambdaDef);
+            return lambdaDef;
+        } catch (RuntimeException e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLookups.remove(key, lookup);
+        }
+    }
+
+    /**
+     * Reads every function in an account and region with a single call to clouddriver, for tasks that look up
+     * many functions at once. The cache is refreshed with every definition read.
+     * @return the definitions, keyed by function name
+     */
+    public Map<String, LambdaDefinition> listLambdas(String account, String region) {
+        HttpUrl.Builder httpBuilder = HttpUrl.parse(props.getCloudDriverBaseUrl() + CLOUDDRIVER_GET_PATH).newBuilder();
+        httpBuilder.addQueryParameter("region", region);
+        httpBuilder.addQueryParameter("account", account);
+        List<LambdaDefinition> functions = getListFromCloudDriver(httpBuilder.build().toString(), LambdaDefinition.class);
+        Map<String, LambdaDefinition> result = new HashMap<>();
+        functions.stream().filter(x -> x.getFunctionName() != null).forEach(x -> {
+            result.put(x.getFunctionName(), x);
+            cacheLambda(userCacheKey(cacheKey(account, region, x.getFunctionName())), x);
+        });
+        logger.debug(String.format("Listed %d functions in %s/%s", result.size(), account, region));
+        return result;
+    }
+
+    private void cacheLambda(String key, LambdaDefinition lambdaDef) {
+        String functionKey = functionKey(key);
+        String staleRevisionId = invalidatedRevisions.getIfPresent(functionKey);
+        if (staleRevisionId != null && staleRevisionId.equals(lambdaDef.getRevisionId())) {
+            logger.debug("Clouddriver has not caught up with the last operation on " + functionKey + ", not caching");
+            lambdaCache.invalidate(key);
+            return;
+        }
+        invalidatedRevisions.invalidate(functionKey);
+        lambdaCache.put(key, lambdaDef);
+    }
+
+    public void invalidateLambda(String account, String region, String appName, String functionName) {
+        if (account == null || region == null || functionName == null) {
+            return;
+        }
+        String key = cacheKey(account, region, qualifiedFunctionName(appName, functionName));
+        lambdaCache.asMap().entrySet().removeIf(e -> {
+            if (!key.equals(functionKey(e.getKey()))) {
+                return false;
+            }
+            if (e.getValue().getRevisionId() != null) {
+                invalidatedRevisions.put(key, e.getValue().getRevisionId());
+            }
+            return true;
+        });
+    }
+
+    /**
+     * A function is ready for the next operation once clouddriver shows the revision the previous one produced,
+     * if one is expected, and lambda has finished applying it.
+     */
+    public static boolean isSettled(LambdaDefinition lf, String expectedRevisionId) {
+        if (expectedRevisionId != null && !expectedRevisionId.equals(lf.getRevisionId())) {
+            logger.debug("Clouddriver has not caught up with the last operation on " + lf.getFunctionName());
+            return false;
+        }
+        if (PENDING_STATE.equals(lf.getState()) || UPDATE_IN_PROGRESS.equals(lf.getLastUpdateStatus())) {
+            logger.debug("Waiting for the last update of " + lf.getFunctionName() + " to finish");
+            return false;
+        }
+        return true;
+    }
+
+    public static LambdaCacheRefreshInput functionCacheRefresh(String account, String region, String appName, String functionName) {
+        return LambdaCacheRefreshInput.builder()
+                .account(account)
+                .credentials(account)
+                .appName(appName)
+                .region(region)
+                .functionName(functionName)
+                .build();
+    }
+
+    /**
+     * Asks clouddriver to refresh the function in its cache, so that the next read shows its new state.
+     * A refresh that cannot be requested only delays that, so it is logged rather than thrown.
+     */
+    public void refreshFunctionCache(String account, String region, String appName, String functionName) {
+        try {
+            postToCloudDriverForStatusCode(props.getCloudDriverBaseUrl() + CLOUDDRIVER_REFRESH_CACHE_PATH,
+                    asString(functionCacheRefresh(account, region, appName, functionName)));
+        } catch (RuntimeException e) {
+            logger.warn("Could not request cache refresh for " + functionName, e);
+        }
+    }
+
+    /**
+     * Drops the cached definition of the function an operation body refers to.
+     * Operation bodies carry the account either as account or as credentials.
+     */
+    void invalidateForOperation(String endPointUrl, String jsonString) {
+        if (endPointUrl.endsWith(CLOUDDRIVER_INVOKE_PATH)) {
+            return;
+        }
+        try {
+            JsonNode op = objectMapper.readTree(jsonString);
+            if (op == null || !op.isObject()) {
+                return;
+            }
+            String account = op.hasNonNull("credentials") ? op.get("credentials").asText() : op.path("account").asText(null);
+            invalidateLambda(account, op.path("region").asText(null), op.path("appName").asText(null), op.path("functionName").asText(null));
+        } catch (IOException e) {
+            logger.warn("Could not read operation to invalidate function cache", e);
+        }
+    }
+
+    public static String qualifiedFunctionName(String appName, String functionName) {
+        if (functionName == null || appName == null || functionName.startsWith(String.format("%s-", appName))) {
+            return functionName;
+        }
+        return String.format("%s-%s", appName, functionName);
+    }
+
+    private static String cacheKey(String account, String region, String functionName) {
+        return String.format("%s/%s/%s", account, region, functionName);
+    }
+
+    private static String userCacheKey(String functionKey) {
+        return String.format("%s@%s", AuthenticatedRequest.getSpinnakerUser().orElse("anonymous"), functionKey);
+    }
+
+    private static String functionKey(String userCacheKey) {
+        return userCacheKey.substring(userCacheKey.indexOf('@') + 1);
+    }
+
+    private LambdaDefinition fetchLambda(String acc, String region, String fName) {
         //{{clouddriver_url}}/functions?functionName=a1-json_simple_lambda_222&region=us-west-2&account=aws-managed-1
         logger.debug("Retrieve Lambda");
         String cloudDriverUrl =  props.getCloudDriverBaseUrl();
-        String region = inp.getRegion();
-        String acc = inp.getAccount();
-        String fName = inp.getFunctionName();
-        String appPrefix = String.format("%s-", inp.getAppName());
-        if (!fName.startsWith(appPrefix)) {
-            fName = String.format("%s-%s", inp.getAppName(),inp.getFunctionName());
-        }
         String url = cloudDriverUrl + CLOUDDRIVER_GET_PATH ;
         HttpUrl.Builder httpBuilder = HttpUrl.parse(url).newBuilder();
         httpBuilder.addQueryParameter("region", region);
@@ -230,10 +550,8 @@ public class LambdaCloudDriverUtils {
                 .url(httpBuilder.build())
                 .headers(buildHeaders())
                 .build();
-        OkHttpClient client = new OkHttpClient();
-        Call call = client.newCall(request);
-        try {
-            Response response = call.execute();
+        Call call = httpClient.getClient().newCall(request);
+        try (Response response = call.execute()) {
             if (200 != response.code()) {
                 logger.error("Could not retrieve lambda");
                 return null;
@@ -291,6 +609,10 @@ public class LambdaCloudDriverUtils {
         return null;
     }
 
+    public <T> T convertValue(Object value, Class<T> type) {
+        return objectMapper.convertValue(value, type);
+    }
+
     public String asString(Object inp) {
         try {
             return objectMapper.writeValueAsString(inp);
@@ -352,20 +674,70 @@ public class LambdaCloudDriverUtils {
         return findLambda(stage, false);
     }
 
+    /**
+     * Like findLambda, but bypasses the function cache. Use this for any read that decides whether to
+     * mutate the function or which of its versions to target.
+     */
+    public LambdaDefinition findLatestLambda(StageExecution stage) {
+        return findLatestLambda(stage, false);
+    }
+
+    public LambdaDefinition findLatestLambda(StageExecution stage, boolean shouldRetry) {
+        return findLambda(stage, shouldRetry, this::retrieveLatestLambda);
+    }
+
     public LambdaDefinition findLambda(StageExecution stage, boolean shouldRetry) {
+        return findLambda(stage, shouldRetry, this::retrieveLambda);
+    }
+
+    private LambdaDefinition findLambda(StageExecution stage, boolean shouldRetry, Function<LambdaGetInput, LambdaDefinition> lookup) {
         LambdaGetInput lgi = this.getInput(stage, LambdaGetInput.class);
         lgi.setAppName(stage.getExecution().getApplication());
         //LambdaGetOutput lf = (LambdaGetOutput)stage.getContext().get(LambdaStageConstants.lambdaObjectKey);
-        LambdaDefinition lf = this.retrieveLambda(lgi);
+        LambdaDefinition lf = lookup.apply(lgi);
         int count = 0;
         while (lf == null && count < 5 && shouldRetry == true) {
             count++;
-            lf = this.retrieveLambda((lgi));
+            lf = lookup.apply(lgi);
             this.await();
         }
         return lf;
     }
 
+    /**
+     * Whether a task has to wait for clouddriver's /functions cache to show its change before completing.
+     * In consistent-read mode that is only the case when a later Lambda stage in the pipeline will read the
+     * function from the cache, or when the stage sets waitForCacheConsistency.
+     */
+    public boolean requiresCacheConsistency(StageExecution stage) {
+        if (!consistentRead || Boolean.TRUE.equals(stage.getContext().get(LambdaStageConstants.waitForCacheConsistencyKey))) {
+            return true;
+        }
+        StageExecution topLevelStage = stage;
+        while (topLevelStage.getParent() != null) {
+            topLevelStage = topLevelStage.getParent();
+        }
+        List<StageExecution> stages = stage.getExecution().getStages();
+        Set<String> upstreamRefIds = new HashSet<>(Collections.singleton(topLevelStage.getRefId()));
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (StageExecution s : stages) {
+                if (s.getRefId() == null || upstreamRefIds.contains(s.getRefId()) || s.getRequisiteStageRefIds() == null) {
+                    continue;
+                }
+                if (s.getRequisiteStageRefIds().stream().anyMatch(upstreamRefIds::contains)) {
+                    if (s.getType() != null && s.getType().startsWith(LAMBDA_STAGE_TYPE_PREFIX)) {
+                        return true;
+                    }
+                    upstreamRefIds.add(s.getRefId());
+                    found = true;
+                }
+            }
+        }
+        return false;
+    }
+
     public boolean validateUpsertLambdaInput(LambdaDeploymentInput inputLambda, List<String> errorMessages) {
         if (!ObjectUtils.defaultIfNull(inputLambda.getEnableLambdaAtEdge(), Boolean.FALSE)) {
             return true;
@@ -17,7 +17,6 @@
 package com.amazon.aws.spinnaker.plugin.lambda.utils;
 
 import com.amazonaws.services.lambda.model.AliasConfiguration;
-import com.amazonaws.services.lambda.model.EventSourceMappingConfiguration;
 import com.amazonaws.services.lambda.model.FunctionCodeLocation;
 import com.amazonaws.services.lambda.model.FunctionConfiguration;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -38,11 +37,14 @@ public class LambdaDefinition extends FunctionConfiguration {
     private Map<String, String> revisions;
     // private List revisions;
     private List<AliasConfiguration> aliasConfigurations;
-    private List<EventSourceMappingConfiguration> eventSourceMappings;
+    private List<LambdaEventSourceMapping> eventSourceMappings;
     private FunctionCodeLocation code;
     private Map<String, String> tags;
     private List<String> targetGroups;
     private String state;
     private String stateReason;
     private String stateReasonCode;
+    private String lastUpdateStatus;
+    private String lastUpdateStatusReason;
+    private String lastUpdateStatusReasonCode;
 }
\ No newline at end of file
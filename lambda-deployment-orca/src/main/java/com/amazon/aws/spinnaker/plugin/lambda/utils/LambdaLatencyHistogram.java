@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Counts of non-negative samples in buckets that are each 5% wider than the one below, for keeping the
+ * distribution of a long-running measurement in the stage context. Its size depends on the range of the
+ * samples, not their number: a day in milliseconds fits in under 400 buckets, and only buckets that hold
+ * samples are kept. Percentiles are reported as the upper bound of the bucket holding the nearest-rank
+ * sample, capped at the largest sample, so they are at most 5% above the exact figure.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaLatencyHistogram {
+    private static final double BUCKET_GROWTH = 1.05;
+
+    private long count;
+    private long sum;
+    private Long min;
+    private Long max;
+    private Map<Integer, Long> buckets = new HashMap<>();
+
+    public void record(long value) {
+        long sample = Math.max(0, value);
+        count++;
+        sum += sample;
+        min = min == null ? sample : Math.min(min, sample);
+        max = max == null ? sample : Math.max(max, sample);
+        buckets.merge(bucketOf(sample), 1L, Long::sum);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the percentile, or 0 when there are no samples
+     */
+    public double percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.min(count, Math.max(1, (long) Math.ceil(percentile / 100.0 * count)));
+        List<Integer> sorted = buckets.keySet().stream().sorted().collect(Collectors.toList());
+        long seen = 0;
+        for (Integer bucket : sorted) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, upperBound(bucket)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The same figures as LambdaStatistics.summarize.
+     */
+    public Map<String, Object> summarize() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        if (count == 0) {
+            return summary;
+        }
+        summary.put("min", min.doubleValue());
+        summary.put("avg", LambdaStatistics.round(sum / (double) count));
+        summary.put("max", max.doubleValue());
+        summary.put("p50", percentile(50));
+        summary.put("p95", percentile(95));
+        summary.put("p99", percentile(99));
+        return summary;
+    }
+
+    private static int bucketOf(long value) {
+        if (value <= 1) {
+            return (int) value;
+        }
+        return (int) Math.ceil(Math.log(value) / Math.log(BUCKET_GROWTH));
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket <= 1) {
+            return bucket;
+        }
+        return (long) Math.ceil(Math.pow(BUCKET_GROWTH, bucket));
+    }
+}
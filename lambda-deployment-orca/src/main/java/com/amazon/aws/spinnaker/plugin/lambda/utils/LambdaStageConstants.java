@@ -26,6 +26,7 @@ public class LambdaStageConstants {
     public static final String lambaConfigurationUpdatedKey = "lambdaConfigUpdated";
     public static final String lambaVersionPublishedKey = "lambdaVersionPublished";
     public static final String lambaAliasesUpdatedKey = "lambdaAliasesUpdated";
+    public static final String lambdaCodeUnchangedKey = "lambdaCodeUnchanged";
 
     public static final String createdUrlKey = "createdUrl";
     public static final String updateCodeUrlKey = "updateCodeUrl";
@@ -45,6 +46,21 @@ public class LambdaStageConstants {
     public static final String resourceIdKey = "resourceId";
     public static final String functionNameKey = "functionName";
     public static final String urlKey = "url";
+    public static final String blueGreenSamplesKey = "blueGreenSamples";
+    public static final String healthCheckKey = "healthCheck";
+    public static final String blueGreenHealthCheckKey = "blueGreenHealthCheck";
+    public static final String configurationDiffKey = "configurationDiff";
+    public static final String waitForCacheConsistencyKey = "waitForCacheConsistency";
+    public static final String targetDeploymentsKey = "lambdaTargetDeployments";
+    public static final String deploymentsKey = "deployments";
+    public static final String failurePolicyKey = "failurePolicy";
+    public static final String eventMappingChangesKey = "eventMappingChanges";
+    public static final String eventMappingsToRecreateKey = "eventMappingsToRecreate";
+    public static final String loadTestKey = "loadTest";
+    public static final String loadTestStateKey = "lambdaLoadTestState";
+    public static final String powerTuningStateKey = "lambdaPowerTuningState";
+    public static final String progressiveShiftStateKey = "lambdaProgressiveShiftState";
+    public static final String metricGateKey = "metricGate";
 
     public static List<String> allUrlKeys = List.of(createdUrlKey, updateCodeUrlKey, updateConfigUrlKey, updateEventUrlKey, publishVersionUrlKey, putConcurrencyUrlKey);
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Summary figures over a set of samples, for reporting in stage outputs.
+ * Percentiles use the nearest-rank method, so every figure reported is one of the samples.
+ */
+public final class LambdaStatistics {
+
+    private LambdaStatistics() {
+    }
+
+    /**
+     * @param sorted samples in ascending order, not empty
+     * @param percentile between 0 and 100
+     */
+    public static double percentile(List<Double> sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.min(sorted.size() - 1, Math.max(0, rank - 1)));
+    }
+
+    public static Map<String, Object> summarize(Collection<? extends Number> samples) {
+        List<Double> sorted = samples.stream().map(Number::doubleValue).sorted().collect(Collectors.toList());
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", sorted.size());
+        if (sorted.isEmpty()) {
+            return summary;
+        }
+        summary.put("min", sorted.get(0));
+        summary.put("avg", round(sorted.stream().mapToDouble(Double::doubleValue).average().orElse(0)));
+        summary.put("max", sorted.get(sorted.size() - 1));
+        summary.put("p50", percentile(sorted, 50));
+        summary.put("p95", percentile(sorted, 95));
+        summary.put("p99", percentile(sorted, 99));
+        return summary;
+    }
+
+    public static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the code hash from the S3 object's user metadata, which is written by the build that uploads the artifact.
+ * Both hex and base64 encoded values are accepted. The object is read as the stage's account through
+ * {@link LambdaAccountCredentialsProvider}. A custom endpoint can be configured to point at an
+ * S3 compatible stand-in. Disabled unless lambdaPlugin.codeHash.enabled is set.
+ */
+@Component
+public class S3LambdaArtifactStore implements LambdaArtifactStore {
+    private static final Logger logger = LoggerFactory.getLogger(S3LambdaArtifactStore.class);
+
+    @Value("${lambdaPlugin.codeHash.enabled:false}")
+    private boolean enabled;
+
+    @Value("${lambdaPlugin.codeHash.metadataKey:sha256}")
+    private String metadataKey;
+
+    @Value("${lambdaPlugin.codeHash.s3Endpoint:}")
+    private String s3Endpoint;
+
+    @Value("${lambdaPlugin.codeHash.pathStyleAccess:false}")
+    private boolean pathStyleAccess;
+
+    @Autowired
+    private LambdaAccountCredentialsProvider accountCredentials;
+
+    private final Map<String, AmazonS3> clients = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<String> getContentSha256(String account, String region, String bucket, String key) {
+        if (!enabled || StringUtils.isEmpty(bucket) || StringUtils.isEmpty(key)) {
+            return Optional.empty();
+        }
+        try {
+            AWSCredentialsProvider credentials = accountCredentials.getCredentials(account, region);
+            ObjectMetadata metadata = clients.computeIfAbsent(account + ":" + region, x -> buildClient(credentials, region))
+                    .getObjectMetadata(bucket, key);
+            return Optional.ofNullable(toBase64(metadata.getUserMetaDataOf(metadataKey)));
+        } catch (Exception e) {
+            logger.warn(String.format("Could not read metadata of s3://%s/%s", bucket, key), e);
+            return Optional.empty();
+        }
+    }
+
+    private AmazonS3 buildClient(AWSCredentialsProvider credentials, String region) {
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withCredentials(credentials)
+                .withPathStyleAccessEnabled(pathStyleAccess);
+        if (StringUtils.isNotEmpty(s3Endpoint)) {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(s3Endpoint, region));
+        } else {
+            builder.withRegion(region);
+        }
+        return builder.build();
+    }
+
+    private static String toBase64(String sha256) {
+        if (sha256 == null) {
+            return null;
+        }
+        if (sha256.length() == 64 && sha256.matches("[0-9a-fA-F]+")) {
+            byte[] bytes = new byte[32];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(sha256.substring(2 * i, 2 * i + 2), 16);
+            }
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+        return sha256;
+    }
+}
@@ -14,14 +14,13 @@
  * limitations under the License.
  */
 
-
 package com.amazon.aws.spinnaker.plugin.lambda.verify;
 
-import com.amazon.aws.spinnaker.plugin.lambda.LambdaCloudOperationOutput;
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCachePendingRefresh;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCacheRefreshInput;
-import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.netflix.spinnaker.orca.api.pipeline.RetryableTask;
 import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
 import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
 import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
@@ -29,18 +28,27 @@ import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationPro
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import retrofit.client.Response;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
+/**
+ * Requests an on-demand refresh of the function in clouddriver's cache and polls until it has been processed.
+ * The cache time clouddriver gave the refresh is kept in the stage context between polls and removed once the
+ * refresh is done, since a stage may run this task more than once. Only clouddriver's own timestamps are compared,
+ * so the clocks of the orca and clouddriver hosts need not agree.
+ */
 @Component
-public class LambdaCacheRefreshTask implements LambdaStageBaseTask {
+public class LambdaCacheRefreshTask implements LambdaStageBaseTask, RetryableTask {
     private static Logger logger = LoggerFactory.getLogger(LambdaCacheRefreshTask.class);
-    private static String CLOUDDRIVER_REFRESH_CACHE_PATH = "/cache/aws/function";
+    private static final String refreshCacheTimeKey = "lambdaCacheRefreshCacheTime";
 
     @Autowired
     CloudDriverConfigurationProperties props;
@@ -49,28 +57,128 @@ public class LambdaCacheRefreshTask implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Value("${lambdaPlugin.cacheRefresh.backoffMillis:2000}")
+    private long backoffMillis;
+
+    @Value("${lambdaPlugin.cacheRefresh.maxBackoffMillis:10000}")
+    private long maxBackoffMillis;
+
+    @Value("${lambdaPlugin.cacheRefresh.timeoutMillis:120000}")
+    private long timeoutMillis;
+
     @Nonnull
     @Override
     public TaskResult execute(@Nonnull StageExecution stage) {
         logger.debug("Executing LambdaCacheRefreshTask...");
         cloudDriverUrl = props.getCloudDriverBaseUrl();
         prepareTask(stage);
-        LambdaCloudOperationOutput output = forceCacheRefresh(stage);
-        logger.debug("Going to wait for some seconds after requesting cache refresh...");
-        utils.await();
-        return taskComplete(stage);
-    }
-
-    private LambdaCloudOperationOutput forceCacheRefresh(StageExecution stage) {
         LambdaCacheRefreshInput inp = utils.getInput(stage, LambdaCacheRefreshInput.class);
         inp.setAppName(stage.getExecution().getApplication());
         inp.setCredentials(inp.getAccount());
-        String endPoint = cloudDriverUrl + CLOUDDRIVER_REFRESH_CACHE_PATH;
+
+        Number cacheTime = (Number) stage.getContext().get(refreshCacheTimeKey);
+        if (cacheTime == null) {
+            if (!forceCacheRefresh(inp)) {
+                logger.debug("Cache refresh was processed immediately");
+                return refreshComplete(stage);
+            }
+            cacheTime = getRefreshCacheTime(inp);
+            if (cacheTime == null) {
+                logger.debug("Cache refresh is no longer pending");
+                return refreshComplete(stage);
+            }
+            stage.getContext().put(refreshCacheTimeKey, cacheTime);
+            return TaskResult.builder(ExecutionStatus.RUNNING).build();
+        }
+
+        if (isRefreshProcessed(inp, cacheTime.longValue())) {
+            logger.debug("Cache refresh has been processed");
+            return refreshComplete(stage);
+        }
+        return TaskResult.builder(ExecutionStatus.RUNNING).build();
+    }
+
+    /**
+     * @return true if clouddriver accepted the refresh for later processing, false if it was processed inline.
+     */
+    private boolean forceCacheRefresh(LambdaCacheRefreshInput inp) {
+        String endPoint = cloudDriverUrl + LambdaCloudDriverUtils.CLOUDDRIVER_REFRESH_CACHE_PATH;
         String rawString = utils.asString(inp);
-        LambdaCloudDriverResponse respObj = utils.postToCloudDriver(endPoint, rawString);
-        String url = cloudDriverUrl + respObj.getResourceUri();
-        logger.debug("Posted to cloudDriver for cache refresh: " + url);
-        LambdaCloudOperationOutput operationOutput = LambdaCloudOperationOutput.builder().resourceId(respObj.getId()).url(url).build();
-        return operationOutput;
+        int responseCode = utils.postToCloudDriverForStatusCode(endPoint, rawString);
+        logger.debug("Posted to cloudDriver for cache refresh, response code " + responseCode);
+        return responseCode == 202;
+    }
+
+    /**
+     * Clouddriver stores the refresh before accepting it, so the entry it lists for the function right after
+     * the request carries the cache time of this refresh, taken from clouddriver's clock.
+     * @return that cache time, or null if the function has no pending refresh anymore
+     */
+    private Long getRefreshCacheTime(LambdaCacheRefreshInput inp) {
+        return getPendingRefreshes(inp).stream()
+                .map(LambdaCachePendingRefresh::getCacheTime)
+                .filter(Objects::nonNull)
+                .max(Long::compare)
+                .orElse(null);
+    }
+
+    /**
+     * The refresh is done when clouddriver no longer lists it as pending, or lists it as processed with the
+     * cache time it was given or a later one.
+     */
+    private boolean isRefreshProcessed(LambdaCacheRefreshInput inp, long cacheTime) {
+        return getPendingRefreshes(inp).stream()
+                .allMatch(x -> x.getProcessedCount() != null && x.getProcessedCount() > 0
+                        && x.getCacheTime() != null && x.getCacheTime() >= cacheTime);
+    }
+
+    private List<LambdaCachePendingRefresh> getPendingRefreshes(LambdaCacheRefreshInput inp) {
+        String endPoint = cloudDriverUrl + LambdaCloudDriverUtils.CLOUDDRIVER_REFRESH_CACHE_PATH;
+        return utils.getListFromCloudDriver(endPoint, LambdaCachePendingRefresh.class).stream()
+                .filter(x -> matches(x, inp))
+                .collect(Collectors.toList());
+    }
+
+    private boolean matches(LambdaCachePendingRefresh refresh, LambdaCacheRefreshInput inp) {
+        Map<String, Object> details = refresh.getDetails();
+        if (details == null) {
+            return false;
+        }
+        Object functionName = details.get("functionName");
+        boolean sameFunction = Objects.equals(functionName, inp.getFunctionName())
+                || Objects.equals(functionName, String.format("%s-%s", inp.getAppName(), inp.getFunctionName()));
+        return sameFunction
+                && Objects.equals(details.get("account"), inp.getAccount())
+                && Objects.equals(details.get("region"), inp.getRegion());
+    }
+
+    private TaskResult refreshComplete(StageExecution stage) {
+        stage.getContext().remove(refreshCacheTimeKey);
+        return taskComplete(stage);
+    }
+
+    @Nullable
+    @Override
+    public TaskResult onTimeout(@Nonnull StageExecution stage) {
+        logger.warn("Timed out waiting for cache refresh to be processed, continuing");
+        return refreshComplete(stage);
+    }
+
+    @Override
+    public long getBackoffPeriod() {
+        return backoffMillis;
+    }
+
+    /**
+     * Poll quickly at first and back off the longer the refresh takes.
+     */
+    @Override
+    public long getDynamicBackoffPeriod(StageExecution stage, Duration taskDuration) {
+        return Math.min(maxBackoffMillis, Math.max(backoffMillis, taskDuration.toMillis() / 2));
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMillis;
     }
 }
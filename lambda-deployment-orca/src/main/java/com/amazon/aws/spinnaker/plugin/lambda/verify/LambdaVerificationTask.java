@@ -17,6 +17,7 @@
 package com.amazon.aws.spinnaker.plugin.lambda.verify;
 
 import com.amazon.aws.spinnaker.plugin.lambda.LambdaStageBaseTask;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
 import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
 import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
@@ -33,6 +34,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -40,6 +42,7 @@ import java.util.stream.Collectors;
 @Component
 public class LambdaVerificationTask implements LambdaStageBaseTask {
     private static Logger logger = LoggerFactory.getLogger(LambdaVerificationTask.class);
+    private static final String completedResultsKey = "lambdaVerifiedTaskResults";
 
     @Autowired
     CloudDriverConfigurationProperties props;
@@ -48,6 +51,9 @@ public class LambdaVerificationTask implements LambdaStageBaseTask {
     @Autowired
     private LambdaCloudDriverUtils utils;
 
+    @Autowired
+    private LambdaCloudDriverAsyncUtils asyncUtils;
+
     @NotNull
     @Override
     public TaskResult execute(@NotNull StageExecution stage) {
@@ -59,6 +65,7 @@ public class LambdaVerificationTask implements LambdaStageBaseTask {
         }
         catch (Throwable e) {
             logger.error("Exception verifying task", e);
+            stage.getContext().remove(completedResultsKey);
             logException(stage, e);
             addExceptionToOutput(stage, e) ;
             return formErrorTaskResult(stage, "Exception during task verification");
@@ -80,21 +87,40 @@ public class LambdaVerificationTask implements LambdaStageBaseTask {
         if (null != stageContext.get(LambdaStageConstants.aliasTaskKey))
             urlList.addAll((List<String>)stageContext.get(LambdaStageConstants.aliasTaskKey));
 
-        List<LambdaCloudDriverTaskResults> listOfTaskResults = urlList.stream().map(url -> {
-            return utils.verifyStatus(url);
-        }).collect(Collectors.toList());
-
-        boolean anyRunning = listOfTaskResults.stream().anyMatch( taskResult -> { return !taskResult.getStatus().isCompleted(); });
+        // Operations found complete on an earlier poll are not checked again.
+        Map<String, LambdaCloudDriverTaskResults> completedResults = getCompletedResults(stageContext);
+        List<String> pendingUrls = urlList.stream()
+                .filter(url -> !completedResults.containsKey(url))
+                .distinct()
+                .collect(Collectors.toList());
+        List<LambdaCloudDriverTaskResults> polledResults = LambdaCloudDriverAsyncUtils.joinAll(
+                pendingUrls.stream().map(asyncUtils::verifyStatusAsync).collect(Collectors.toList()));
+
+        boolean anyRunning = false;
+        for (int i = 0; i < pendingUrls.size(); i++) {
+            LambdaCloudDriverTaskResults taskResult = polledResults.get(i);
+            if (taskResult.getStatus().isCompleted()) {
+                completedResults.put(pendingUrls.get(i), taskResult);
+            } else {
+                anyRunning = true;
+            }
+        }
         if (anyRunning) {
+            stageContext.put(completedResultsKey, completedResults);
             return TaskResult.builder(ExecutionStatus.RUNNING).build();
         }
 
+        List<LambdaCloudDriverTaskResults> listOfTaskResults = urlList.stream()
+                .map(completedResults::get)
+                .collect(Collectors.toList());
+
         // Clear the keys, now that the tasks are complete.
         urlKeyList.forEach(x -> {
             stageContext.remove(x);
         });
         stageContext.remove(LambdaStageConstants.eventTaskKey);
         stageContext.remove(LambdaStageConstants.aliasTaskKey);
+        stageContext.remove(completedResultsKey);
 
         boolean anyFailures = listOfTaskResults.stream().anyMatch(taskResult -> {
             return taskResult.getStatus().isFailed();
@@ -127,6 +153,15 @@ public class LambdaVerificationTask implements LambdaStageBaseTask {
         return formErrorListTaskResult(stage, errorMessages);
     }
 
+    private Map<String, LambdaCloudDriverTaskResults> getCompletedResults(Map<String, Object> stageContext) {
+        Map<String, LambdaCloudDriverTaskResults> completedResults = new HashMap<>();
+        Map<String, Object> stored = (Map<String, Object>) stageContext.get(completedResultsKey);
+        if (stored != null) {
+            stored.forEach((url, result) -> completedResults.put(url, utils.convertValue(result, LambdaCloudDriverTaskResults.class)));
+        }
+        return completedResults;
+    }
+
     @Nullable
     @Override
     public TaskResult onTimeout(@NotNull StageExecution stage) {
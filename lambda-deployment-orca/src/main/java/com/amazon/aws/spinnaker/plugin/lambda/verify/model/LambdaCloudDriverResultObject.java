@@ -16,6 +16,7 @@
 
 package com.amazon.aws.spinnaker.plugin.lambda.verify.model;
 
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaInvokeResult;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Builder;
 import lombok.Data;
@@ -24,5 +25,6 @@ import lombok.Data;
 @Builder
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class LambdaCloudDriverResultObject {
-    private String version, functionName, eventSourceArn, functionArn, uuid, state;
+    private String version, functionName, eventSourceArn, functionArn, uuid, state, revisionId;
+    private LambdaInvokeResult invokeResult;
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.verify.model;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaInvokeResult;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A single entry of a clouddriver task's resultObjects.
+ * Holds the union of the fields read as results, errors and invocation output, so the entry is decoded only once.
+ */
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LambdaCloudDriverTaskResultObject {
+    private String version, functionName, eventSourceArn, functionArn, uuid, state, revisionId;
+    private String cause, message, operation, type;
+    private LambdaInvokeResult invokeResult;
+    private String responseString;
+}
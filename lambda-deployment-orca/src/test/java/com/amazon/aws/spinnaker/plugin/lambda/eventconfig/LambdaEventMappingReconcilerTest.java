@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.eventconfig;
+
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaEventConfigurationDescription;
+import com.amazon.aws.spinnaker.plugin.lambda.eventconfig.model.LambdaEventMappingPlan;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaEventSourceMapping;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LambdaEventMappingReconcilerTest {
+    private static final String QUEUE = "arn:aws:sqs:us-west-2:123456789012:orders";
+    private static final String STREAM = "arn:aws:kinesis:us-west-2:123456789012:stream/clicks";
+    private static final String OLD_QUEUE = "arn:aws:sqs:us-west-2:123456789012:legacy";
+
+    private static LambdaEventSourceMapping mapping(String uuid, String eventSourceArn, int batchSize, String state) {
+        LambdaEventSourceMapping m = new LambdaEventSourceMapping();
+        m.setUUID(uuid);
+        m.setEventSourceArn(eventSourceArn);
+        m.setBatchSize(batchSize);
+        m.setState(state);
+        return m;
+    }
+
+    private static LambdaEventConfigurationDescription event(String eventSourceArn, int batchSize) {
+        return LambdaEventConfigurationDescription.builder()
+                .eventSourceArn(eventSourceArn)
+                .batchsize(batchSize)
+                .enabled(true)
+                .build();
+    }
+
+    private static Map<String, List<LambdaEventSourceMapping>> existing(LambdaEventSourceMapping... mappings) {
+        Map<String, List<LambdaEventSourceMapping>> bySource = new HashMap<>();
+        Arrays.stream(mappings).forEach(m -> bySource.computeIfAbsent(m.getEventSourceArn(), k -> new ArrayList<>()).add(m));
+        return bySource;
+    }
+
+    @Test
+    void matchingMappingIsLeftAlone() {
+        LambdaEventMappingPlan plan = LambdaEventMappingReconciler.reconcile(
+                Collections.singletonList(event(QUEUE, 10)),
+                existing(mapping("u-1", QUEUE, 10, "Enabled")),
+                false);
+
+        assertEquals(1, plan.getUnchanged());
+        assertTrue(plan.getCreates().isEmpty());
+        assertTrue(plan.getUpdates().isEmpty());
+        assertTrue(plan.getDeletes().isEmpty());
+    }
+
+    @Test
+    void createsUpdatesAndDeletes() {
+        LambdaEventMappingPlan plan = LambdaEventMappingReconciler.reconcile(
+                Arrays.asList(event(QUEUE, 20), event(STREAM, 100)),
+                existing(mapping("u-1", QUEUE, 10, "Enabled"), mapping("u-2", OLD_QUEUE, 10, "Enabled")),
+                false);
+
+        assertEquals(Collections.singletonList(STREAM), plan.getCreates().stream().map(LambdaEventConfigurationDescription::getEventSourceArn).collect(Collectors.toList()));
+        assertEquals(1, plan.getUpdates().size());
+        assertEquals("u-1", plan.getUpdates().get(0).getUuid());
+        assertEquals(1, plan.getDeletes().size());
+        assertEquals("u-2", plan.getDeletes().get(0).getUUID());
+    }
+
+    @Test
+    void duplicateMappingsAreDeletedKeepingTheMatchingOne() {
+        LambdaEventSourceMapping stale = mapping("u-1", QUEUE, 10, "Enabled");
+        LambdaEventSourceMapping matching = mapping("u-2", QUEUE, 20, "Enabled");
+        LambdaEventSourceMapping other = mapping("u-3", QUEUE, 5, "Enabled");
+
+        LambdaEventMappingPlan plan = LambdaEventMappingReconciler.reconcile(
+                Collections.singletonList(event(QUEUE, 20)), existing(stale, matching, other), false);
+
+        assertEquals(1, plan.getUnchanged());
+        assertTrue(plan.getUpdates().isEmpty());
+        assertEquals(Arrays.asList(stale, other), plan.getDeletes());
+    }
+
+    @Test
+    void duplicateMappingsAreDeletedWhenNoneMatches() {
+        LambdaEventSourceMapping first = mapping("u-1", QUEUE, 10, "Enabled");
+        LambdaEventSourceMapping second = mapping("u-2", QUEUE, 5, "Enabled");
+
+        LambdaEventMappingPlan plan = LambdaEventMappingReconciler.reconcile(
+                Collections.singletonList(event(QUEUE, 20)), existing(first, second), false);
+
+        assertEquals(1, plan.getUpdates().size());
+        assertEquals("u-1", plan.getUpdates().get(0).getUuid());
+        assertEquals(Collections.singletonList(second), plan.getDeletes());
+    }
+
+    @Test
+    void changedStartingPositionRecreatesTheMapping() {
+        LambdaEventSourceMapping current = mapping("u-1", STREAM, 100, "Enabled");
+        current.setStartingPosition("LATEST");
+        LambdaEventConfigurationDescription desired = event(STREAM, 100);
+        desired.setStartingPosition("TRIM_HORIZON");
+
+        LambdaEventMappingPlan plan = LambdaEventMappingReconciler.reconcile(Collections.singletonList(desired), existing(current), true);
+
+        assertEquals(Collections.singletonList(current), plan.getDeletes());
+        assertEquals(Collections.singletonList(desired), plan.getRecreates());
+        assertTrue(plan.getUpdates().isEmpty());
+    }
+
+    @Test
+    void startingPositionIsIgnoredWhenNotRequested() {
+        LambdaEventSourceMapping current = mapping("u-1", STREAM, 100, "Enabled");
+        current.setStartingPosition("LATEST");
+        LambdaEventConfigurationDescription desired = event(STREAM, 100);
+        desired.setStartingPosition("TRIM_HORIZON");
+
+        LambdaEventMappingPlan plan = LambdaEventMappingReconciler.reconcile(Collections.singletonList(desired), existing(current), false);
+
+        assertEquals(1, plan.getUnchanged());
+    }
+
+    @Test
+    void enabledStateIsComparedInBothDirections() {
+        LambdaEventConfigurationDescription enable = event(QUEUE, 10);
+        assertEquals(Collections.singletonList("enabled"),
+                LambdaEventMappingReconciler.differences(enable, mapping("u-1", QUEUE, 10, "Disabled")));
+
+        LambdaEventConfigurationDescription disable = event(QUEUE, 10);
+        disable.setEnabled(false);
+        assertEquals(Collections.singletonList("enabled"),
+                LambdaEventMappingReconciler.differences(disable, mapping("u-1", QUEUE, 10, "Enabled")));
+        assertTrue(LambdaEventMappingReconciler.differences(disable, mapping("u-1", QUEUE, 10, "Disabling")).isEmpty());
+    }
+
+    @Test
+    void unsetAttributesAreNotCompared() {
+        LambdaEventSourceMapping current = mapping("u-1", QUEUE, 10, "Enabled");
+        current.setMaximumBatchingWindowInSeconds(5);
+
+        List<String> changed = LambdaEventMappingReconciler.differences(event(QUEUE, 0), current);
+
+        assertTrue(changed.isEmpty());
+    }
+}
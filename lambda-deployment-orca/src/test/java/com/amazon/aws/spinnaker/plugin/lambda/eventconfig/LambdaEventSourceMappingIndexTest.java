@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.eventconfig;
+
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaEventSourceMapping;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LambdaEventSourceMappingIndexTest {
+    private static final String FUNCTION = "arn:aws:lambda:us-west-2:123456789012:function:app-orders";
+    private static final String ALIAS = FUNCTION + ":live";
+    private static final String QUEUE = "arn:aws:sqs:us-west-2:123456789012:orders";
+
+    private static LambdaEventSourceMapping mapping(String uuid, String functionArn, String eventSourceArn) {
+        LambdaEventSourceMapping m = new LambdaEventSourceMapping();
+        m.setUUID(uuid);
+        m.setFunctionArn(functionArn);
+        m.setEventSourceArn(eventSourceArn);
+        return m;
+    }
+
+    @Test
+    void keepsEveryMappingOfTheSameEventSourceAndTarget() {
+        LambdaEventSourceMapping first = mapping("u-1", FUNCTION, QUEUE);
+        LambdaEventSourceMapping duplicate = mapping("u-2", FUNCTION, QUEUE);
+        LambdaEventSourceMapping aliased = mapping("u-3", ALIAS, QUEUE);
+        LambdaDefinition lf = LambdaDefinition.builder()
+                .eventSourceMappings(Arrays.asList(first, duplicate, aliased, mapping("u-4", FUNCTION, "")))
+                .build();
+
+        LambdaEventSourceMappingIndex index = new LambdaEventSourceMappingIndex(lf);
+
+        assertEquals(Arrays.asList(first, duplicate), index.forFunction(FUNCTION).get(QUEUE));
+        assertEquals(1, index.forFunction(FUNCTION).size());
+        assertEquals(first, index.find(FUNCTION, QUEUE).get());
+        assertEquals(aliased, index.find(ALIAS, QUEUE).get());
+        assertFalse(index.find(FUNCTION, "arn:aws:sqs:us-west-2:123456789012:other").isPresent());
+    }
+
+    @Test
+    void functionWithoutMappingsHasAnEmptyIndex() {
+        LambdaEventSourceMappingIndex index = new LambdaEventSourceMappingIndex(LambdaDefinition.builder().build());
+
+        assertTrue(index.forFunction(FUNCTION).isEmpty());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.invoke;
+
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvocationReport;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LambdaInvocationReportsTest {
+    private static final String COLD_START_LOG = "START RequestId: 0c5a7b3e-1f4d-4a2b-9e1e-6d3c2b1a0f9e Version: $LATEST\n"
+            + "2020-11-05T18:21:04.541Z\t0c5a7b3e-1f4d-4a2b-9e1e-6d3c2b1a0f9e\tINFO\thandled order\n"
+            + "END RequestId: 0c5a7b3e-1f4d-4a2b-9e1e-6d3c2b1a0f9e\n"
+            + "REPORT RequestId: 0c5a7b3e-1f4d-4a2b-9e1e-6d3c2b1a0f9e\tDuration: 12.34 ms\tBilled Duration: 100 ms\t"
+            + "Memory Size: 128 MB\tMax Memory Used: 64 MB\tInit Duration: 150.25 ms\t\n";
+    private static final String WARM_LOG = "START RequestId: 7e2d Version: 3\n"
+            + "END RequestId: 7e2d\n"
+            + "REPORT RequestId: 7e2d\tDuration: 3.10 ms\tBilled Duration: 100 ms\tMemory Size: 128 MB\tMax Memory Used: 96 MB\t\n";
+
+    private static String encode(String log) {
+        return Base64.getEncoder().encodeToString(log.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void parsesEveryFieldOfTheReportLine() {
+        LambdaInvocationReport report = LambdaInvocationReports.parse(encode(COLD_START_LOG));
+
+        assertEquals(12.34, report.getDurationMs());
+        assertEquals(100.0, report.getBilledDurationMs());
+        assertEquals(150.25, report.getInitDurationMs());
+        assertEquals(128, report.getMemorySizeMB().intValue());
+        assertEquals(64, report.getMaxMemoryUsedMB().intValue());
+    }
+
+    @Test
+    void warmInvocationHasNoInitDuration() {
+        LambdaInvocationReport report = LambdaInvocationReports.parse(encode(WARM_LOG));
+
+        assertEquals(3.10, report.getDurationMs());
+        assertNull(report.getInitDurationMs());
+    }
+
+    @Test
+    void missingOrUnreadableLogTailHasNoReport() {
+        assertNull(LambdaInvocationReports.parse(null));
+        assertNull(LambdaInvocationReports.parse(""));
+        assertNull(LambdaInvocationReports.parse("not base64!"));
+        assertNull(LambdaInvocationReports.parse(encode("START RequestId: 7e2d Version: 3\n")));
+    }
+
+    @Test
+    void aggregatesColdStartsDurationsAndMemoryUtilization() {
+        LambdaInvocationReport cold = LambdaInvocationReports.parse(encode(COLD_START_LOG));
+        LambdaInvocationReport warm = LambdaInvocationReports.parse(encode(WARM_LOG));
+
+        Map<String, Object> metrics = LambdaInvocationReports.aggregate(Arrays.asList(cold, warm));
+
+        assertEquals(2, metrics.get("reported"));
+        assertEquals(1L, metrics.get("coldStarts"));
+        Map<?, ?> duration = (Map<?, ?>) metrics.get("durationMs");
+        assertEquals(2, duration.get("count"));
+        assertEquals(3.10, duration.get("min"));
+        assertEquals(12.34, duration.get("max"));
+        assertEquals(1, ((Map<?, ?>) metrics.get("initDurationMs")).get("count"));
+        assertEquals(0.75, metrics.get("maxMemoryUtilization"));
+    }
+}
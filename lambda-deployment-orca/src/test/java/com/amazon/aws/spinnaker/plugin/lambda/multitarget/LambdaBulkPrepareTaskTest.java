@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.multitarget;
+
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetDeployment;
+import com.amazon.aws.spinnaker.plugin.lambda.multitarget.model.LambdaTargetStep;
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionType;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import com.netflix.spinnaker.orca.pipeline.model.PipelineExecutionImpl;
+import com.netflix.spinnaker.orca.pipeline.model.StageExecutionImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LambdaBulkPrepareTaskTest {
+    private LambdaBulkPrepareTask task;
+
+    @BeforeEach
+    void setUp() {
+        task = new LambdaBulkPrepareTask();
+        task.setUtils(new LambdaCloudDriverUtils());
+    }
+
+    private static Map<String, Object> function(String functionName) {
+        Map<String, Object> function = new HashMap<>();
+        function.put("functionName", functionName);
+        return function;
+    }
+
+    @SafeVarargs
+    private static StageExecution stage(Map<String, Object>... functions) {
+        Map<String, Object> context = new HashMap<>();
+        context.put("account", "prod");
+        context.put("region", "us-west-2");
+        context.put("s3bucket", "orders-artifacts");
+        context.put("s3key", "orders.zip");
+        context.put("memorySize", 256);
+        context.put("publish", true);
+        context.put("functions", Arrays.asList(functions));
+        return new StageExecutionImpl(new PipelineExecutionImpl(ExecutionType.PIPELINE, "orders"), "Aws.LambdaBulkDeploymentStage", context);
+    }
+
+    private static List<LambdaTargetDeployment> deployments(StageExecution stage) {
+        return (List<LambdaTargetDeployment>) stage.getContext().get(LambdaStageConstants.targetDeploymentsKey);
+    }
+
+    @Test
+    void functionsTakeTheStageSettingsUnlessTheyOverrideThem() {
+        Map<String, Object> worker = function("orders-worker");
+        worker.put("region", "us-east-1");
+        worker.put("memorySize", 1024);
+        worker.put("s3bucket", "orders-artifacts-us-east-1");
+        StageExecution stage = stage(function("orders-api"), worker);
+
+        TaskResult result = task.execute(stage);
+
+        assertEquals(ExecutionStatus.SUCCEEDED, result.getStatus());
+        List<LambdaTargetDeployment> deployments = deployments(stage);
+        assertEquals(2, deployments.size());
+        LambdaDeploymentInput api = deployments.get(0).getInput();
+        assertEquals("orders-api", api.getFunctionName());
+        assertEquals("prod", api.getAccount());
+        assertEquals("prod", api.getCredentials());
+        assertEquals("us-west-2", api.getRegion());
+        assertEquals("orders-artifacts", api.getS3bucket());
+        assertEquals("orders.zip", api.getS3key());
+        assertEquals(256, api.getMemorySize());
+        assertEquals("orders", api.getAppName());
+        assertEquals(LambdaTargetStep.LOOKUP, deployments.get(0).getStep());
+        LambdaDeploymentInput workerInput = deployments.get(1).getInput();
+        assertEquals("us-east-1", workerInput.getRegion());
+        assertEquals("orders-artifacts-us-east-1", workerInput.getS3bucket());
+        assertEquals("orders.zip", workerInput.getS3key());
+        assertEquals(1024, workerInput.getMemorySize());
+        assertEquals(Boolean.TRUE, workerInput.getPublish());
+    }
+
+    @Test
+    void aFunctionListedTwiceForTheSameTargetIsRejected() {
+        Map<String, Object> otherRegion = function("orders-api");
+        otherRegion.put("region", "us-east-1");
+        StageExecution stage = stage(function("orders-api"), otherRegion, function("orders-api"));
+
+        TaskResult result = task.execute(stage);
+
+        assertEquals(ExecutionStatus.TERMINAL, result.getStatus());
+        assertEquals("Function prod/us-west-2/orders-api is listed more than once", stage.getOutputs().get("failureMessage"));
+        assertNull(deployments(stage));
+    }
+
+    @Test
+    void everyProblemIsReportedTogether() {
+        Map<String, Object> noAccount = function("orders-worker");
+        noAccount.put("account", null);
+        StageExecution stage = stage(function("orders-api"), noAccount);
+        stage.getContext().put("failurePolicy", "whenever");
+
+        TaskResult result = task.execute(stage);
+
+        assertEquals(ExecutionStatus.TERMINAL, result.getStatus());
+        assertEquals("Unknown failurePolicy: whenever\nEvery function needs a functionName, an account and a region",
+                stage.getOutputs().get("failureMessage"));
+    }
+}
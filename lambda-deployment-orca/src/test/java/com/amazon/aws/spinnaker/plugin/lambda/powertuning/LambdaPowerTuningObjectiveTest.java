@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.powertuning;
+
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.model.LambdaPowerTuningResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class LambdaPowerTuningObjectiveTest {
+
+    private static LambdaPowerTuningResult result(int memorySize, double avgDurationMs, double costPerInvocation) {
+        return LambdaPowerTuningResult.builder()
+                .memorySize(memorySize)
+                .avgDurationMs(avgDurationMs)
+                .costPerInvocation(costPerInvocation)
+                .build();
+    }
+
+    // Doubling the memory roughly halves the duration up to 512 MB, then stops helping.
+    private static final List<LambdaPowerTuningResult> RESULTS = Arrays.asList(
+            result(128, 800, 2.0),
+            result(256, 380, 1.8),
+            result(512, 200, 2.1),
+            result(1024, 190, 3.9));
+
+    @Test
+    void costPicksTheCheapestSize() {
+        assertEquals(256, LambdaPowerTuningObjective.COST.pick(RESULTS).get().getMemorySize().intValue());
+    }
+
+    @Test
+    void speedPicksTheFastestSize() {
+        assertEquals(1024, LambdaPowerTuningObjective.SPEED.pick(RESULTS).get().getMemorySize().intValue());
+    }
+
+    @Test
+    void balancedPicksTheLowestSumOfRelativeCostAndDuration() {
+        // 128: 1.11 + 4.21, 256: 1.0 + 2.0, 512: 1.17 + 1.05, 1024: 2.17 + 1.0
+        assertEquals(512, LambdaPowerTuningObjective.BALANCED.pick(RESULTS).get().getMemorySize().intValue());
+    }
+
+    @Test
+    void tiesAreBrokenByTheOtherFigure() {
+        List<LambdaPowerTuningResult> tied = Arrays.asList(result(256, 300, 1.0), result(512, 150, 1.0));
+
+        assertEquals(512, LambdaPowerTuningObjective.COST.pick(tied).get().getMemorySize().intValue());
+    }
+
+    @Test
+    void noCandidatesHasNoOptimum() {
+        assertFalse(LambdaPowerTuningObjective.BALANCED.pick(Collections.emptyList()).isPresent());
+    }
+
+    @Test
+    void defaultsToCost() {
+        assertEquals(LambdaPowerTuningObjective.COST, LambdaPowerTuningObjective.fromString(null));
+        assertEquals(LambdaPowerTuningObjective.SPEED, LambdaPowerTuningObjective.fromString("speed"));
+    }
+}
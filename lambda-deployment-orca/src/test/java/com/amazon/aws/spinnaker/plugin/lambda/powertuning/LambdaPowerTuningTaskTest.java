@@ -0,0 +1,316 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.powertuning;
+
+import com.amazon.aws.spinnaker.plugin.lambda.delete.LambdaVersionPruner;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaDeleteStageInput;
+import com.amazon.aws.spinnaker.plugin.lambda.delete.model.LambdaVersionPruneResult;
+import com.amazon.aws.spinnaker.plugin.lambda.invoke.model.LambdaInvocationReport;
+import com.amazon.aws.spinnaker.plugin.lambda.powertuning.model.LambdaPowerTuningResult;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaInvokeResult;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverResponse;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaGetInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverResultObject;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaCloudDriverTaskResults;
+import com.amazon.aws.spinnaker.plugin.lambda.verify.model.LambdaVerificationStatusOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.spinnaker.orca.api.pipeline.TaskResult;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionStatus;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionType;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
+import com.netflix.spinnaker.orca.pipeline.model.PipelineExecutionImpl;
+import com.netflix.spinnaker.orca.pipeline.model.StageExecutionImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LambdaPowerTuningTaskTest {
+    private static final String CLOUDDRIVER = "http://clouddriver";
+    private static final String UPDATE_CONFIG_PATH = "/aws/ops/updateLambdaFunctionConfiguration";
+    private static final String PUBLISH_VERSION_PATH = "/aws/ops/publishLambdaFunctionVersion";
+    private static final String INVOKE_PATH = "/aws/ops/invokeLambdaFunction";
+    private static final String REPORT_LOG = "START RequestId: 7e2d Version: 7\n"
+            + "END RequestId: 7e2d\n"
+            + "REPORT RequestId: 7e2d\tDuration: 40.00 ms\tBilled Duration: 40 ms\tMemory Size: 512 MB\tMax Memory Used: 96 MB\t\n";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private FakeCloudDriver cloudDriver;
+    private LambdaPowerTuningTask task;
+
+    @BeforeEach
+    void setUp() {
+        cloudDriver = new FakeCloudDriver();
+        task = new LambdaPowerTuningTask();
+        task.setProps(new CloudDriverConfigurationProperties() {
+            @Override
+            public String getCloudDriverBaseUrl() {
+                return CLOUDDRIVER;
+            }
+        });
+        task.setUtils(cloudDriver.utils);
+        task.setAsyncUtils(cloudDriver.asyncUtils);
+        task.setPruner(cloudDriver.pruner);
+        task.setDefaultInvocationCount(10);
+        task.setPricePerGbSecond(0.0000166667);
+        task.setPricePerRequest(0.0000002);
+    }
+
+    private static StageExecution stage() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("account", "prod");
+        context.put("region", "us-west-2");
+        context.put("functionName", "orders-processor");
+        context.put("memorySizes", Collections.singletonList(512));
+        context.put("invocationCount", 2);
+        return new StageExecutionImpl(new PipelineExecutionImpl(ExecutionType.PIPELINE, "orders"), "Aws.LambdaPowerTuningStage", context);
+    }
+
+    private Map<?, ?> lastBody(String path) throws Exception {
+        List<String> bodies = cloudDriver.posts.get(path);
+        return objectMapper.readValue(bodies.get(bodies.size() - 1), Map.class);
+    }
+
+    @Test
+    void measuresEverySizeAndSetsTheFunctionBack() throws Exception {
+        StageExecution stage = stage();
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ExecutionStatus.RUNNING, task.execute(stage).getStatus());
+        }
+        TaskResult result = task.execute(stage);
+
+        assertEquals(ExecutionStatus.SUCCEEDED, result.getStatus());
+        assertEquals(Arrays.asList("/update", "/publish", "/invoke", "/invoke", "/update"), cloudDriver.operations);
+        assertEquals(128, ((Number) lastBody(UPDATE_CONFIG_PATH).get("memorySize")).intValue());
+        assertEquals(128, cloudDriver.memorySize);
+        assertEquals(Collections.singletonList("7"), cloudDriver.prunedVersions);
+        assertEquals(128, stage.getOutputs().get("memorySize"));
+        assertNull(stage.getContext().get(LambdaStageConstants.powerTuningStateKey));
+
+        List<?> results = (List<?>) stage.getOutputs().get("powerTuningResults");
+        LambdaPowerTuningResult measured = (LambdaPowerTuningResult) results.get(0);
+        assertEquals(1, results.size());
+        assertEquals(512, measured.getMemorySize().intValue());
+        assertEquals(2, measured.getReported().intValue());
+        assertEquals(40.0, measured.getAvgDurationMs());
+    }
+
+    @Test
+    void invokesTheTestVersionWithThePayload() throws Exception {
+        StageExecution stage = stage();
+        stage.getContext().put("payload", "{\"orderId\": 1}");
+
+        for (int i = 0; i < 3; i++) {
+            task.execute(stage);
+        }
+
+        assertEquals("7", lastBody(INVOKE_PATH).get("qualifier"));
+        assertEquals("{\"orderId\": 1}", lastBody(INVOKE_PATH).get("payload"));
+        assertEquals(512, ((Number) lastBody(UPDATE_CONFIG_PATH).get("memorySize")).intValue());
+        assertEquals("r2", lastBody(PUBLISH_VERSION_PATH).get("revisionId"));
+    }
+
+    @Test
+    void timeoutSetsTheFunctionBackAndDeletesTheTestVersions() throws Exception {
+        StageExecution stage = stage();
+        for (int i = 0; i < 3; i++) {
+            task.execute(stage);
+        }
+
+        TaskResult result = task.onTimeout(stage);
+
+        assertEquals(ExecutionStatus.TERMINAL, result.getStatus());
+        assertEquals("Power tuning timed out during INVOKE; the function was set back to 128 MB", stage.getOutputs().get("failureMessage"));
+        assertEquals(128, ((Number) lastBody(UPDATE_CONFIG_PATH).get("memorySize")).intValue());
+        assertEquals(128, cloudDriver.memorySize);
+        assertEquals(Collections.singletonList("7"), cloudDriver.prunedVersions);
+        assertNull(stage.getContext().get(LambdaStageConstants.powerTuningStateKey));
+    }
+
+    @Test
+    void cancelDeletesAVersionThatWasStillBeingPublished() throws Exception {
+        StageExecution stage = stage();
+        for (int i = 0; i < 2; i++) {
+            task.execute(stage);
+        }
+
+        task.onCancel(stage);
+
+        assertEquals(Arrays.asList("/update", "/publish", "/update"), cloudDriver.operations);
+        assertEquals(128, ((Number) lastBody(UPDATE_CONFIG_PATH).get("memorySize")).intValue());
+        assertEquals(Collections.singletonList("7"), cloudDriver.prunedVersions);
+    }
+
+    @Test
+    void cancelBeforeAnythingWasPublishedOnlySetsTheFunctionBack() throws Exception {
+        StageExecution stage = stage();
+        task.execute(stage);
+
+        task.onCancel(stage);
+
+        assertEquals(Arrays.asList("/update", "/update"), cloudDriver.operations);
+        assertEquals(128, cloudDriver.memorySize);
+        assertNull(cloudDriver.prunedVersions);
+    }
+
+    @Test
+    void timeoutBeforeTheFirstPollChangesNothing() {
+        StageExecution stage = stage();
+
+        TaskResult result = task.onTimeout(stage);
+
+        assertEquals(ExecutionStatus.TERMINAL, result.getStatus());
+        assertEquals(Collections.emptyList(), cloudDriver.operations);
+    }
+
+    @Test
+    void measureAveragesTheReportsAndPricesTheBilledDuration() {
+        List<LambdaInvocationReport> reports = Arrays.asList(
+                LambdaInvocationReport.builder().durationMs(98.5).billedDurationMs(100.0).build(),
+                LambdaInvocationReport.builder().durationMs(290.0).billedDurationMs(300.0).initDurationMs(150.0).build());
+
+        LambdaPowerTuningResult result = task.measure(1024, 3, 1, reports);
+
+        assertEquals(3, result.getInvocations().intValue());
+        assertEquals(1, result.getErrors().intValue());
+        assertEquals(2, result.getReported().intValue());
+        assertEquals(1, result.getColdStarts().intValue());
+        assertEquals(194.25, result.getAvgDurationMs());
+        assertEquals(290.0, result.getP95DurationMs());
+        assertEquals(200.0, result.getAvgBilledDurationMs());
+        // 0.2 seconds at 1 GB plus the request charge
+        assertEquals(0.2 * 0.0000166667 + 0.0000002, result.getCostPerInvocation(), 1e-15);
+    }
+
+    @Test
+    void measureWithoutReportsHasNoDurationOrCost() {
+        LambdaPowerTuningResult result = task.measure(256, 2, 2, Collections.emptyList());
+
+        assertEquals(0, result.getReported().intValue());
+        assertNull(result.getAvgDurationMs());
+        assertNull(result.getCostPerInvocation());
+        assertEquals(2, result.getErrors().intValue());
+    }
+
+    /**
+     * A function at 128 MB whose operations complete as soon as they are submitted: configuration updates
+     * change the memory size and revision, publishing creates version 7 and invocations report 40 ms.
+     */
+    private static class FakeCloudDriver {
+        final Map<String, List<String>> posts = new HashMap<>();
+        final List<String> operations = new ArrayList<>();
+        final Map<String, LambdaCloudDriverResultObject> tasks = new HashMap<>();
+        int memorySize = 128;
+        int revision = 1;
+        List<String> prunedVersions;
+
+        final LambdaCloudDriverUtils utils = new LambdaCloudDriverUtils() {
+            @Override
+            public LambdaDefinition retrieveLatestLambda(LambdaGetInput inp) {
+                LambdaDefinition lf = LambdaDefinition.builder()
+                        .state("Active")
+                        .revisions(Collections.singletonMap("r1", "1"))
+                        .build();
+                lf.setFunctionName(inp.getFunctionName());
+                lf.setMemorySize(memorySize);
+                lf.setRevisionId("r" + revision);
+                lf.setTimeout(30);
+                return lf;
+            }
+
+            @Override
+            public void refreshFunctionCache(String account, String region, String appName, String functionName) {
+            }
+        };
+
+        final LambdaCloudDriverAsyncUtils asyncUtils = new LambdaCloudDriverAsyncUtils() {
+            @Override
+            public CompletableFuture<LambdaCloudDriverResponse> postToCloudDriverAsync(String endPointUrl, String jsonString, String account, String region) {
+                String path = endPointUrl.substring(CLOUDDRIVER.length());
+                posts.computeIfAbsent(path, x -> new ArrayList<>()).add(jsonString);
+                LambdaCloudDriverResultObject result;
+                switch (path) {
+                    case UPDATE_CONFIG_PATH:
+                        operations.add("/update");
+                        memorySize = readMemorySize(jsonString);
+                        revision++;
+                        result = LambdaCloudDriverResultObject.builder().revisionId("r" + revision).build();
+                        break;
+                    case PUBLISH_VERSION_PATH:
+                        operations.add("/publish");
+                        result = LambdaCloudDriverResultObject.builder().version("7").revisionId("r" + revision).build();
+                        break;
+                    default:
+                        operations.add("/invoke");
+                        String log = Base64.getEncoder().encodeToString(REPORT_LOG.getBytes(StandardCharsets.UTF_8));
+                        result = LambdaCloudDriverResultObject.builder()
+                                .invokeResult(LambdaInvokeResult.builder().statusCode(200).logResult(log).build())
+                                .build();
+                }
+                String resourceUri = "/task/" + tasks.size();
+                tasks.put(CLOUDDRIVER + resourceUri, result);
+                return CompletableFuture.completedFuture(LambdaCloudDriverResponse.builder().resourceUri(resourceUri).build());
+            }
+
+            @Override
+            public CompletableFuture<LambdaCloudDriverTaskResults> verifyStatusAsync(String endPoint) {
+                return CompletableFuture.completedFuture(LambdaCloudDriverTaskResults.builder()
+                        .status(LambdaVerificationStatusOutput.builder().complete(true).completed(true).build())
+                        .results(tasks.get(endPoint))
+                        .build());
+            }
+        };
+
+        private int readMemorySize(String jsonString) {
+            try {
+                return objectMapper.readTree(jsonString).get("memorySize").asInt();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        final LambdaVersionPruner pruner = new LambdaVersionPruner() {
+            @Override
+            public LambdaVersionPruneResult prune(LambdaDeleteStageInput inp, LambdaDefinition lf, Collection<String> versions) {
+                prunedVersions = new ArrayList<>(versions);
+                return LambdaVersionPruneResult.builder()
+                        .deletedVersions(prunedVersions)
+                        .urlList(Collections.singletonList(CLOUDDRIVER + "/task/delete"))
+                        .build();
+            }
+        };
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaBlueGreenHealthCheckResult;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaBlueGreenSample;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaCloudDriverInvokeOperationResults;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaInvokeResult;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaPipelineArtifact;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverAsyncUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaStageConstants;
+import com.netflix.spinnaker.orca.api.pipeline.models.ExecutionType;
+import com.netflix.spinnaker.orca.api.pipeline.models.StageExecution;
+import com.netflix.spinnaker.orca.pipeline.model.PipelineExecutionImpl;
+import com.netflix.spinnaker.orca.pipeline.model.StageExecutionImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlueGreenDeploymentStrategyTest {
+    private static final String EXPECTED_OUTPUT = "{\"status\": \"ok\"}";
+
+    private final Map<String, LambdaCloudDriverInvokeOperationResults> invocations = new HashMap<>();
+    private final Map<String, Object> healthCheck = new HashMap<>();
+    private final List<LambdaBlueGreenSample> samples = new ArrayList<>();
+    private BlueGreenDeploymentStrategy strategy;
+
+    @BeforeEach
+    void setUp() {
+        strategy = new BlueGreenDeploymentStrategy();
+        strategy.utils = new LambdaCloudDriverUtils() {
+            @Override
+            public String getPipelinesArtifactContent(LambdaPipelineArtifact pipelineArtifact) {
+                return pipelineArtifact.getReference();
+            }
+        };
+        strategy.asyncUtils = new LambdaCloudDriverAsyncUtils() {
+            @Override
+            public CompletableFuture<LambdaCloudDriverInvokeOperationResults> getLambdaInvokeResultsAsync(String endPoint) {
+                CompletableFuture<LambdaCloudDriverInvokeOperationResults> result = new CompletableFuture<>();
+                if (invocations.containsKey(endPoint)) {
+                    result.complete(invocations.get(endPoint));
+                } else {
+                    result.completeExceptionally(new RuntimeException("Task not found"));
+                }
+                return result;
+            }
+        };
+    }
+
+    private static Map<String, Object> artifact(String content) {
+        return Collections.singletonMap("artifact", Collections.singletonMap("reference", content));
+    }
+
+    private StageExecution stage() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("payloadArtifact", artifact("{}"));
+        context.put("outputArtifact", artifact(EXPECTED_OUTPUT));
+        context.put(LambdaStageConstants.healthCheckKey, healthCheck);
+        context.put(LambdaStageConstants.blueGreenSamplesKey, samples);
+        return new StageExecutionImpl(new PipelineExecutionImpl(ExecutionType.PIPELINE, "orders"), "Aws.LambdaTrafficRoutingStage", context);
+    }
+
+    private void sample(String body, Double durationMs) {
+        sample(0, body, durationMs);
+    }
+
+    private void sample(int caseIndex, String body, Double durationMs) {
+        String url = "http://clouddriver/task/" + samples.size();
+        samples.add(LambdaBlueGreenSample.builder().url(url).caseIndex(caseIndex).build());
+        LambdaInvokeResult.LambdaInvokeResultBuilder invokeResult = LambdaInvokeResult.builder().statusCode(200);
+        if (durationMs != null) {
+            String log = String.format("START RequestId: 7e2d Version: 7\nEND RequestId: 7e2d\n"
+                    + "REPORT RequestId: 7e2d\tDuration: %.2f ms\tBilled Duration: 100 ms\tMemory Size: 128 MB\tMax Memory Used: 64 MB\t\n", durationMs);
+            invokeResult.logResult(Base64.getEncoder().encodeToString(log.getBytes(StandardCharsets.UTF_8)));
+        }
+        invocations.put(url, LambdaCloudDriverInvokeOperationResults.builder()
+                .body(body)
+                .invokeResult(invokeResult.build())
+                .build());
+    }
+
+    private void unreadableSample() {
+        samples.add(LambdaBlueGreenSample.builder().url("http://clouddriver/task/lost").caseIndex(0).build());
+    }
+
+    @Test
+    void passesWhenTheRatioOfMatchingSamplesIsMet() {
+        healthCheck.put("passRatio", 0.75);
+        sample(EXPECTED_OUTPUT, 12.0);
+        sample("{\"status\":\"ok\"}", 14.0);
+        sample(" {\"status\" : \"ok\"}\n", 16.0);
+        sample("{\"status\": \"error\"}", 18.0);
+
+        LambdaBlueGreenHealthCheckResult result = strategy.verifySamples(stage());
+
+        assertTrue(result.getPassed());
+        assertEquals(4, result.getSamples().intValue());
+        assertEquals(3, result.getPassedSamples().intValue());
+        assertEquals(0.75, result.getPassRatio());
+        assertEquals(0.75, result.getRequiredPassRatio());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(4, result.getDurationMs().get("count"));
+    }
+
+    @Test
+    void everySampleMustPassByDefault() {
+        sample(EXPECTED_OUTPUT, 12.0);
+        sample(EXPECTED_OUTPUT, 12.0);
+        sample("{\"status\": \"error\"}", 12.0);
+
+        LambdaBlueGreenHealthCheckResult result = strategy.verifySamples(stage());
+
+        assertFalse(result.getPassed());
+        assertEquals(0.67, result.getPassRatio());
+        assertEquals(1.0, result.getRequiredPassRatio());
+    }
+
+    @Test
+    void aSampleWhoseResultCannotBeReadFails() {
+        healthCheck.put("passRatio", 0.5);
+        sample(EXPECTED_OUTPUT, 12.0);
+        unreadableSample();
+
+        LambdaBlueGreenHealthCheckResult result = strategy.verifySamples(stage());
+
+        assertTrue(result.getPassed());
+        assertEquals(1, result.getPassedSamples().intValue());
+        assertEquals(0.5, result.getPassRatio());
+    }
+
+    @Test
+    void samplesOverTheDurationCeilingOrWithoutAReportFail() {
+        healthCheck.put("maxDurationMs", 100.0);
+        healthCheck.put("passRatio", 0.5);
+        sample(EXPECTED_OUTPUT, 80.0);
+        sample(EXPECTED_OUTPUT, 120.5);
+        sample(EXPECTED_OUTPUT, null);
+
+        LambdaBlueGreenHealthCheckResult result = strategy.verifySamples(stage());
+
+        assertFalse(result.getPassed());
+        assertEquals(1, result.getPassedSamples().intValue());
+        assertEquals(Arrays.asList(
+                "BlueGreenDeployment failed: sample 1 took 120.50ms, above the ceiling of 100.00ms",
+                "BlueGreenDeployment failed: no REPORT line to measure the duration of sample 2"), result.getFailures());
+    }
+
+    @Test
+    void eachSampleIsComparedWithItsOwnCase() {
+        healthCheck.put("cases", Arrays.asList(
+                Collections.singletonMap("outputArtifact", artifact("{\"total\": 1}")),
+                Collections.singletonMap("outputArtifact", artifact("{\"total\": 2}"))));
+        sample(0, "{\"total\": 1}", 12.0);
+        sample(1, "{\"total\": 2}", 12.0);
+        sample(0, "{\"total\": 1}", 12.0);
+
+        LambdaBlueGreenHealthCheckResult result = strategy.verifySamples(stage());
+
+        assertTrue(result.getPassed());
+        assertEquals(3, result.getPassedSamples().intValue());
+    }
+
+    @Test
+    void noSamplesNeverPass() {
+        healthCheck.put("passRatio", 0.0);
+
+        LambdaBlueGreenHealthCheckResult result = strategy.verifySamples(stage());
+
+        assertFalse(result.getPassed());
+        assertEquals(0.0, result.getPassRatio());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaProgressiveSchedule;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProgressiveDeploymentStrategyTest {
+
+    private static LambdaProgressiveSchedule schedule(String progressiveType, Integer stepPercent) {
+        return LambdaProgressiveSchedule.builder().progressiveType(progressiveType).stepPercent(stepPercent).build();
+    }
+
+    @Test
+    void canaryShiftsOneStepThenEverything() {
+        assertEquals(Arrays.asList(25, 100), ProgressiveDeploymentStrategy.getSteps(schedule("CANARY", 25)));
+    }
+
+    @Test
+    void defaultsToACanaryOfTenPercent() {
+        assertEquals(Arrays.asList(10, 100), ProgressiveDeploymentStrategy.getSteps(schedule(null, null)));
+    }
+
+    @Test
+    void linearAddsTheStepUntilEverything() {
+        assertEquals(Arrays.asList(30, 60, 90, 100), ProgressiveDeploymentStrategy.getSteps(schedule("linear", 30)));
+        assertEquals(Arrays.asList(25, 50, 75, 100), ProgressiveDeploymentStrategy.getSteps(schedule("LINEAR", 25)));
+    }
+
+    @Test
+    void aStepOfEverythingIsASingleStep() {
+        assertEquals(Collections.singletonList(100), ProgressiveDeploymentStrategy.getSteps(schedule("LINEAR", 100)));
+        assertEquals(Collections.singletonList(100), ProgressiveDeploymentStrategy.getSteps(schedule("CANARY", 100)));
+    }
+
+    @Test
+    void trafficStepsAreUsedAsGivenAndFinishWithEverything() {
+        LambdaProgressiveSchedule schedule = LambdaProgressiveSchedule.builder()
+                .progressiveType("LINEAR")
+                .stepPercent(50)
+                .trafficSteps(Arrays.asList(1, 5, 50))
+                .build();
+
+        assertEquals(Arrays.asList(1, 5, 50, 100), ProgressiveDeploymentStrategy.getSteps(schedule));
+    }
+
+    @Test
+    void trafficStepsEndingWithEverythingAreNotExtended() {
+        LambdaProgressiveSchedule schedule = LambdaProgressiveSchedule.builder().trafficSteps(Arrays.asList(20, 100)).build();
+
+        assertEquals(Arrays.asList(20, 100), ProgressiveDeploymentStrategy.getSteps(schedule));
+    }
+
+    @Test
+    void trafficStepsMustIncreaseUpToEverything() {
+        assertThrows(IllegalArgumentException.class, () -> ProgressiveDeploymentStrategy.getSteps(
+                LambdaProgressiveSchedule.builder().trafficSteps(Arrays.asList(50, 20)).build()));
+        assertThrows(IllegalArgumentException.class, () -> ProgressiveDeploymentStrategy.getSteps(
+                LambdaProgressiveSchedule.builder().trafficSteps(Arrays.asList(10, 10)).build()));
+        assertThrows(IllegalArgumentException.class, () -> ProgressiveDeploymentStrategy.getSteps(
+                LambdaProgressiveSchedule.builder().trafficSteps(Arrays.asList(0, 50)).build()));
+        assertThrows(IllegalArgumentException.class, () -> ProgressiveDeploymentStrategy.getSteps(
+                LambdaProgressiveSchedule.builder().trafficSteps(Arrays.asList(50, 120)).build()));
+    }
+
+    @Test
+    void rejectsAStepOutsideOneToEverything() {
+        assertThrows(IllegalArgumentException.class, () -> ProgressiveDeploymentStrategy.getSteps(schedule("LINEAR", 0)));
+        assertThrows(IllegalArgumentException.class, () -> ProgressiveDeploymentStrategy.getSteps(schedule("CANARY", 101)));
+    }
+
+    @Test
+    void rejectsAnUnknownType() {
+        assertThrows(IllegalArgumentException.class, () -> ProgressiveDeploymentStrategy.getSteps(schedule("EXPONENTIAL", 10)));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaCloudMetricStatistics;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricQuery;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaVersionMetrics;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaCloudDriverUtils;
+import com.netflix.spinnaker.orca.clouddriver.config.CloudDriverConfigurationProperties;
+import okhttp3.HttpUrl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CloudDriverMetricProviderTest {
+    private final Map<String, LambdaCloudMetricStatistics> statistics = new HashMap<>();
+    private final List<HttpUrl> requests = new ArrayList<>();
+    private CloudDriverMetricProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = new CloudDriverMetricProvider();
+        provider.periodSeconds = 60;
+        provider.props = new CloudDriverConfigurationProperties() {
+            @Override
+            public String getCloudDriverBaseUrl() {
+                return "http://clouddriver";
+            }
+        };
+        provider.utils = new LambdaCloudDriverUtils() {
+            @Override
+            public <T> T getFromCloudDriver(String endPoint, Class<T> type) {
+                HttpUrl url = HttpUrl.parse(endPoint);
+                requests.add(url);
+                String metricName = url.pathSegments().get(4);
+                return type.cast(statistics.getOrDefault(metricName,
+                        LambdaCloudMetricStatistics.builder().datapoints(Collections.emptyList()).build()));
+            }
+        };
+    }
+
+    private static LambdaCloudMetricStatistics.Datapoint sum(double sum) {
+        return LambdaCloudMetricStatistics.Datapoint.builder().sum(sum).build();
+    }
+
+    private static LambdaCloudMetricStatistics.Datapoint maximum(double maximum) {
+        return LambdaCloudMetricStatistics.Datapoint.builder().maximum(maximum).build();
+    }
+
+    private static LambdaCloudMetricStatistics datapoints(LambdaCloudMetricStatistics.Datapoint... datapoints) {
+        return LambdaCloudMetricStatistics.builder().datapoints(Arrays.asList(datapoints)).build();
+    }
+
+    private static LambdaMetricQuery query(String aliasName) {
+        return LambdaMetricQuery.builder()
+                .account("prod")
+                .region("us-west-2")
+                .functionName("orders-processor")
+                .aliasName(aliasName)
+                .qualifier("7")
+                .startTime(1604600400000L)
+                .endTime(1604600700000L)
+                .build();
+    }
+
+    @Test
+    void sumsCountsAndReadsOnlyTheMaximumDuration() {
+        statistics.put("Invocations", datapoints(sum(12), sum(7)));
+        statistics.put("Errors", datapoints(sum(1), sum(0)));
+        statistics.put("Duration", datapoints(maximum(210.5), maximum(480.25)));
+
+        LambdaVersionMetrics metrics = provider.getMetrics(query("live"));
+
+        assertEquals(19.0, metrics.getInvocations());
+        assertEquals(1.0, metrics.getErrors());
+        assertEquals(0.0, metrics.getThrottles());
+        assertEquals(480.25, metrics.getMaxDurationMs());
+        assertNull(metrics.getP99DurationMs());
+    }
+
+    @Test
+    void noDatapointsAreZeroCountsAndNoDuration() {
+        LambdaVersionMetrics metrics = provider.getMetrics(query("live"));
+
+        assertEquals(0.0, metrics.getInvocations());
+        assertNull(metrics.getMaxDurationMs());
+    }
+
+    @Test
+    void queriesTheVersionThroughTheAlias() {
+        provider.getMetrics(query("live"));
+
+        HttpUrl invocations = requests.get(0);
+        assertEquals("/cloudMetrics/aws/prod/us-west-2/Invocations/statistics", invocations.encodedPath());
+        assertEquals("AWS/Lambda", invocations.queryParameter("namespace"));
+        assertEquals("Sum", invocations.queryParameter("statistics"));
+        assertEquals("60", invocations.queryParameter("period"));
+        assertEquals("1604600400000", invocations.queryParameter("startTime"));
+        assertEquals("1604600700000", invocations.queryParameter("endTime"));
+        assertEquals("orders-processor", invocations.queryParameter("FunctionName"));
+        assertEquals("orders-processor:live", invocations.queryParameter("Resource"));
+        assertEquals("7", invocations.queryParameter("ExecutedVersion"));
+        assertEquals("Maximum", requests.get(3).queryParameter("statistics"));
+    }
+
+    @Test
+    void queriesAVersionWithoutAnAliasByItsQualifiedName() {
+        provider.getMetrics(query(null));
+
+        assertEquals("orders-processor:7", requests.get(0).queryParameter("Resource"));
+        assertNull(requests.get(0).queryParameter("ExecutedVersion"));
+    }
+}
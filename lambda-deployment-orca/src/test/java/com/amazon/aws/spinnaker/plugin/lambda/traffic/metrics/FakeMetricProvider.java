@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricQuery;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaVersionMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Returns the metrics it was given and records the queries, or throws if it was given none.
+ */
+class FakeMetricProvider implements MetricProvider {
+    final List<LambdaMetricQuery> queries = new ArrayList<>();
+    private final String name;
+    private LambdaVersionMetrics metrics;
+
+    FakeMetricProvider(String name) {
+        this.name = name;
+    }
+
+    FakeMetricProvider returning(double invocations, double errors, double throttles, Double p99DurationMs) {
+        metrics = LambdaVersionMetrics.builder()
+                .invocations(invocations)
+                .errors(errors)
+                .throttles(throttles)
+                .p99DurationMs(p99DurationMs)
+                .build();
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public LambdaVersionMetrics getMetrics(LambdaMetricQuery query) {
+        queries.add(query);
+        if (metrics == null) {
+            throw new RuntimeException("CloudWatch is unavailable");
+        }
+        return metrics;
+    }
+}
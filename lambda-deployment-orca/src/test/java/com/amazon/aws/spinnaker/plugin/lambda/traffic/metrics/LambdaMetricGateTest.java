@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricGateConfig;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricGateDecision;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaMetricQuery;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaVersionMetrics;
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.model.LambdaWeightedStrategyInput;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LambdaMetricGateTest {
+    private static final LambdaMetricGateConfig ALL_THRESHOLDS = LambdaMetricGateConfig.builder()
+            .maxErrorRate(0.05)
+            .maxThrottles(0.0)
+            .maxP99DurationMs(500.0)
+            .maxDurationMs(1000.0)
+            .minInvocations(20)
+            .build();
+
+    private FakeMetricProvider cloudDriver;
+    private FakeMetricProvider cloudWatch;
+    private LambdaMetricGate gate;
+
+    @BeforeEach
+    void setUp() {
+        cloudDriver = new FakeMetricProvider("clouddriver");
+        cloudWatch = new FakeMetricProvider("cloudwatch");
+        gate = new LambdaMetricGate();
+        gate.providers = Arrays.asList(cloudDriver, cloudWatch);
+        gate.providerName = "cloudwatch";
+    }
+
+    private static LambdaVersionMetrics metrics(double invocations, double errors, double throttles, Double p99DurationMs) {
+        return LambdaVersionMetrics.builder()
+                .invocations(invocations)
+                .errors(errors)
+                .throttles(throttles)
+                .p99DurationMs(p99DurationMs)
+                .build();
+    }
+
+    private static LambdaWeightedStrategyInput input() {
+        return LambdaWeightedStrategyInput.builder()
+                .account("prod")
+                .region("us-west-2")
+                .appName("orders")
+                .functionName("processor")
+                .aliasName("live")
+                .majorFunctionVersion("6")
+                .minorFunctionVersion("7")
+                .build();
+    }
+
+    @Test
+    void metricsWithinEveryThresholdHaveNoBreaches() {
+        assertEquals(Collections.emptyList(), LambdaMetricGate.findBreaches(ALL_THRESHOLDS, metrics(100, 5, 0, 480.0)));
+    }
+
+    @Test
+    void reportsEveryThresholdThatIsExceeded() {
+        List<String> breaches = LambdaMetricGate.findBreaches(ALL_THRESHOLDS, metrics(100, 6, 2, 750.5));
+
+        assertEquals(Arrays.asList(
+                "error rate 0.0600 is above 0.0500",
+                "2 throttles is above 0",
+                "p99 duration 750.50ms is above 500.00ms"), breaches);
+    }
+
+    @Test
+    void checksTheMaximumDurationOnItsOwnThreshold() {
+        LambdaVersionMetrics metrics = LambdaVersionMetrics.builder()
+                .invocations(100.0)
+                .errors(0.0)
+                .throttles(0.0)
+                .maxDurationMs(1250.0)
+                .build();
+
+        assertEquals(Collections.singletonList("max duration 1250.00ms is above 1000.00ms"),
+                LambdaMetricGate.findBreaches(ALL_THRESHOLDS, metrics));
+    }
+
+    @Test
+    void errorRateIsNotJudgedBelowMinInvocations() {
+        assertEquals(Collections.emptyList(), LambdaMetricGate.findBreaches(ALL_THRESHOLDS, metrics(10, 10, 0, null)));
+    }
+
+    @Test
+    void throttlesBreachWithoutAnyInvocations() {
+        assertEquals(Collections.singletonList("40 throttles is above 0"),
+                LambdaMetricGate.findBreaches(ALL_THRESHOLDS, metrics(0, 0, 40, null)));
+    }
+
+    @Test
+    void unsetThresholdsAreNotChecked() {
+        LambdaMetricGateConfig errorsOnly = LambdaMetricGateConfig.builder().maxErrorRate(0.0).build();
+
+        assertEquals(Collections.emptyList(), LambdaMetricGate.findBreaches(errorsOnly, metrics(1, 0, 99, 9999.0)));
+        assertEquals(Collections.singletonList("error rate 1.0000 is above 0.0000"),
+                LambdaMetricGate.findBreaches(errorsOnly, metrics(1, 1, 0, null)));
+    }
+
+    @Test
+    void minInvocationsDefaultsToOne() {
+        LambdaMetricGateConfig config = LambdaMetricGateConfig.builder().maxErrorRate(0.1).build();
+
+        assertFalse(LambdaMetricGate.hasEnoughInvocations(config, metrics(0, 0, 0, null)));
+        assertTrue(LambdaMetricGate.hasEnoughInvocations(config, metrics(1, 0, 0, null)));
+        assertFalse(LambdaMetricGate.hasEnoughInvocations(config, LambdaVersionMetrics.builder().build()));
+    }
+
+    @Test
+    void evaluatesTheMinorVersionThroughTheAliasWithTheConfiguredProvider() {
+        cloudWatch.returning(100, 1, 0, 120.0);
+
+        LambdaMetricGateDecision decision = gate.evaluate(ALL_THRESHOLDS, input(), 1000L);
+
+        assertEquals("cloudwatch", decision.getProvider());
+        assertFalse(decision.getBreached());
+        assertFalse(decision.getNoData());
+        assertEquals(100.0, decision.getMetrics().getInvocations());
+        assertEquals(Collections.emptyList(), cloudDriver.queries);
+        LambdaMetricQuery query = cloudWatch.queries.get(0);
+        assertEquals("prod", query.getAccount());
+        assertEquals("us-west-2", query.getRegion());
+        assertEquals("orders-processor", query.getFunctionName());
+        assertEquals("live", query.getAliasName());
+        assertEquals("7", query.getQualifier());
+        assertEquals(1000L, query.getStartTime().longValue());
+    }
+
+    @Test
+    void aStepWithoutInvocationsIsNoDataRatherThanAPass() {
+        cloudWatch.returning(0, 0, 0, null);
+
+        LambdaMetricGateDecision decision = gate.evaluate(ALL_THRESHOLDS, input(), 1000L);
+
+        assertFalse(decision.getBreached());
+        assertTrue(decision.getNoData());
+    }
+
+    @Test
+    void aBreachIsReportedEvenWithoutEnoughInvocations() {
+        cloudWatch.returning(3, 0, 5, null);
+
+        LambdaMetricGateDecision decision = gate.evaluate(ALL_THRESHOLDS, input(), 1000L);
+
+        assertTrue(decision.getBreached());
+        assertFalse(decision.getNoData());
+        assertEquals(Collections.singletonList("5 throttles is above 0"), decision.getBreaches());
+    }
+
+    @Test
+    void unreadableMetricsHaveNoDecision() {
+        assertNull(gate.evaluate(ALL_THRESHOLDS, input(), 1000L));
+    }
+
+    @Test
+    void anUnknownProviderIsAConfigurationError() {
+        gate.providerName = "datadog";
+
+        assertThrows(IllegalStateException.class, () -> gate.evaluate(ALL_THRESHOLDS, input(), 1000L));
+    }
+}
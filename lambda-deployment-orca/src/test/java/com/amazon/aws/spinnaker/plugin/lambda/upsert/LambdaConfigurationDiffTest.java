@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.upsert;
+
+import com.amazon.aws.spinnaker.plugin.lambda.upsert.model.LambdaDeploymentInput;
+import com.amazon.aws.spinnaker.plugin.lambda.utils.LambdaDefinition;
+import com.amazonaws.services.lambda.model.EnvironmentResponse;
+import com.amazonaws.services.lambda.model.Layer;
+import com.amazonaws.services.lambda.model.VpcConfigResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LambdaConfigurationDiffTest {
+
+    private static LambdaDefinition deployed() {
+        LambdaDefinition lf = LambdaDefinition.builder()
+                .tags(new HashMap<>(Collections.singletonMap("team", "payments")))
+                .build();
+        lf.setHandler("index.handler");
+        lf.setRuntime("nodejs12.x");
+        lf.setRole("arn:aws:iam::123456789012:role/lambda");
+        lf.setMemorySize(256);
+        lf.setTimeout(30);
+        lf.setEnvironment(new EnvironmentResponse().withVariables(Collections.singletonMap("STAGE", "prod")));
+        lf.setLayers(Collections.singletonList(new Layer().withArn("arn:aws:lambda:us-west-2:123456789012:layer:deps:3")));
+        lf.setVpcConfig(new VpcConfigResponse().withSubnetIds("subnet-a", "subnet-b").withSecurityGroupIds("sg-1"));
+        return lf;
+    }
+
+    private static LambdaDeploymentInput.LambdaDeploymentInputBuilder requested() {
+        return LambdaDeploymentInput.builder()
+                .handler("index.handler")
+                .runtime("nodejs12.x")
+                .role("arn:aws:iam::123456789012:role/lambda")
+                .memorySize(256)
+                .timeout(30)
+                .envVariables(new HashMap<>(Collections.singletonMap("STAGE", "prod")))
+                .layers(Collections.singletonList("arn:aws:lambda:us-west-2:123456789012:layer:deps:3"))
+                .subnetIds(Arrays.asList("subnet-b", "subnet-a"))
+                .securityGroupIds(Collections.singletonList("sg-1"));
+    }
+
+    @Test
+    void matchingConfigurationHasNoDiff() {
+        assertTrue(LambdaConfigurationDiff.compute(requested().build(), deployed()).isEmpty());
+    }
+
+    @Test
+    void reportsChangedFieldsWithCurrentAndDesiredValues() {
+        LambdaDeploymentInput input = requested()
+                .memorySize(512)
+                .envVariables(new HashMap<>(Collections.singletonMap("STAGE", "beta")))
+                .build();
+
+        Map<String, Object> diff = LambdaConfigurationDiff.compute(input, deployed());
+
+        assertEquals(2, diff.size());
+        Map<?, ?> memory = (Map<?, ?>) diff.get("memorySize");
+        assertEquals(256, memory.get("current"));
+        assertEquals(512, memory.get("desired"));
+        Map<?, ?> env = (Map<?, ?>) diff.get("envVariables");
+        assertEquals(Collections.singletonMap("STAGE", "beta"), env.get("desired"));
+    }
+
+    @Test
+    void unsetMemoryAndTimeoutAreNotCompared() {
+        LambdaDeploymentInput input = requested().memorySize(0).timeout(0).build();
+
+        assertTrue(LambdaConfigurationDiff.compute(input, deployed()).isEmpty());
+    }
+
+    @Test
+    void onlyRequestedTagsThatDifferAreReported() {
+        LambdaDeploymentInput present = requested().tags(new HashMap<>(Collections.singletonMap("team", "payments"))).build();
+        assertTrue(LambdaConfigurationDiff.compute(present, deployed()).isEmpty());
+
+        LambdaDeploymentInput added = requested().tags(new HashMap<>(Collections.singletonMap("owner", "oncall"))).build();
+        Map<String, Object> diff = LambdaConfigurationDiff.compute(added, deployed());
+        assertEquals(Collections.singleton("tags"), diff.keySet());
+        assertEquals(Collections.singletonMap("owner", "oncall"), ((Map<?, ?>) diff.get("tags")).get("desired"));
+    }
+
+    @Test
+    void removedLayerIsADiff() {
+        LambdaDeploymentInput input = requested().layers(null).build();
+
+        assertEquals(Collections.singleton("layers"), LambdaConfigurationDiff.compute(input, deployed()).keySet());
+    }
+}
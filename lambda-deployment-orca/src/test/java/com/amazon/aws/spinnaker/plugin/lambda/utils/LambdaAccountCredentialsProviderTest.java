@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LambdaAccountCredentialsProviderTest {
+
+    private static LambdaAccountCredentials account(String assumeRole) {
+        return LambdaAccountCredentials.builder().name("prod").accountId("123456789012").assumeRole(assumeRole).build();
+    }
+
+    @Test
+    void qualifiesARoleWithTheAccountId() {
+        assertEquals("arn:aws:iam::123456789012:role/spinnakerManaged",
+                LambdaAccountCredentialsProvider.roleArn(account("role/spinnakerManaged")));
+    }
+
+    @Test
+    void keepsARoleArn() {
+        assertEquals("arn:aws-us-gov:iam::210987654321:role/metrics",
+                LambdaAccountCredentialsProvider.roleArn(account("arn:aws-us-gov:iam::210987654321:role/metrics")));
+    }
+
+    @Test
+    void anAccountWithoutARoleHasNone() {
+        assertNull(LambdaAccountCredentialsProvider.roleArn(account(null)));
+        assertNull(LambdaAccountCredentialsProvider.roleArn(account("")));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import com.amazon.aws.spinnaker.plugin.lambda.traffic.metrics.model.LambdaCloudMetricStatistics;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LambdaCloudDriverUtilsTest {
+    // GET /cloudMetrics/aws/prod/us-west-2/Invocations/statistics?namespace=AWS/Lambda&statistics=Sum&period=60&...
+    private static final String CLOUD_METRIC_STATISTICS = "{\"unit\":\"Count\",\"datapoints\":["
+            + "{\"timestamp\":1604600460000,\"average\":1.0,\"sum\":12.0,\"sampleCount\":12.0,\"minimum\":1.0,\"maximum\":1.0,\"unit\":\"Count\"},"
+            + "{\"timestamp\":1604600520000,\"average\":1.0,\"sum\":7.0,\"sampleCount\":7.0,\"minimum\":1.0,\"maximum\":1.0,\"unit\":\"Count\"}]}";
+
+    private final List<String> requestedUrls = new ArrayList<>();
+    private String responseBody;
+    private LambdaCloudDriverUtils utils;
+
+    @BeforeEach
+    void setUp() {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    requestedUrls.add(chain.request().url().toString());
+                    return new Response.Builder()
+                            .request(chain.request())
+                            .protocol(Protocol.HTTP_1_1)
+                            .code(200)
+                            .message("OK")
+                            .body(ResponseBody.create(responseBody, MediaType.parse("application/json")))
+                            .build();
+                })
+                .build();
+        utils = new LambdaCloudDriverUtils();
+        utils.httpClient = new LambdaCloudDriverHttpClient() {
+            @Override
+            public OkHttpClient getClient() {
+                return client;
+            }
+        };
+    }
+
+    @Test
+    void decodesCloudMetricStatistics() {
+        responseBody = CLOUD_METRIC_STATISTICS;
+        String url = "http://clouddriver/cloudMetrics/aws/prod/us-west-2/Invocations/statistics?statistics=Sum";
+
+        LambdaCloudMetricStatistics statistics = utils.getFromCloudDriver(url, LambdaCloudMetricStatistics.class);
+
+        assertEquals(url, requestedUrls.get(0));
+        assertEquals("Count", statistics.getUnit());
+        assertEquals(2, statistics.getDatapoints().size());
+        assertEquals(1604600460000L, statistics.getDatapoints().get(0).getTimestamp().longValue());
+        assertEquals(12.0, statistics.getDatapoints().get(0).getSum());
+        assertEquals(7.0, statistics.getDatapoints().get(1).getSum());
+        assertEquals(1.0, statistics.getDatapoints().get(1).getMaximum());
+    }
+
+    @Test
+    void decodesStatisticsWithoutDatapoints() {
+        responseBody = "{\"unit\":\"Milliseconds\",\"datapoints\":[]}";
+
+        LambdaCloudMetricStatistics statistics = utils.getFromCloudDriver("http://clouddriver/cloudMetrics", LambdaCloudMetricStatistics.class);
+
+        assertEquals(0, statistics.getDatapoints().size());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LambdaLatencyHistogramTest {
+
+    @Test
+    void percentilesAreWithinTheBucketWidthOfTheExactFigure() {
+        LambdaLatencyHistogram histogram = new LambdaLatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertWithinBucket(500, histogram.percentile(50));
+        assertWithinBucket(950, histogram.percentile(95));
+        assertWithinBucket(990, histogram.percentile(99));
+        assertEquals(1000.0, histogram.percentile(100));
+    }
+
+    @Test
+    void sizeDoesNotGrowWithTheNumberOfSamples() {
+        LambdaLatencyHistogram histogram = new LambdaLatencyHistogram();
+        for (int i = 0; i < 360_000; i++) {
+            histogram.record(50 + i % 200);
+        }
+
+        assertTrue(histogram.getBuckets().size() < 40);
+    }
+
+    @Test
+    void summaryMatchesTheStatisticsFields() {
+        LambdaLatencyHistogram histogram = new LambdaLatencyHistogram();
+        histogram.record(100);
+        histogram.record(200);
+        histogram.record(300);
+
+        Map<String, Object> summary = histogram.summarize();
+
+        assertEquals(3L, summary.get("count"));
+        assertEquals(100.0, summary.get("min"));
+        assertEquals(200.0, summary.get("avg"));
+        assertEquals(300.0, summary.get("max"));
+        assertEquals(300.0, summary.get("p99"));
+    }
+
+    @Test
+    void emptyHistogramReportsOnlyTheCount() {
+        Map<String, Object> summary = new LambdaLatencyHistogram().summarize();
+
+        assertEquals(1, summary.size());
+        assertEquals(0L, summary.get("count"));
+    }
+
+    @Test
+    void survivesARoundTripThroughTheStageContext() {
+        ObjectMapper mapper = new ObjectMapper();
+        LambdaLatencyHistogram histogram = new LambdaLatencyHistogram();
+        histogram.record(12);
+        histogram.record(480);
+
+        LambdaLatencyHistogram restored = mapper.convertValue(mapper.convertValue(histogram, Map.class), LambdaLatencyHistogram.class);
+        restored.record(7);
+
+        assertEquals(3, restored.getCount());
+        assertEquals(7L, restored.getMin().longValue());
+        assertEquals(480.0, restored.percentile(100));
+    }
+
+    private static void assertWithinBucket(double exact, double reported) {
+        assertTrue(reported >= exact && reported <= Math.ceil(exact * 1.05), String.format("%s for %s", reported, exact));
+    }
+}
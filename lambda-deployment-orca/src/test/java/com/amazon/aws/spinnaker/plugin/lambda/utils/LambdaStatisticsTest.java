@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Amazon.com, Inc. or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazon.aws.spinnaker.plugin.lambda.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LambdaStatisticsTest {
+
+    @Test
+    void percentileUsesTheNearestRank() {
+        List<Double> sorted = Arrays.asList(10.0, 20.0, 30.0, 40.0, 50.0, 60.0, 70.0, 80.0, 90.0, 100.0);
+
+        assertEquals(50.0, LambdaStatistics.percentile(sorted, 50));
+        assertEquals(100.0, LambdaStatistics.percentile(sorted, 95));
+        assertEquals(100.0, LambdaStatistics.percentile(sorted, 100));
+        assertEquals(10.0, LambdaStatistics.percentile(sorted, 0));
+        assertEquals(10.0, LambdaStatistics.percentile(sorted, 1));
+    }
+
+    @Test
+    void percentileOfASingleSampleIsThatSample() {
+        assertEquals(7.0, LambdaStatistics.percentile(Collections.singletonList(7.0), 99));
+    }
+
+    @Test
+    void summarizeSortsTheSamples() {
+        Map<String, Object> summary = LambdaStatistics.summarize(Arrays.asList(30, 10, 20, 40));
+
+        assertEquals(4, summary.get("count"));
+        assertEquals(10.0, summary.get("min"));
+        assertEquals(25.0, summary.get("avg"));
+        assertEquals(40.0, summary.get("max"));
+        assertEquals(20.0, summary.get("p50"));
+        assertEquals(40.0, summary.get("p99"));
+    }
+
+    @Test
+    void summarizeOfNoSamplesReportsOnlyTheCount() {
+        Map<String, Object> summary = LambdaStatistics.summarize(Collections.<Double>emptyList());
+
+        assertEquals(Collections.singletonMap("count", 0), summary);
+    }
+
+    @Test
+    void roundKeepsTwoDecimals() {
+        assertEquals(0.33, LambdaStatistics.round(1 / 3.0));
+        assertEquals(2.5, LambdaStatistics.round(2.499999));
+    }
+}